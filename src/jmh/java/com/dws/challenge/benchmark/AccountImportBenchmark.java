@@ -0,0 +1,82 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.ImportSummary;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load {@code accounts} accounts into an empty repository: through
+ * {@link AccountImportService} from an in-memory NDJSON body, and, as the baseline, one
+ * {@code createAccount} call per account with the JSON already parsed and bean validation and
+ * logging left out, which is less than what a {@code POST /v1/accounts} per account costs.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountImportBenchmark {
+
+    @Param({"in-memory", "fixed-point", "off-heap"})
+    public String repository;
+
+    @Param({"1000000"})
+    public int accounts;
+
+    private byte[] ndjson;
+    private Account[] parsed;
+    private AccountsRepository accountsRepository;
+    private AccountImportService importService;
+
+    @Setup(Level.Trial)
+    public void createBody() {
+        StringBuilder body = new StringBuilder(accounts * 40);
+        parsed = new Account[accounts];
+        for (int i = 0; i < accounts; i++) {
+            body.append("{\"accountId\":\"acc-").append(i).append("\",\"balance\":1000.00}\n");
+            parsed[i] = new Account("acc-" + i, new BigDecimal("1000.00"));
+        }
+        ndjson = body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyRepository() {
+        accountsRepository = BenchmarkFixtures.repository(repository);
+        importService = new AccountImportService(accountsRepository, new ObjectMapper(), 10_000, 0);
+    }
+
+    @Benchmark
+    public ImportSummary bulkImport() throws IOException {
+        return importService.importAccounts(new ByteArrayInputStream(ndjson), AccountImportService.Format.NDJSON,
+                accountId -> true);
+    }
+
+    @Benchmark
+    public int oneByOne() {
+        for (Account account : parsed) {
+            accountsRepository.createAccount(new Account(account.getAccountId(), account.getBalance()));
+        }
+        return accountsRepository.size();
+    }
+}
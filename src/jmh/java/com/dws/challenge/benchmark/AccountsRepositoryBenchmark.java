@@ -0,0 +1,66 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Get and create throughput of the account repositories at 1K, 1M and 10M accounts. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountsRepositoryBenchmark {
+
+    @Param({"in-memory", "fixed-point", "off-heap"})
+    public String repository;
+
+    @Param({"1000", "1000000", "10000000"})
+    public int accounts;
+
+    private AccountsRepository accountsRepository;
+    private String[] ids;
+    private int[] lookups;
+    private int nextLookup;
+    private long nextCreated;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountsRepository = BenchmarkFixtures.repository(repository);
+        ids = BenchmarkFixtures.createAccounts(accountsRepository, accounts, BigDecimal.TEN);
+        SplittableRandom random = new SplittableRandom(42);
+        lookups = new int[1 << 16];
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = random.nextInt(accounts);
+        }
+    }
+
+    @Benchmark
+    public Account getAccount() {
+        int index = lookups[nextLookup];
+        nextLookup = (nextLookup + 1) & (lookups.length - 1);
+        // Copy the id so the lookup hashes a fresh String, as one parsed from a request would
+        return accountsRepository.getAccount(new String(ids[index]));
+    }
+
+    @Benchmark
+    public void createAccount() {
+        accountsRepository.createAccount(new Account("new-" + nextCreated++, BigDecimal.TEN));
+    }
+}
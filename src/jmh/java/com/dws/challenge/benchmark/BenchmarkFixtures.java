@@ -0,0 +1,87 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryFixedPoint;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.AccountsRepositoryOffHeap;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferService;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+/** Shared setup for the benchmarks: repositories, services and account-selection distributions. */
+final class BenchmarkFixtures {
+
+    static final NotificationService NO_NOTIFICATIONS = (account, description) -> { };
+
+    private BenchmarkFixtures() {
+    }
+
+    static AccountsRepository repository(String kind) {
+        return switch (kind) {
+            case "in-memory" -> new AccountsRepositoryInMemory();
+            case "fixed-point" -> new AccountsRepositoryFixedPoint(2);
+            case "off-heap" -> new AccountsRepositoryOffHeap(2);
+            default -> throw new IllegalArgumentException("Unknown repository " + kind);
+        };
+    }
+
+    static TransferService transferService(AccountsRepository repository) {
+        return new TransferService(repository, NO_NOTIFICATIONS, new AccountLockManager());
+    }
+
+    static TransferService transferService(AccountsRepository repository, TransferService.ConcurrencyMode mode) {
+        return new TransferService(repository, NO_NOTIFICATIONS, new AccountLockManager(), TransferMetrics.noop(),
+                mode, Integer.MAX_VALUE);
+    }
+
+    static String[] createAccounts(AccountsRepository repository, int count, BigDecimal balance) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = "acc-" + i;
+            repository.createAccount(new Account(ids[i], balance));
+        }
+        return ids;
+    }
+
+    /**
+     * Precomputes {@code samples} account indexes drawn uniformly or from a Zipf distribution with
+     * exponent {@code skew}, so sampling cost stays out of the measured code.
+     */
+    static int[] accountIndexes(String distribution, int accounts, int samples, double skew, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] indexes = new int[samples];
+        if ("uniform".equals(distribution)) {
+            for (int i = 0; i < samples; i++) {
+                indexes[i] = random.nextInt(accounts);
+            }
+            return indexes;
+        }
+
+        double[] cumulative = new double[accounts];
+        double total = 0;
+        for (int rank = 0; rank < accounts; rank++) {
+            total += 1.0 / Math.pow(rank + 1, skew);
+            cumulative[rank] = total;
+        }
+        for (int i = 0; i < samples; i++) {
+            double target = random.nextDouble() * total;
+            int low = 0;
+            int high = accounts - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            indexes[i] = low;
+        }
+        return indexes;
+    }
+}
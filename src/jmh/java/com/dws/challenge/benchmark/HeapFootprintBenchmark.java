@@ -0,0 +1,65 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryOffHeap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live-heap cost of holding the accounts. Each invocation is one full GC with the repository
+ * reachable, so its time is the stop-the-world pause needed to trace the accounts; the heap still
+ * in use afterwards (and the off-heap bytes) are printed at the end of the trial.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+UseParallelGC"})
+@State(Scope.Benchmark)
+public class HeapFootprintBenchmark {
+
+    @Param({"in-memory", "off-heap"})
+    public String repository;
+
+    @Param({"1000000", "10000000"})
+    public int accounts;
+
+    private AccountsRepository accountsRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountsRepository = BenchmarkFixtures.repository(repository);
+        BenchmarkFixtures.createAccounts(accountsRepository, accounts, new BigDecimal("1000.00"));
+    }
+
+    @Benchmark
+    public AccountsRepository fullGc() {
+        System.gc();
+        return accountsRepository;
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.gc();
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long offHeap = accountsRepository instanceof AccountsRepositoryOffHeap offHeapRepository
+                ? offHeapRepository.getOffHeapBytes() : 0;
+        System.out.printf("%n%s, %d accounts: heap used %d MB, off-heap %d MB%n",
+                repository, accounts, heapUsed >> 20, offHeap >> 20);
+    }
+}
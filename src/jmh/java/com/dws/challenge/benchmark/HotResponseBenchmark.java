@@ -0,0 +1,86 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.ResponseWrapper;
+import com.dws.challenge.web.PreSerializedResponses;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of producing the {@code /transfer} and {@code /{accountId}} response bodies: building a
+ * ResponseWrapper and ResponseEntity and serializing them with Jackson, against
+ * {@link PreSerializedResponses}. Run with {@code -PjmhProfilers=gc} to see bytes allocated per
+ * operation ({@code gc.alloc.rate.norm}). The output buffer is reused, so it adds no allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HotResponseBenchmark {
+
+    private ObjectWriter writer;
+    private PreSerializedResponses preSerialized;
+    private Account account;
+    private ByteArrayOutputStream out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        writer = objectMapper.writer();
+        preSerialized = new PreSerializedResponses(objectMapper);
+        account = new Account("acc-123456", new BigDecimal("1234.56"));
+        out = new ByteArrayOutputStream(256);
+    }
+
+    @Benchmark
+    public int transferWrapped() throws IOException {
+        out.reset();
+        ResponseEntity<ResponseWrapper<Object>> response = new ResponseEntity<>(
+                new ResponseWrapper<>(null, "Transfer successful", HttpStatus.OK.value()), HttpStatus.OK);
+        writer.writeValue(out, response.getBody());
+        return out.size();
+    }
+
+    @Benchmark
+    public int transferPreSerialized() throws IOException {
+        out.reset();
+        preSerialized.writeTransferSuccessful(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int accountWrapped() throws IOException {
+        out.reset();
+        ResponseEntity<ResponseWrapper<Account>> response = ResponseEntity.ok(
+                new ResponseWrapper<>(account, "Account retrieved successfully", HttpStatus.OK.value()));
+        writer.writeValue(out, response.getBody());
+        return out.size();
+    }
+
+    @Benchmark
+    public int accountPreSerialized() throws IOException {
+        out.reset();
+        preSerialized.writeAccount(out, account);
+        return out.size();
+    }
+}
@@ -0,0 +1,166 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryFixedPoint;
+import com.dws.challenge.repository.JournalSnapshotter;
+import com.dws.challenge.repository.JournalSnapshotter.SnapshotStats;
+import com.dws.challenge.repository.TransferJournal;
+import com.dws.challenge.repository.TransferJournal.FsyncPolicy;
+import com.dws.challenge.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of journal snapshots for {@code accounts} accounts and as many transfers: how long
+ * {@link JournalSnapshotter} takes to fold the sealed segments into a snapshot, and how long a
+ * fixed-point repository takes to start from that snapshot plus the tail, against replaying every
+ * segment from the beginning. The snapshot size is logged once per trial.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalSnapshotBenchmark {
+
+    private static final int SEGMENT_SIZE = 16 << 20;
+
+    @Param({"1000000"})
+    public int accounts;
+
+    private Path root;
+    private Path segmentsOnly;
+    private Path snapshotted;
+
+    @Setup(Level.Trial)
+    public void writeJournal() throws IOException {
+        root = Files.createTempDirectory("journal-snapshot-benchmark");
+        segmentsOnly = root.resolve("segments");
+        TransferJournal journal = new TransferJournal(segmentsOnly, SEGMENT_SIZE, FsyncPolicy.OS, 5);
+        AccountsRepository repository = new AccountsRepositoryFixedPoint(2, Optional.of(journal));
+        String[] ids = BenchmarkFixtures.createAccounts(repository, accounts, new BigDecimal("1000000"));
+        TransferService transferService = BenchmarkFixtures.transferService(repository);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < accounts; i++) {
+            transferService.transfer(ids[random.nextInt(accounts)], ids[random.nextInt(accounts)], new BigDecimal("0.01"));
+        }
+        journal.close();
+
+        snapshotted = root.resolve("snapshotted");
+        copy(segmentsOnly, snapshotted);
+        TransferJournal snapshotJournal = open(snapshotted);
+        SnapshotStats stats = new JournalSnapshotter(snapshotJournal, Long.MAX_VALUE).snapshot().orElseThrow();
+        snapshotJournal.close();
+        System.out.printf("%nSnapshot of %d accounts: %d bytes%n", stats.accounts(), stats.bytes());
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        delete(root);
+    }
+
+    /** A fresh copy of the unsnapshotted journal, opened, for each snapshot to compact. */
+    @State(Scope.Thread)
+    public static class Unsnapshotted {
+
+        TransferJournal journal;
+        private Path directory;
+
+        @Setup(Level.Invocation)
+        public void copyJournal(JournalSnapshotBenchmark benchmark) throws IOException {
+            directory = benchmark.root.resolve("work");
+            delete(directory);
+            copy(benchmark.segmentsOnly, directory);
+            journal = open(directory);
+        }
+
+        @TearDown(Level.Invocation)
+        public void closeJournal() {
+            journal.close();
+        }
+    }
+
+    @Benchmark
+    public SnapshotStats snapshot(Unsnapshotted unsnapshotted) {
+        return new JournalSnapshotter(unsnapshotted.journal, Long.MAX_VALUE).snapshot().orElseThrow();
+    }
+
+    @Benchmark
+    public int restoreFromSnapshot() {
+        return restore(snapshotted);
+    }
+
+    @Benchmark
+    public int restoreFromSegments() {
+        return restore(segmentsOnly);
+    }
+
+    private static int restore(Path directory) {
+        TransferJournal journal = new TransferJournal(directory, SEGMENT_SIZE, FsyncPolicy.OS, 5);
+        try {
+            return new AccountsRepositoryFixedPoint(2, Optional.of(journal)).size();
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static TransferJournal open(Path directory) {
+        TransferJournal journal = new TransferJournal(directory, SEGMENT_SIZE, FsyncPolicy.OS, 5);
+        journal.replay(new TransferJournal.Visitor() {
+            @Override
+            public void accountCreated(String accountId, BigDecimal balance) {
+            }
+
+            @Override
+            public void transfer(String accountFromId, String accountToId, BigDecimal amount) {
+            }
+
+            @Override
+            public void accountsCleared() {
+            }
+        });
+        return journal;
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
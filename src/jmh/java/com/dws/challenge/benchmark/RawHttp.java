@@ -0,0 +1,103 @@
+package com.dws.challenge.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Just enough HTTP/1.1 over a raw socket for the end-to-end benchmarks, so that the bytes they
+ * send and receive are exactly those counted and no client library allocates on the measured path.
+ */
+final class RawHttp {
+
+    private RawHttp() {
+    }
+
+    static byte[] get(String path) {
+        return ("GET " + path + " HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static byte[] postJson(String path, String body) {
+        return ("POST " + path + " HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + body.length() + "\r\n"
+                + "\r\n"
+                + body).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static void write(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static void read(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed");
+            }
+        }
+    }
+
+    // Reads one response, with a Content-Length or a chunked body, and returns its size in bytes
+    static int readResponse(SocketChannel channel, ByteBuffer in) throws IOException {
+        in.clear();
+        int headerEnd = -1;
+        while (headerEnd < 0) {
+            readMore(channel, in);
+            headerEnd = indexOfHeaderEnd(in);
+        }
+        String headers = new String(in.array(), 0, headerEnd, StandardCharsets.US_ASCII).toLowerCase();
+        int lengthAt = headers.indexOf("content-length:");
+        if (lengthAt < 0) {
+            // Chunked: the body ends with the zero-length chunk
+            while (!endsWith(in, "0\r\n\r\n")) {
+                readMore(channel, in);
+            }
+            return in.position();
+        }
+        int lengthEnd = headers.indexOf("\r\n", lengthAt);
+        if (lengthEnd < 0) {
+            // The last header
+            lengthEnd = headers.length();
+        }
+        int total = headerEnd + 4 + Integer.parseInt(headers.substring(lengthAt + 15, lengthEnd).trim());
+        while (in.position() < total) {
+            readMore(channel, in);
+        }
+        return total;
+    }
+
+    private static void readMore(SocketChannel channel, ByteBuffer in) throws IOException {
+        if (channel.read(in) < 0) {
+            throw new IOException("Connection closed");
+        }
+    }
+
+    private static boolean endsWith(ByteBuffer in, String suffix) {
+        int start = in.position() - suffix.length();
+        if (start < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (in.get(start + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOfHeaderEnd(ByteBuffer in) {
+        byte[] bytes = in.array();
+        for (int i = 3; i < in.position(); i++) {
+            if (bytes[i - 3] == '\r' && bytes[i - 2] == '\n' && bytes[i - 1] == '\r' && bytes[i] == '\n') {
+                return i - 3;
+            }
+        }
+        return -1;
+    }
+}
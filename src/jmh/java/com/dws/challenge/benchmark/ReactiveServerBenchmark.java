@@ -0,0 +1,235 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.ChallengeApplication;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.web.ReactiveAccountsServer;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Tomcat-hosted MVC controller against the WebFlux endpoints of {@link ReactiveAccountsServer},
+ * over loopback against one running application that serves both. Throughput is measured for a
+ * single account read and a transfer, on one keep-alive connection and with one request in flight
+ * on each of {@value #CONNECTIONS} connections at once.
+ *
+ * <p>{@link #stalledListings} sends {@code GET /v1/accounts/getAllAccounts} on
+ * {@value #LISTINGS} connections whose clients read nothing, so each response stalls once the
+ * socket buffers are full, then prints what the server holds per stalled connection (heap, direct
+ * and pooled Netty buffers, threads) before draining them all.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+// The reactive transfer path only reaches full speed after about half a minute of JIT compilation
+@Warmup(iterations = 20, time = 3)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReactiveServerBenchmark {
+
+    private static final int ACCOUNTS = 50_000;
+    private static final int HOT_ACCOUNTS = 1000;
+    private static final int CONNECTIONS = 256;
+    private static final int LISTINGS = 64;
+    private static final int STALLED_RECEIVE_BUFFER = 16 * 1024;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @State(Scope.Benchmark)
+    public static class Application {
+
+        @Param({"mvc", "webflux"})
+        String stack;
+
+        ConfigurableApplicationContext context;
+        int port;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = new SpringApplicationBuilder(ChallengeApplication.class).run(
+                    // Tomcat otherwise closes a keep-alive connection after 100 requests
+                    "--server.port=0", "--server.tomcat.max-keep-alive-requests=-1",
+                    "--accounts.reactive.enabled=true", "--accounts.reactive.port=0",
+                    "--logging.level.root=WARN", "--spring.main.banner-mode=off");
+            port = stack.equals("mvc")
+                    ? Integer.parseInt(context.getEnvironment().getProperty("local.server.port"))
+                    : context.getBean(ReactiveAccountsServer.class).getPort();
+            AccountsService accountsService = context.getBean(AccountsService.class);
+            for (int i = 0; i < ACCOUNTS; i++) {
+                accountsService.createAccount(new Account(String.format("acc-%05d", i), new BigDecimal("1000000000")));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Connections {
+
+        final SocketChannel[] channels = new SocketChannel[CONNECTIONS];
+        final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        int next;
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            for (SocketChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+
+        SocketChannel channel(int index, int port) throws IOException {
+            if (channels[index] == null) {
+                channels[index] = SocketChannel.open(new InetSocketAddress("localhost", port));
+                channels[index].socket().setTcpNoDelay(true);
+            }
+            return channels[index];
+        }
+
+        byte[] nextGet() {
+            next = (next + 1) % HOT_ACCOUNTS;
+            return RawHttp.get(String.format("/v1/accounts/acc-%05d", next));
+        }
+
+        byte[] nextTransfer() {
+            next = (next + 2) % HOT_ACCOUNTS;
+            return RawHttp.postJson("/v1/accounts/transfer", String.format(
+                    "{\"accountFromId\":\"acc-%05d\",\"accountToId\":\"acc-%05d\",\"amount\":%s}", next, next + 1, AMOUNT));
+        }
+    }
+
+    @Benchmark
+    public int getAccount(Application application, Connections connections) throws IOException {
+        return exchange(application, connections, 1, false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONNECTIONS)
+    public int getAccountFanOut(Application application, Connections connections) throws IOException {
+        return exchange(application, connections, CONNECTIONS, false);
+    }
+
+    @Benchmark
+    public int transfer(Application application, Connections connections) throws IOException {
+        return exchange(application, connections, 1, true);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONNECTIONS)
+    public int transferFanOut(Application application, Connections connections) throws IOException {
+        return exchange(application, connections, CONNECTIONS, true);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 3)
+    public long stalledListings(Application application) throws Exception {
+        Footprint before = Footprint.sample();
+        SocketChannel[] channels = new SocketChannel[LISTINGS];
+        for (int i = 0; i < LISTINGS; i++) {
+            SocketChannel channel = SocketChannel.open();
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, STALLED_RECEIVE_BUFFER);
+            channel.connect(new InetSocketAddress("localhost", application.port));
+            RawHttp.write(channel, ByteBuffer.wrap(RawHttp.get("/v1/accounts/getAllAccounts")));
+            channels[i] = channel;
+        }
+        // Long enough for every response to start and fill the socket buffers
+        Thread.sleep(500);
+        Footprint stalled = Footprint.sample();
+        System.out.printf("%nPer stalled connection: %.1f KB heap, %.1f KB direct, %.1f KB pooled Netty, %.2f threads%n",
+                (stalled.heap - before.heap) / 1024.0 / LISTINGS,
+                (stalled.direct - before.direct) / 1024.0 / LISTINGS,
+                (stalled.nettyPooled - before.nettyPooled) / 1024.0 / LISTINGS,
+                (double) (stalled.threads - before.threads) / LISTINGS);
+
+        long received = 0;
+        ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        for (SocketChannel channel : channels) {
+            try (channel) {
+                received += drain(channel, in);
+            }
+        }
+        return received;
+    }
+
+    private static int exchange(Application application, Connections connections, int count, boolean transfer)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            byte[] request = transfer ? connections.nextTransfer() : connections.nextGet();
+            RawHttp.write(connections.channel(i, application.port), ByteBuffer.wrap(request));
+        }
+        int received = 0;
+        for (int i = 0; i < count; i++) {
+            received += RawHttp.readResponse(connections.channels[i], connections.in);
+        }
+        return received;
+    }
+
+    // Reads one chunked response to its zero-length last chunk without keeping it
+    private static long drain(SocketChannel channel, ByteBuffer in) throws IOException {
+        long received = 0;
+        byte[] tail = new byte[5];
+        while (!new String(tail, StandardCharsets.US_ASCII).equals("0\r\n\r\n")) {
+            in.clear();
+            int read = channel.read(in);
+            if (read < 0) {
+                throw new IOException("Connection closed");
+            }
+            received += read;
+            int keep = Math.min(read, tail.length);
+            System.arraycopy(tail, keep, tail, 0, tail.length - keep);
+            System.arraycopy(in.array(), read - keep, tail, tail.length - keep, keep);
+        }
+        return received;
+    }
+
+    private record Footprint(long heap, long direct, long nettyPooled, int threads) {
+
+        static Footprint sample() {
+            System.gc();
+            System.gc();
+            long direct = 0;
+            for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                if (pool.getName().equals("direct")) {
+                    direct = pool.getMemoryUsed();
+                }
+            }
+            return new Footprint(
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                    direct,
+                    PooledByteBufAllocator.DEFAULT.metric().usedDirectMemory()
+                            + PooledByteBufAllocator.DEFAULT.metric().usedHeapMemory(),
+                    ManagementFactory.getThreadMXBean().getThreadCount());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.ResponseWrapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Jackson serialization cost of the getAllAccounts response body. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int accounts;
+
+    private ObjectWriter writer;
+    private ResponseWrapper<List<Account>> response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        writer = new ObjectMapper().writer();
+        List<Account> body = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            body.add(new Account("acc-" + i, new BigDecimal("1234.56")));
+        }
+        response = new ResponseWrapper<>(body, "Accounts retrieved successfully", 200);
+    }
+
+    @Benchmark
+    public byte[] serializeAllAccounts() throws JsonProcessingException {
+        return writer.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,103 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.TooManyTransfersException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.TransferAdmission;
+import com.dws.challenge.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a well-behaved client's transfers while three threads of one abusive client hammer a
+ * hot account the victim credits, with {@link TransferAdmission} off and on. Read the victim's
+ * percentiles: without admission its transfers queue behind the abuser's on the hot account's
+ * lock, with it the abuser is turned away past its client rate.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferAdmissionBenchmark {
+
+    private static final int ACCOUNTS = 1000;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @State(Scope.Group)
+    public static class Bank {
+
+        @Param({"off", "on"})
+        public String admission;
+
+        TransferService transferService;
+        TransferAdmission transferAdmission;
+        String[] ids;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            AccountsRepository accountsRepository = BenchmarkFixtures.repository("in-memory");
+            accountsRepository.createAccount(new Account("hot", new BigDecimal("1000000000")));
+            ids = BenchmarkFixtures.createAccounts(accountsRepository, ACCOUNTS, new BigDecimal("1000000000"));
+            transferService = BenchmarkFixtures.transferService(accountsRepository);
+            if (admission.equals("on")) {
+                // In process the victim sends far faster than any real client, so it goes without a client
+                // id and the account buckets are off; the abuser is held to the default client rate
+                transferAdmission = new TransferAdmission(1000, 2000, 0, 0, 64, 1024, Duration.ofMillis(20));
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("abuse")
+    @GroupThreads(3)
+    public Object abuser(Bank bank) {
+        String to = bank.ids[ThreadLocalRandom.current().nextInt(ACCOUNTS)];
+        try {
+            return transfer(bank, "abuser", "hot", to);
+        } catch (TooManyTransfersException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    @Group("abuse")
+    @GroupThreads(1)
+    public Object victim(Bank bank) {
+        String from = bank.ids[ThreadLocalRandom.current().nextInt(ACCOUNTS)];
+        return transfer(bank, null, from, "hot");
+    }
+
+    private static Object transfer(Bank bank, String clientId, String from, String to) {
+        TransferAdmission admission = bank.transferAdmission;
+        if (admission == null) {
+            bank.transferService.transfer(from, to, AMOUNT);
+            return to;
+        }
+        admission.checkRate(clientId, from);
+        long enteredAt = admission.enter();
+        try {
+            bank.transferService.transfer(from, to, AMOUNT);
+        } finally {
+            admission.exit(enteredAt);
+        }
+        return to;
+    }
+}
@@ -0,0 +1,113 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.TransferService;
+import com.dws.challenge.service.TransferService.ConcurrencyMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory repository's transfer engines against each other: per-account locks, versioned
+ * compare-and-swap, and the single-writer sequencer. Accounts are picked uniformly or from a
+ * steep Zipf distribution, where a handful of accounts take part in most transfers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferEngineBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int SAMPLES = 1 << 16;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @State(Scope.Benchmark)
+    public static class Engine {
+
+        @Param({"LOCKING", "OPTIMISTIC", "SEQUENCED"})
+        public ConcurrencyMode mode;
+
+        @Param({"uniform", "zipf"})
+        public String distribution;
+
+        @Param({"1.5"})
+        public double skew;
+
+        TransferService transferService;
+        String[] ids;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            AccountsRepository accountsRepository = BenchmarkFixtures.repository("in-memory");
+            ids = BenchmarkFixtures.createAccounts(accountsRepository, ACCOUNTS, new BigDecimal("1000000000"));
+            transferService = BenchmarkFixtures.transferService(accountsRepository, mode);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            transferService.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Picks {
+
+        int[] indexes;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Engine engine) {
+            indexes = BenchmarkFixtures.accountIndexes(engine.distribution, ACCOUNTS, SAMPLES, engine.skew,
+                    Thread.currentThread().threadId());
+        }
+
+        int nextIndex() {
+            int index = indexes[next];
+            next = (next + 1) & (SAMPLES - 1);
+            return index;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void transfer1Thread(Engine engine, Picks picks) {
+        transfer(engine, picks);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transfer4Threads(Engine engine, Picks picks) {
+        transfer(engine, picks);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void transfer16Threads(Engine engine, Picks picks) {
+        transfer(engine, picks);
+    }
+
+    private static void transfer(Engine engine, Picks picks) {
+        int from = picks.nextIndex();
+        int to = picks.nextIndex();
+        if (from == to) {
+            to = (to + 1) % ACCOUNTS;
+        }
+        engine.transferService.transfer(engine.ids[from], engine.ids[to], AMOUNT);
+    }
+}
@@ -0,0 +1,191 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link TransferService#transfer} with 1, 4 and all available threads, picking the
+ * two accounts uniformly or from a Zipf distribution so a few hot accounts take most transfers, and
+ * the cost of rejecting transfers from an empty account. {@link #transferByHandle1Thread} runs the
+ * in-memory case with account handles resolved up front, as a caller that caches them would.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferServiceBenchmark {
+
+    private static final int SAMPLES = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class Accounts {
+
+        @Param({"in-memory", "fixed-point", "off-heap"})
+        public String repository;
+
+        @Param({"uniform", "zipf"})
+        public String distribution;
+
+        @Param({"10000"})
+        public int accounts;
+
+        @Param({"1.1"})
+        public double skew;
+
+        TransferService transferService;
+        String[] ids;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            AccountsRepository accountsRepository = BenchmarkFixtures.repository(repository);
+            // Large enough that no transfer fails for lack of funds during a run
+            ids = BenchmarkFixtures.createAccounts(accountsRepository, accounts, new BigDecimal("1000000000"));
+            transferService = BenchmarkFixtures.transferService(accountsRepository);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Picks {
+
+        int[] indexes;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Accounts accounts) {
+            indexes = BenchmarkFixtures.accountIndexes(accounts.distribution, accounts.accounts, SAMPLES,
+                    accounts.skew, Thread.currentThread().threadId());
+        }
+
+        int nextIndex() {
+            int index = indexes[next];
+            next = (next + 1) & (SAMPLES - 1);
+            return index;
+        }
+    }
+
+    // An empty account every transfer tries to debit, so each call is rejected
+    @State(Scope.Benchmark)
+    public static class EmptyAccount {
+
+        @Param({"in-memory", "fixed-point", "off-heap"})
+        public String repository;
+
+        TransferService transferService;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            AccountsRepository accountsRepository = BenchmarkFixtures.repository(repository);
+            accountsRepository.createAccount(new Account("empty", BigDecimal.ZERO));
+            accountsRepository.createAccount(new Account("target", BigDecimal.ZERO));
+            transferService = BenchmarkFixtures.transferService(accountsRepository);
+        }
+    }
+
+    // The in-memory repository, with every account's handle resolved once up front
+    @State(Scope.Benchmark)
+    public static class Handles {
+
+        @Param({"uniform", "zipf"})
+        public String distribution;
+
+        @Param({"10000"})
+        public int accounts;
+
+        @Param({"1.1"})
+        public double skew;
+
+        TransferService transferService;
+        int[] handles;
+        int[] indexes;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+            String[] ids = BenchmarkFixtures.createAccounts(accountsRepository, accounts, new BigDecimal("1000000000"));
+            handles = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                handles[i] = accountsRepository.handleOf(ids[i]);
+            }
+            indexes = BenchmarkFixtures.accountIndexes(distribution, accounts, SAMPLES, skew, 1);
+            transferService = BenchmarkFixtures.transferService(accountsRepository);
+        }
+
+        int nextIndex() {
+            int index = indexes[next];
+            next = (next + 1) & (SAMPLES - 1);
+            return index;
+        }
+    }
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Benchmark
+    @Threads(1)
+    public void transfer1Thread(Accounts accounts, Picks picks) {
+        transfer(accounts, picks);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void transferByHandle1Thread(Handles handles) {
+        int from = handles.nextIndex();
+        int to = handles.nextIndex();
+        if (from == to) {
+            to = (to + 1) % handles.accounts;
+        }
+        handles.transferService.transfer(handles.handles[from], handles.handles[to], AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transfer4Threads(Accounts accounts, Picks picks) {
+        transfer(accounts, picks);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void transferMaxThreads(Accounts accounts, Picks picks) {
+        transfer(accounts, picks);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object rejectInsufficientFunds4Threads(EmptyAccount emptyAccount) {
+        try {
+            emptyAccount.transferService.transfer("empty", "target", AMOUNT);
+            throw new IllegalStateException("Transfer from an empty account succeeded");
+        } catch (TransferException e) {
+            return e;
+        }
+    }
+
+    private static void transfer(Accounts accounts, Picks picks) {
+        int from = picks.nextIndex();
+        int to = picks.nextIndex();
+        if (from == to) {
+            to = (to + 1) % accounts.accounts;
+        }
+        accounts.transferService.transfer(accounts.ids[from], accounts.ids[to], AMOUNT);
+    }
+}
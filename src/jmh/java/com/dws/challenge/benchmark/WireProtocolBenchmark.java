@@ -0,0 +1,163 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.ChallengeApplication;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.web.BinaryTransferServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end transfer throughput of the JSON {@code POST /v1/accounts/transfer} endpoint against
+ * {@link BinaryTransferServer} frames, over loopback against a running application. The JSON
+ * client speaks HTTP/1.1 keep-alive through {@link RawHttp}; the averages per transfer are printed
+ * at the end of each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+// Tomcat and Jackson keep getting faster for the better part of a minute of JIT compilation
+@Warmup(iterations = 10, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireProtocolBenchmark {
+
+    private static final int ACCOUNTS = 1000;
+    private static final int PIPELINE_DEPTH = 64;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @State(Scope.Benchmark)
+    public static class Application {
+
+        ConfigurableApplicationContext context;
+        int httpPort;
+        int binaryPort;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = new SpringApplicationBuilder(ChallengeApplication.class).run(
+                    // Tomcat otherwise closes a keep-alive connection after 100 requests
+                    "--server.port=0", "--server.tomcat.max-keep-alive-requests=-1",
+                    "--transfers.binary.enabled=true", "--transfers.binary.port=0",
+                    "--logging.level.root=WARN", "--spring.main.banner-mode=off");
+            httpPort = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            binaryPort = context.getBean(BinaryTransferServer.class).getPort();
+            AccountsService accountsService = context.getBean(AccountsService.class);
+            for (int i = 0; i < ACCOUNTS; i++) {
+                accountsService.createAccount(new Account("acc-" + i, new BigDecimal("1000000000")));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Connection {
+
+        SocketChannel channel;
+        ByteBuffer out = ByteBuffer.allocate(PIPELINE_DEPTH * BinaryTransferServer.MAX_FRAME_SIZE);
+        ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        int next;
+        long transfers;
+        long requestBytes;
+        long responseBytes;
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+            System.out.printf("%nBytes per transfer: %.1f sent, %.1f received%n",
+                    (double) requestBytes / transfers, (double) responseBytes / transfers);
+        }
+
+        void count(long sent, long received, int ops) {
+            transfers += ops;
+            requestBytes += sent;
+            responseBytes += received;
+        }
+
+        String nextFrom() {
+            next = (next + 2) % ACCOUNTS;
+            return "acc-" + next;
+        }
+
+        SocketChannel connect(int port) throws IOException {
+            if (channel == null) {
+                channel = SocketChannel.open(new InetSocketAddress("localhost", port));
+                channel.socket().setTcpNoDelay(true);
+            }
+            return channel;
+        }
+    }
+
+    @Benchmark
+    public int json(Application application, Connection connection) throws IOException {
+        SocketChannel channel = connection.connect(application.httpPort);
+        String from = connection.nextFrom();
+        String body = "{\"accountFromId\":\"" + from + "\",\"accountToId\":\"acc-" + (connection.next + 1)
+                + "\",\"amount\":" + AMOUNT + "}";
+        byte[] request = RawHttp.postJson("/v1/accounts/transfer", body);
+        RawHttp.write(channel, ByteBuffer.wrap(request));
+        int received = RawHttp.readResponse(channel, connection.in);
+        connection.count(request.length, received, 1);
+        return received;
+    }
+
+    @Benchmark
+    public byte binary(Application application, Connection connection) throws IOException {
+        SocketChannel channel = connection.connect(application.binaryPort);
+        ByteBuffer out = connection.out;
+        out.clear();
+        BinaryTransferServer.writeFrame(out, connection.nextFrom(), "acc-" + (connection.next + 1), AMOUNT);
+        int sent = out.position();
+        out.flip();
+        RawHttp.write(channel, out);
+        ByteBuffer in = connection.in;
+        in.clear().limit(1);
+        RawHttp.read(channel, in);
+        connection.count(sent, 1, 1);
+        return in.get(0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public byte binaryPipelined(Application application, Connection connection) throws IOException {
+        SocketChannel channel = connection.connect(application.binaryPort);
+        ByteBuffer out = connection.out;
+        out.clear();
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            BinaryTransferServer.writeFrame(out, connection.nextFrom(), "acc-" + (connection.next + 1), AMOUNT);
+        }
+        int sent = out.position();
+        out.flip();
+        RawHttp.write(channel, out);
+        ByteBuffer in = connection.in;
+        in.clear().limit(PIPELINE_DEPTH);
+        RawHttp.read(channel, in);
+        connection.count(sent, PIPELINE_DEPTH, PIPELINE_DEPTH);
+        return in.get(PIPELINE_DEPTH - 1);
+    }
+}
@@ -1,6 +1,7 @@
 package com.dws.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.math.BigDecimal;
 import lombok.Data;
@@ -16,9 +17,14 @@ public class Account {
   @NotEmpty
   private final String accountId;
 
+  // Volatile so TransferService can pre-check it without taking the account lock
   @NotNull
   @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  private volatile BigDecimal balance;
+
+  // Incremented by the repository on every committed change; compared by updateIfVersion
+  @JsonIgnore
+  private long version;
 
   public Account(String accountId) {
     this.accountId = accountId;
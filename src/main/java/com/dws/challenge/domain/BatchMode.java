@@ -0,0 +1,10 @@
+package com.dws.challenge.domain;
+
+public enum BatchMode {
+
+    /** Every transfer is applied or rejected on its own; the response lists each outcome. */
+    PER_ITEM,
+
+    /** The batch is applied only if every transfer in it succeeds. */
+    ALL_OR_NOTHING
+}
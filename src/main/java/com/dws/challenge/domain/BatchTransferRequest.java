@@ -0,0 +1,24 @@
+package com.dws.challenge.domain;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransferRequest {
+
+    // Hard ceiling on what transfers.batch.max-size may be set to
+    public static final int MAX_TRANSFERS = 10_000;
+
+    @NotNull
+    @NotEmpty(message = "transfers missing")
+    @Size(max = MAX_TRANSFERS, message = "at most {max} transfers per batch")
+    private List<@Valid TransferRequest> transfers;
+
+    @NotNull
+    private BatchMode mode = BatchMode.PER_ITEM;
+}
@@ -0,0 +1,29 @@
+package com.dws.challenge.domain;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/** Second phase of a cross-partition transfer, sent to the node that owns {@code accountToId}. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PartitionCredit {
+
+    /** Identifies the transfer so a retried credit is applied only once. */
+    @NotEmpty
+    private String transferId;
+
+    @NotEmpty
+    private String accountFromId;
+
+    @NotEmpty
+    private String accountToId;
+
+    @NotNull
+    private BigDecimal amount;
+}
@@ -0,0 +1,107 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An account whose balance is split across several shards, for the few accounts that receive most
+ * of the transfers. Credits land on a random shard with a single CAS and never take the account
+ * lock; debits take from one shard and borrow from the others when it cannot cover them.
+ * {@link #getBalance()} is the sum of the shards.
+ *
+ * <p>Debits should be serialized by the caller (TransferService holds the account lock for
+ * them). Credits may run concurrently with anything.
+ */
+public class ShardedAccount extends Account {
+
+  // 16 compressed references apart puts each shard on its own cache line
+  private static final int PADDING = 16;
+
+  private final int shardCount;
+  private final AtomicReferenceArray<BigDecimal> shards;
+
+  public ShardedAccount(String accountId, BigDecimal balance, int shardCount) {
+    super(accountId);
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("A sharded account needs at least one shard");
+    }
+    this.shardCount = shardCount;
+    this.shards = new AtomicReferenceArray<>(shardCount * PADDING);
+    for (int i = 0; i < shardCount; i++) {
+      shards.set(i * PADDING, BigDecimal.ZERO);
+    }
+    shards.set(0, balance);
+  }
+
+  @JsonIgnore
+  public int getShardCount() {
+    return shardCount;
+  }
+
+  @Override
+  public BigDecimal getBalance() {
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < shardCount; i++) {
+      total = total.add(shards.get(i * PADDING));
+    }
+    return total;
+  }
+
+  /**
+   * Replaces the whole balance. Only safe while nothing else touches the account, such as during
+   * journal replay; transfers use {@link #credit} and {@link #tryDebit}.
+   */
+  @Override
+  public void setBalance(BigDecimal balance) {
+    for (int i = 1; i < shardCount; i++) {
+      shards.set(i * PADDING, BigDecimal.ZERO);
+    }
+    shards.set(0, balance);
+  }
+
+  public void credit(BigDecimal amount) {
+    int shard = ThreadLocalRandom.current().nextInt(shardCount);
+    while (true) {
+      BigDecimal current = shards.get(shard * PADDING);
+      if (shards.compareAndSet(shard * PADDING, current, current.add(amount))) {
+        return;
+      }
+      // Contended: move on rather than retrying the same shard
+      shard = shard + 1 == shardCount ? 0 : shard + 1;
+    }
+  }
+
+  /**
+   * Takes {@code amount} from the shards, starting at a random one, and returns false without
+   * changing the balance if they do not hold enough between them.
+   */
+  public boolean tryDebit(BigDecimal amount) {
+    if (getBalance().compareTo(amount) < 0) {
+      return false;
+    }
+    BigDecimal remaining = amount;
+    int shard = ThreadLocalRandom.current().nextInt(shardCount);
+    int emptyShards = 0;
+    while (remaining.signum() > 0) {
+      if (emptyShards == shardCount) {
+        // Only reachable when debits race each other; give back what was taken
+        credit(amount.subtract(remaining));
+        return false;
+      }
+      BigDecimal current = shards.get(shard * PADDING);
+      if (current.signum() > 0) {
+        BigDecimal taken = current.min(remaining);
+        if (shards.compareAndSet(shard * PADDING, current, current.subtract(taken))) {
+          remaining = remaining.subtract(taken);
+          emptyShards = 0;
+        }
+        continue;
+      }
+      emptyShards++;
+      shard = shard + 1 == shardCount ? 0 : shard + 1;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,25 @@
+package com.dws.challenge.dto;
+
+import com.dws.challenge.domain.Account;
+
+import java.util.List;
+
+public class AccountsPage {
+
+    private final List<Account> accounts;
+    private final String nextPageToken;
+
+    public AccountsPage(List<Account> accounts, String nextPageToken) {
+        this.accounts = accounts;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<Account> getAccounts() {
+        return accounts;
+    }
+
+    /** Token for the following page, or null when this is the last one. */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+}
@@ -0,0 +1,68 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class ImportSummary {
+
+    private final long rows;
+    private final long created;
+    private final long duplicates;
+    private final long invalid;
+    private final long skipped;
+    private final List<String> duplicateIds;
+    private final List<Long> invalidLines;
+
+    @JsonCreator
+    public ImportSummary(@JsonProperty("rows") long rows,
+                         @JsonProperty("created") long created,
+                         @JsonProperty("duplicates") long duplicates,
+                         @JsonProperty("invalid") long invalid,
+                         @JsonProperty("skipped") long skipped,
+                         @JsonProperty("duplicateIds") List<String> duplicateIds,
+                         @JsonProperty("invalidLines") List<Long> invalidLines) {
+        this.rows = rows;
+        this.created = created;
+        this.duplicates = duplicates;
+        this.invalid = invalid;
+        this.skipped = skipped;
+        this.duplicateIds = duplicateIds;
+        this.invalidLines = invalidLines;
+    }
+
+    /** Non-blank rows read, not counting a CSV header. */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    /** Rows whose account id already existed, or appeared earlier in the import. */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /** Rows that could not be parsed, or had an empty id or a missing or negative balance. */
+    public long getInvalid() {
+        return invalid;
+    }
+
+    /** Rows for accounts owned by another node of a partitioned deployment. */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /** The first duplicate ids found, at most 100; which ones depends on the order batches finished. */
+    public List<String> getDuplicateIds() {
+        return duplicateIds;
+    }
+
+    /** Line numbers, counting from 1, of the first invalid rows found, at most 100. */
+    public List<Long> getInvalidLines() {
+        return invalidLines;
+    }
+}
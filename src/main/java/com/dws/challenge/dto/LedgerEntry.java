@@ -0,0 +1,49 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public class LedgerEntry {
+
+    private final long sequence;
+    private final Instant timestamp;
+    private final String accountFromId;
+    private final String accountToId;
+    private final BigDecimal amount;
+
+    @JsonCreator
+    public LedgerEntry(@JsonProperty("sequence") long sequence, @JsonProperty("timestamp") Instant timestamp,
+                       @JsonProperty("accountFromId") String accountFromId,
+                       @JsonProperty("accountToId") String accountToId,
+                       @JsonProperty("amount") BigDecimal amount) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.accountFromId = accountFromId;
+        this.accountToId = accountToId;
+        this.amount = amount;
+    }
+
+    /** Position in the ledger; later transfers have higher sequences. */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public String getAccountFromId() {
+        return accountFromId;
+    }
+
+    public String getAccountToId() {
+        return accountToId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+}
@@ -1,5 +1,7 @@
 package com.dws.challenge.dto;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
 
@@ -9,7 +11,9 @@ public class ResponseWrapper<T> {
     private String message;
     private int statusCode;
 
-    public ResponseWrapper(T data, String message, int statusCode) {
+    @JsonCreator
+    public ResponseWrapper(@JsonProperty("data") T data, @JsonProperty("message") String message,
+                           @JsonProperty("statusCode") int statusCode) {
         this.data = data;
         this.message = message;
         this.statusCode = statusCode;
@@ -0,0 +1,28 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class TransactionsPage {
+
+    private final List<LedgerEntry> transactions;
+    private final String nextCursor;
+
+    @JsonCreator
+    public TransactionsPage(@JsonProperty("transactions") List<LedgerEntry> transactions,
+                            @JsonProperty("nextCursor") String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<LedgerEntry> getTransactions() {
+        return transactions;
+    }
+
+    /** Cursor for the following page, or null when this is the last one. */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
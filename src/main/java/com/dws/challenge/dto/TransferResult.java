@@ -0,0 +1,34 @@
+package com.dws.challenge.dto;
+
+public class TransferResult {
+
+    private final int index;
+    private final boolean success;
+    private final String message;
+
+    public TransferResult(int index, boolean success, String message) {
+        this.index = index;
+        this.success = success;
+        this.message = message;
+    }
+
+    public static TransferResult succeeded(int index) {
+        return new TransferResult(index, true, "Transfer successful");
+    }
+
+    public static TransferResult failed(int index, String message) {
+        return new TransferResult(index, false, message);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -1,6 +1,7 @@
 package com.dws.challenge.exception;
 
 import com.dws.challenge.dto.ResponseWrapper;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
@@ -85,6 +86,61 @@ public class GlobalExceptionHandler {
     }
 
 
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<ResponseWrapper<Object>> handleIdempotencyKeyReusedException(
+            IdempotencyKeyReusedException ex, WebRequest request) {
+
+        ResponseWrapper<Object> response = new ResponseWrapper<>(
+                null,
+                ex.getMessage(),
+                HttpStatus.UNPROCESSABLE_ENTITY.value()
+        );
+
+        return new ResponseEntity<>(response, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler(ConcurrentUpdateException.class)
+    public ResponseEntity<ResponseWrapper<Object>> handleConcurrentUpdateException(
+            ConcurrentUpdateException ex, WebRequest request) {
+
+        ResponseWrapper<Object> response = new ResponseWrapper<>(
+                null,
+                ex.getMessage(),
+                HttpStatus.CONFLICT.value()
+        );
+
+        return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(PartitionUnavailableException.class)
+    public ResponseEntity<ResponseWrapper<Object>> handlePartitionUnavailableException(
+            PartitionUnavailableException ex, WebRequest request) {
+
+        ResponseWrapper<Object> response = new ResponseWrapper<>(
+                null,
+                ex.getMessage(),
+                HttpStatus.SERVICE_UNAVAILABLE.value()
+        );
+
+        return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    // Sent as soon as admission control refuses a transfer, so the client backs off instead of queueing
+    @ExceptionHandler(TooManyTransfersException.class)
+    public ResponseEntity<ResponseWrapper<Object>> handleTooManyTransfersException(
+            TooManyTransfersException ex, WebRequest request) {
+
+        ResponseWrapper<Object> response = new ResponseWrapper<>(
+                null,
+                ex.getMessage(),
+                HttpStatus.TOO_MANY_REQUESTS.value()
+        );
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ResponseWrapper<Object>> handleGeneralException(
             Exception ex, WebRequest request) {
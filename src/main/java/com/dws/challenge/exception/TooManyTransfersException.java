@@ -0,0 +1,49 @@
+package com.dws.challenge.exception;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A transfer turned away by admission control before it reached an account. Stackless, and the
+ * message is only built if something reads it, so that rejecting a flood costs next to nothing.
+ */
+public class TooManyTransfersException extends RuntimeException {
+
+    public enum Reason {
+        CLIENT_RATE,
+        ACCOUNT_RATE,
+        OVERLOADED
+    }
+
+    /** Shared instance for a transfer that found the concurrency limit reached. */
+    public static final TooManyTransfersException OVERLOADED =
+            new TooManyTransfersException(Reason.OVERLOADED, null, TimeUnit.SECONDS.toNanos(1));
+
+    private final Reason reason;
+    private final String key;
+    private final long retryAfterNanos;
+
+    public TooManyTransfersException(Reason reason, String key, long retryAfterNanos) {
+        super(null, null, false, false);
+        this.reason = reason;
+        this.key = key;
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /** Whole seconds until a retry may succeed, at least one, for a Retry-After header. */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfterNanos + 999_999_999) / 1_000_000_000);
+    }
+
+    @Override
+    public String getMessage() {
+        return switch (reason) {
+            case CLIENT_RATE -> "Too many transfers from client " + key + ", retry later";
+            case ACCOUNT_RATE -> "Too many transfers from account " + key + ", retry later";
+            case OVERLOADED -> "Too many transfers in progress, retry later";
+        };
+    }
+}
@@ -1,7 +1,22 @@
 package com.dws.challenge.exception;
 
 public class TransferException extends RuntimeException{
+
+    /** Shared instance for a missing, zero or negative amount. */
+    public static final TransferException INVALID_AMOUNT =
+            new TransferException("Transfer amount must be positive", false);
+
+    /** Shared instance for a transfer from an account to itself. */
+    public static final TransferException SAME_ACCOUNT =
+            new TransferException("Transfer must be between two different accounts", false);
+
     public TransferException(String message){
         super(message);
     }
+
+    // Rejections are part of normal traffic, so the common ones skip the stack trace, which would
+    // otherwise cost more than the rejection itself; suppression is off so shared instances stay immutable
+    protected TransferException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
@@ -0,0 +1,21 @@
+package com.dws.challenge.exception;
+
+/** Stackless; the message is only built if something reads it. */
+public class UnknownAccountException extends TransferException {
+
+    private final String accountId;
+
+    public UnknownAccountException(String accountId) {
+        super(null, false);
+        this.accountId = accountId;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Account number " + accountId + " not found";
+    }
+}
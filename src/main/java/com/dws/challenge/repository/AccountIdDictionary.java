@@ -0,0 +1,146 @@
+package com.dws.challenge.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interns account ids: maps each id to a dense {@code int} handle, 0, 1, 2, ... in the order the
+ * ids are first added, and back again. Ids are never removed and handles never reused, so a handle
+ * names the same id for as long as the dictionary exists.
+ *
+ * <p>The table is open-addressed over parallel arrays of keys, hash codes and handles, so an entry
+ * costs no node and no boxed Integer, and a probe compares a stored hash before it compares
+ * strings. Lookups take no lock. Additions are serialized; an entry's hash and handle are written
+ * before its key is published, and a grown table is filled before it replaces the old one, so a
+ * reader finds either no entry or a complete one. A reader that misses in a table that has since
+ * been replaced looks again in the new one.
+ */
+public final class AccountIdDictionary {
+
+    public static final int NO_HANDLE = -1;
+
+    private final Object addLock = new Object();
+
+    // Written only under addLock; volatile so readers see grown arrays
+    private volatile Table table = new Table(1024);
+    private volatile String[] accountIds = new String[512];
+    private volatile int size;
+
+    /** Returns the handle of {@code accountId}, or {@link #NO_HANDLE} if it was never added. */
+    public int handleOf(String accountId) {
+        int hash = spread(accountId.hashCode());
+        Table current = table;
+        while (true) {
+            int handle = current.find(accountId, hash);
+            if (handle != NO_HANDLE) {
+                return handle;
+            }
+            Table latest = table;
+            if (latest == current) {
+                return NO_HANDLE;
+            }
+            current = latest;
+        }
+    }
+
+    /** Returns the handle of {@code accountId}, adding the id first if it is new. */
+    public int intern(String accountId) {
+        int handle = handleOf(accountId);
+        if (handle != NO_HANDLE) {
+            return handle;
+        }
+        int hash = spread(accountId.hashCode());
+        synchronized (addLock) {
+            Table current = table;
+            handle = current.find(accountId, hash);
+            if (handle != NO_HANDLE) {
+                return handle;
+            }
+            handle = size;
+            if (handle == accountIds.length) {
+                accountIds = Arrays.copyOf(accountIds, accountIds.length * 2);
+            }
+            // Written before the key is published, so whoever finds the handle can read the id back
+            accountIds[handle] = accountId;
+            if (handle + 1 > current.capacity() / 2) {
+                current = current.grown();
+                table = current;
+            }
+            current.insert(accountId, hash, handle);
+            size = handle + 1;
+            return handle;
+        }
+    }
+
+    /** Returns the id behind {@code handle}, or null if no id has that handle. */
+    public String accountIdOf(int handle) {
+        if (handle < 0 || handle >= size) {
+            return null;
+        }
+        return accountIds[handle];
+    }
+
+    /** Number of ids added, which is also one more than the highest handle. */
+    public int size() {
+        return size;
+    }
+
+    // String hash codes of similar ids differ mostly in their low bits; fold the high bits in too
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Table {
+
+        final AtomicReferenceArray<String> keys;
+        final int[] hashes;
+        final int[] handles;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicReferenceArray<>(capacity);
+            hashes = new int[capacity];
+            handles = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        int find(String accountId, int hash) {
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                String key = keys.getAcquire(i);
+                if (key == null) {
+                    return NO_HANDLE;
+                }
+                if (key == accountId || (hashes[i] == hash && key.equals(accountId))) {
+                    return handles[i];
+                }
+            }
+        }
+
+        // Called under addLock
+        void insert(String accountId, int hash, int handle) {
+            int i = hash & mask;
+            while (keys.getPlain(i) != null) {
+                i = (i + 1) & mask;
+            }
+            hashes[i] = hash;
+            handles[i] = handle;
+            keys.setRelease(i, accountId);
+        }
+
+        // Called under addLock
+        Table grown() {
+            Table grown = new Table(capacity() * 2);
+            for (int i = 0; i < capacity(); i++) {
+                String key = keys.getPlain(i);
+                if (key != null) {
+                    grown.insert(key, hashes[i], handles[i]);
+                }
+            }
+            return grown;
+        }
+    }
+}
@@ -3,18 +3,82 @@ package com.dws.challenge.repository;
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
 
+  /**
+   * Creates every account in {@code batch} whose id is not taken, including by an earlier account
+   * in the same batch, and returns the ids that were, in batch order. Duplicates are reported
+   * rather than thrown. Implementations make room for the whole batch up front and take their
+   * creation lock once per batch; this default is only a fallback.
+   */
+  default List<String> createAccounts(List<Account> batch) {
+    List<String> duplicates = new ArrayList<>();
+    for (Account account : batch) {
+      try {
+        createAccount(account);
+      } catch (DuplicateAccountIdException e) {
+        duplicates.add(account.getAccountId());
+      }
+    }
+    return duplicates;
+  }
+
   Account getAccount(String accountId);
 
   void clearAccounts();
 
   void updateAccount(Account account);
 
+  /**
+   * Stores {@code account}'s balance only if the stored account is still at {@code expectedVersion},
+   * and bumps the version. Returns false, changing nothing, if another update got there first.
+   */
+  default boolean updateIfVersion(Account account, long expectedVersion) {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support versioned updates");
+  }
+
+  /** Whether {@link #updateIfVersion} is implemented, as optimistic transfers require. */
+  default boolean supportsVersionedUpdates() {
+    return false;
+  }
+
   Collection<Account> getAllAccounts();
+
+  /** Number of accounts held, without copying them. */
+  default int size() {
+    return getAllAccounts().size();
+  }
+
+  /**
+   * Returns up to {@code limit} accounts with ids strictly after {@code afterAccountId} (or from the
+   * start when it is null), in accountId order. Implementations keep a sorted id index so a page
+   * costs O(log n + limit); this default sorts everything and is only a fallback.
+   */
+  default List<Account> getAccountsPage(String afterAccountId, int limit) {
+    return getAllAccounts().stream()
+        .filter(account -> afterAccountId == null || account.getAccountId().compareTo(afterAccountId) > 0)
+        .sorted(Comparator.comparing(Account::getAccountId))
+        .limit(limit)
+        .toList();
+  }
+
+  /**
+   * Records a committed transfer in the repository's journal, if it keeps one, and returns the
+   * journal position to pass to {@link #awaitDurable(long)}.
+   */
+  default long journalTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+    return 0;
+  }
+
+  /** Blocks until the journal is durable up to the given position. */
+  default void awaitDurable(long journalPosition) {
+  }
 }
@@ -0,0 +1,284 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock-free repository that stores balances as {@code long} minor units in chunked
+ * {@link AtomicLongArray}s. Each account id is mapped to a slot once, when it is created;
+ * debits and credits are then plain CAS / add operations on that slot. Chunks are only ever added,
+ * so a slot stays addressable for as long as the repository lives.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "fixed-point")
+public class AccountsRepositoryFixedPoint implements MinorUnitAccountsRepository {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int scale;
+    private final TransferJournal journal;
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final NavigableSet<String> sortedIds = new ConcurrentSkipListSet<>();  // Index for paging
+    private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+    private int nextSlot;
+    // Serializes account creation; a lock rather than a monitor as it may wait on journal I/O
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public AccountsRepositoryFixedPoint(int scale) {
+        this(scale, Optional.empty());
+    }
+
+    @Autowired
+    public AccountsRepositoryFixedPoint(@Value("${accounts.fixed-point.scale:2}") int scale,
+                                        Optional<TransferJournal> journal) {
+        this.scale = scale;
+        this.journal = journal.orElse(null);
+        if (this.journal != null) {
+            this.journal.replay(new JournalReplay());
+        }
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        writeLock.lock();
+        try {
+            if (slots.containsKey(account.getAccountId())) {
+                throw new DuplicateAccountIdException(
+                        "Account id " + account.getAccountId() + " already exists!");
+            }
+            long balance = toMinorUnits(account.getBalance());
+            if (journal != null) {
+                journal.appendAccountCreated(account.getAccountId(), account.getBalance());
+            }
+            insert(account.getAccountId(), balance);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<String> createAccounts(List<Account> batch) {
+        List<String> duplicates = new ArrayList<>();
+        writeLock.lock();
+        try {
+            ensureChunks(nextSlot + batch.size());
+            for (Account account : batch) {
+                if (slots.containsKey(account.getAccountId())) {
+                    duplicates.add(account.getAccountId());
+                    continue;
+                }
+                long balance = toMinorUnits(account.getBalance());
+                if (journal != null) {
+                    journal.appendAccountCreated(account.getAccountId(), account.getBalance());
+                }
+                insert(account.getAccountId(), balance);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return duplicates;
+    }
+
+    // Called with the write lock held
+    private void insert(String accountId, long balance) {
+        int slot = nextSlot++;
+        chunkFor(slot).set(slot & CHUNK_MASK, balance);
+        slots.put(accountId, slot);  // Publish the slot only once its balance is written
+        sortedIds.add(accountId);
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        int slot = slotOf(accountId);
+        if (slot == NO_SLOT) {
+            return null;
+        }
+        return new Account(accountId, BigDecimal.valueOf(balanceOf(slot), scale));
+    }
+
+    @Override
+    public void clearAccounts() {
+        writeLock.lock();
+        try {
+            if (journal != null) {
+                journal.appendAccountsCleared();
+            }
+            reset();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Slots are retired rather than recycled: a transfer that resolved a slot before the clear still
+    // finds its chunk, and its late debit or credit lands on a slot no account maps to any more
+    private void reset() {
+        slots.clear();
+        sortedIds.clear();
+    }
+
+    @Override
+    public void updateAccount(Account account) {
+        int slot = slotOf(account.getAccountId());
+        if (slot == NO_SLOT) {
+            createAccount(account);
+            return;
+        }
+        chunks[slot >>> CHUNK_BITS].set(slot & CHUNK_MASK, toMinorUnits(account.getBalance()));
+    }
+
+    @Override
+    public int size() {
+        return slots.size();
+    }
+
+    @Override
+    public Collection<Account> getAllAccounts() {
+        List<Account> accounts = new ArrayList<>(slots.size());
+        slots.forEach((accountId, slot) ->
+                accounts.add(new Account(accountId, BigDecimal.valueOf(balanceOf(slot), scale))));
+        return accounts;
+    }
+
+    @Override
+    public List<Account> getAccountsPage(String afterAccountId, int limit) {
+        NavigableSet<String> ids = afterAccountId == null ? sortedIds : sortedIds.tailSet(afterAccountId, false);
+        List<Account> page = new ArrayList<>(Math.min(limit, 1024));
+        for (String accountId : ids) {
+            if (page.size() == limit) {
+                break;
+            }
+            Account account = getAccount(accountId);
+            if (account != null) {
+                page.add(account);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public int slotOf(String accountId) {
+        Integer slot = slots.get(accountId);
+        return slot == null ? NO_SLOT : slot;
+    }
+
+    @Override
+    public long toMinorUnits(BigDecimal amount) {
+        try {
+            return amount.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(
+                    "Amount " + amount + " cannot be represented with " + scale + " decimal places");
+        }
+    }
+
+    @Override
+    public long balanceOf(int slot) {
+        return chunks[slot >>> CHUNK_BITS].get(slot & CHUNK_MASK);
+    }
+
+    @Override
+    public boolean tryDebit(int slot, long amount) {
+        AtomicLongArray chunk = chunks[slot >>> CHUNK_BITS];
+        int index = slot & CHUNK_MASK;
+        long current;
+        do {
+            current = chunk.get(index);
+            if (current < amount) {
+                return false;
+            }
+        } while (!chunk.compareAndSet(index, current, current - amount));
+        return true;
+    }
+
+    @Override
+    public void credit(int slot, long amount) {
+        chunks[slot >>> CHUNK_BITS].addAndGet(slot & CHUNK_MASK, amount);
+    }
+
+    @Override
+    public long journalTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+        return journal == null ? 0 : journal.appendTransfer(accountFromId, accountToId, amount);
+    }
+
+    @Override
+    public void awaitDurable(long journalPosition) {
+        if (journal != null) {
+            journal.awaitDurable(journalPosition);
+        }
+    }
+
+    // Called with the write lock held; existing chunks are reused so concurrent CAS loops keep working
+    private AtomicLongArray chunkFor(int slot) {
+        int chunkIndex = slot >>> CHUNK_BITS;
+        if (chunkIndex >= chunks.length) {
+            AtomicLongArray[] grown = Arrays.copyOf(chunks, chunkIndex + 1);
+            grown[chunkIndex] = new AtomicLongArray(CHUNK_SIZE);
+            chunks = grown;
+        }
+        return chunks[chunkIndex];
+    }
+
+    // Called with the write lock held; allocates every chunk needed for slots below slotCount at once
+    private void ensureChunks(int slotCount) {
+        int needed = (slotCount + CHUNK_MASK) >>> CHUNK_BITS;
+        if (needed <= chunks.length) {
+            return;
+        }
+        AtomicLongArray[] grown = Arrays.copyOf(chunks, needed);
+        for (int i = chunks.length; i < needed; i++) {
+            grown[i] = new AtomicLongArray(CHUNK_SIZE);
+        }
+        chunks = grown;
+    }
+
+    // Runs from the constructor, before the repository is shared
+    private class JournalReplay implements TransferJournal.Visitor {
+
+        @Override
+        public void accountCreated(String accountId, BigDecimal balance) {
+            if (!slots.containsKey(accountId)) {
+                insert(accountId, toMinorUnits(balance));
+            }
+        }
+
+        @Override
+        public void transfer(String accountFromId, String accountToId, BigDecimal amount) {
+            int from = slotOf(accountFromId);
+            int to = slotOf(accountToId);
+            if (from == NO_SLOT || to == NO_SLOT) {
+                log.warn("Skipping journaled transfer from {} to {}: the accounts were cleared under it",
+                        accountFromId, accountToId);
+                return;
+            }
+            long minorAmount = toMinorUnits(amount);
+            credit(from, -minorAmount);
+            credit(to, minorAmount);
+        }
+
+        @Override
+        public void accountsCleared() {
+            reset();
+        }
+    }
+}
@@ -1,46 +1,358 @@
 package com.dws.challenge.repository;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ShardedAccount;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Keeps accounts on the heap, in chunked arrays indexed by the handle that {@link AccountIdDictionary}
+ * gives each id when it is first stored. Looking an account up by id costs one probe of the
+ * dictionary, and by handle one array read; storing an account is a write to its slot.
+ */
+@Slf4j
 @Repository
-public class AccountsRepositoryInMemory implements AccountsRepository {
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "in-memory", matchIfMissing = true)
+public class AccountsRepositoryInMemory implements InternedAccountsRepository {
 
-    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final AccountIdDictionary accountIds = new AccountIdDictionary();
+    private final Object growLock = new Object();
+    // Grown only under growLock, and only ever by whole chunks; volatile so readers see grown arrays
+    @SuppressWarnings("unchecked")
+    private volatile AtomicReferenceArray<Account>[] chunks = newChunks(new AtomicReferenceArray[0], 1);
+    private final AtomicInteger size = new AtomicInteger();
+    private final NavigableSet<String> sortedIds = new ConcurrentSkipListSet<>();  // Index for paging
+    private final TransferJournal journal;
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private final Set<String> shardedAccountIds;
+    private final int shardCount;
+
+    public AccountsRepositoryInMemory() {
+        this(Optional.empty());
+    }
+
+    public AccountsRepositoryInMemory(Optional<TransferJournal> journal) {
+        this(journal, Set.of(), 1);
+    }
+
+    /**
+     * Accounts whose id is in {@code shardedAccountIds} are stored as {@link ShardedAccount}s with
+     * {@code shardCount} shards, so credits to them do not contend.
+     */
+    @Autowired
+    public AccountsRepositoryInMemory(Optional<TransferJournal> journal,
+                                      @Value("${accounts.sharded.ids:}") Set<String> shardedAccountIds,
+                                      @Value("${accounts.sharded.shards:16}") int shardCount) {
+        this.journal = journal.orElse(null);
+        this.shardedAccountIds = Set.copyOf(shardedAccountIds);
+        this.shardCount = shardCount;
+        if (this.journal != null) {
+            this.journal.replay(new JournalReplay());
+        }
+    }
 
     @Override
     public void createAccount(Account account) throws DuplicateAccountIdException {
-        Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-        if (previousAccount != null) {
-            throw new DuplicateAccountIdException(
-                    "Account id " + account.getAccountId() + " already exists!");
+        account = toStored(account);
+        int handle = accountIds.intern(account.getAccountId());
+        AtomicReferenceArray<Account> chunk = chunkFor(handle);
+        if (journal == null) {
+            if (!chunk.compareAndSet(handle & CHUNK_MASK, null, account)) {
+                throw new DuplicateAccountIdException(
+                        "Account id " + account.getAccountId() + " already exists!");
+            }
+            size.incrementAndGet();
+            sortedIds.add(account.getAccountId());
+            return;
+        }
+
+        // Creation is serialized so the record is journaled before the account becomes visible to
+        // transfers; a lock rather than a compare-and-set as the append may wait on journal I/O
+        journalLock.lock();
+        try {
+            if (chunk.get(handle & CHUNK_MASK) != null) {
+                throw new DuplicateAccountIdException(
+                        "Account id " + account.getAccountId() + " already exists!");
+            }
+            journal.appendAccountCreated(account.getAccountId(), account.getBalance());
+            chunk.set(handle & CHUNK_MASK, account);
+            size.incrementAndGet();
+        } finally {
+            journalLock.unlock();
+        }
+        sortedIds.add(account.getAccountId());
+    }
+
+    // Parallel importers only wait on each other to add a new id to the dictionary; storing the
+    // account is then a compare-and-set on its own slot
+    @Override
+    public List<String> createAccounts(List<Account> batch) {
+        List<String> duplicates = new ArrayList<>();
+        List<String> created = new ArrayList<>(batch.size());
+        if (journal == null) {
+            for (Account account : batch) {
+                account = toStored(account);
+                int handle = accountIds.intern(account.getAccountId());
+                if (chunkFor(handle).compareAndSet(handle & CHUNK_MASK, null, account)) {
+                    created.add(account.getAccountId());
+                } else {
+                    duplicates.add(account.getAccountId());
+                }
+            }
+        } else {
+            journalLock.lock();
+            try {
+                for (Account account : batch) {
+                    account = toStored(account);
+                    int handle = accountIds.intern(account.getAccountId());
+                    AtomicReferenceArray<Account> chunk = chunkFor(handle);
+                    if (chunk.get(handle & CHUNK_MASK) != null) {
+                        duplicates.add(account.getAccountId());
+                        continue;
+                    }
+                    journal.appendAccountCreated(account.getAccountId(), account.getBalance());
+                    chunk.set(handle & CHUNK_MASK, account);
+                    created.add(account.getAccountId());
+                }
+            } finally {
+                journalLock.unlock();
+            }
         }
+        size.addAndGet(created.size());
+        sortedIds.addAll(created);
+        return duplicates;
     }
 
     @Override
     public Account getAccount(String accountId) {
-        return accounts.get(accountId);
+        return getAccount(accountIds.handleOf(accountId));
+    }
+
+    @Override
+    public int handleOf(String accountId) {
+        return accountIds.handleOf(accountId);
+    }
+
+    @Override
+    public String accountIdOf(int handle) {
+        return accountIds.accountIdOf(handle);
     }
 
+    @Override
+    public Account getAccount(int handle) {
+        if (handle < 0) {
+            return null;
+        }
+        AtomicReferenceArray<Account>[] current = chunks;
+        int index = handle >>> CHUNK_BITS;
+        return index < current.length ? current[index].get(handle & CHUNK_MASK) : null;
+    }
+
+    // Ids keep their handles, so an account created again after a clear lands in its old slot
     @Override
     public void clearAccounts() {
-        accounts.clear();
+        if (journal != null) {
+            journal.appendAccountsCleared();
+        }
+        clearSlots();
+        sortedIds.clear();
     }
 
     @Override
     public void updateAccount(Account account) {
-        accounts.put(account.getAccountId(), account);  // Save the modified account with updated balance back to the repository
+        updateAccount(accountIds.intern(account.getAccountId()), account);
+    }
+
+    @Override
+    public void updateAccount(int handle, Account account) {
+        // Save the modified account with updated balance back to the repository
+        AtomicReferenceArray<Account> chunk = chunkFor(handle);
+        int slot = handle & CHUNK_MASK;
+        while (true) {
+            Account current = chunk.get(slot);
+            // Bumped past whatever is stored, and swapped in against it, so an optimistic update that
+            // replaced the account in between cannot leave two states with one version
+            long stored = current == null ? account.getVersion() : Math.max(current.getVersion(), account.getVersion());
+            account.setVersion(stored + 1);
+            // When the account is already stored, as after every in-place transfer, this only publishes its version
+            if (chunk.compareAndSet(slot, current, account)) {
+                if (current == null) {
+                    size.incrementAndGet();
+                    sortedIds.add(account.getAccountId());
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsVersionedUpdates() {
+        return true;
+    }
+
+    // Replaces the stored Account rather than mutating it, so readers always see a balance and
+    // version that belong together
+    @Override
+    public boolean updateIfVersion(Account account, long expectedVersion) {
+        int handle = accountIds.handleOf(account.getAccountId());
+        while (true) {
+            Account current = getAccount(handle);
+            if (current == null) {
+                return false;
+            }
+            if (current instanceof ShardedAccount) {
+                throw new IllegalStateException(
+                        "Sharded account " + account.getAccountId() + " is updated through its shards");
+            }
+            if (current.getVersion() != expectedVersion) {
+                return false;
+            }
+            Account next = new Account(account.getAccountId(), account.getBalance());
+            next.setVersion(expectedVersion + 1);
+            // A failed swap means another update replaced the account; look again at its version
+            if (chunks[handle >>> CHUNK_BITS].compareAndSet(handle & CHUNK_MASK, current, next)) {
+                return true;
+            }
+        }
     }
 
     @Override
     public Collection<Account> getAllAccounts(){
-        return this.accounts.values();
+        List<Account> all = new ArrayList<>(size.get());
+        for (int handle = 0; handle < accountIds.size(); handle++) {
+            Account account = getAccount(handle);
+            if (account != null) {
+                all.add(account);
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public List<Account> getAccountsPage(String afterAccountId, int limit) {
+        NavigableSet<String> ids = afterAccountId == null ? sortedIds : sortedIds.tailSet(afterAccountId, false);
+        List<Account> page = new ArrayList<>(Math.min(limit, 1024));
+        for (String accountId : ids) {
+            if (page.size() == limit) {
+                break;
+            }
+            Account account = getAccount(accountId);
+            if (account != null) {
+                page.add(account);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public long journalTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+        return journal == null ? 0 : journal.appendTransfer(accountFromId, accountToId, amount);
+    }
+
+    @Override
+    public void awaitDurable(long journalPosition) {
+        if (journal != null) {
+            journal.awaitDurable(journalPosition);
+        }
+    }
+
+    private Account toStored(Account account) {
+        if (shardedAccountIds.contains(account.getAccountId())) {
+            return new ShardedAccount(account.getAccountId(), account.getBalance(), shardCount);
+        }
+        return account;
     }
 
+    // The chunk holding the slot for handle, growing the chunk array to reach it if need be
+    private AtomicReferenceArray<Account> chunkFor(int handle) {
+        int index = handle >>> CHUNK_BITS;
+        AtomicReferenceArray<Account>[] current = chunks;
+        if (index < current.length) {
+            return current[index];
+        }
+        synchronized (growLock) {
+            current = chunks;
+            if (index >= current.length) {
+                current = newChunks(current, Math.max(index + 1, current.length * 2));
+                chunks = current;
+            }
+            return current[index];
+        }
+    }
+
+    private void clearSlots() {
+        AtomicReferenceArray<Account>[] current = chunks;
+        int handles = accountIds.size();
+        for (int handle = 0; handle < handles; handle++) {
+            if (current[handle >>> CHUNK_BITS].getAndSet(handle & CHUNK_MASK, null) != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<Account>[] newChunks(AtomicReferenceArray<Account>[] existing, int length) {
+        AtomicReferenceArray<Account>[] grown = Arrays.copyOf(existing, length);
+        for (int i = existing.length; i < length; i++) {
+            grown[i] = new AtomicReferenceArray<>(CHUNK_SIZE);
+        }
+        return grown;
+    }
+
+    private class JournalReplay implements TransferJournal.Visitor {
+
+        @Override
+        public void accountCreated(String accountId, BigDecimal balance) {
+            int handle = accountIds.intern(accountId);
+            if (chunkFor(handle).compareAndSet(handle & CHUNK_MASK, null, toStored(new Account(accountId, balance)))) {
+                size.incrementAndGet();
+                sortedIds.add(accountId);
+            }
+        }
+
+        @Override
+        public void transfer(String accountFromId, String accountToId, BigDecimal amount) {
+            Account accountFrom = getAccount(accountFromId);
+            Account accountTo = getAccount(accountToId);
+            if (accountFrom == null || accountTo == null) {
+                log.warn("Skipping journaled transfer from {} to {}: the accounts were cleared under it",
+                        accountFromId, accountToId);
+                return;
+            }
+            accountFrom.setBalance(accountFrom.getBalance().subtract(amount));
+            accountTo.setBalance(accountTo.getBalance().add(amount));
+        }
+
+        @Override
+        public void accountsCleared() {
+            clearSlots();
+            sortedIds.clear();
+        }
+    }
 }
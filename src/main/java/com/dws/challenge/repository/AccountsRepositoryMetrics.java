@@ -0,0 +1,26 @@
+package com.dws.challenge.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/** Publishes the size of whichever {@link AccountsRepository} is active. */
+@Component
+public class AccountsRepositoryMetrics implements MeterBinder {
+
+    private final AccountsRepository accountsRepository;
+
+    public AccountsRepositoryMetrics(AccountsRepository accountsRepository) {
+        this.accountsRepository = accountsRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("accounts.repository.size", accountsRepository, AccountsRepository::size)
+                .description("Number of accounts in the repository")
+                .tag("implementation", ClassUtils.getUserClass(accountsRepository).getSimpleName())
+                .register(registry);
+    }
+}
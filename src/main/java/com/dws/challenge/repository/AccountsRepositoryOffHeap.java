@@ -0,0 +1,559 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock-free repository that keeps account ids and balances in direct {@link ByteBuffer}s, outside
+ * the Java heap, so tens of millions of accounts leave the garbage collector almost nothing to
+ * trace. {@link Account} objects exist only as short-lived views built at the API boundary.
+ *
+ * <p>Each account is a 24-byte record in chunked buffers: its balance in minor units, the offset
+ * of its UTF-8 id in an append-only id arena, the id's hash and its length. Ids are found through
+ * an open-addressing index of (hash, slot) pairs with linear probing, rebuilt at twice the size
+ * when it is 70% full. Balances are updated with CAS / add operations on the record through a
+ * {@link VarHandle}, as in {@link AccountsRepositoryFixedPoint}.
+ *
+ * <p>Creation is serialized by a lock; a record and its id are written before the slot is
+ * published to the index with a release store, so lock-free readers never see a partial account.
+ * Paging walks a sorted array of slots, merged with the accounts created since it was last used.
+ * Clearing starts a new index but keeps the records: slots are retired rather than recycled, so a
+ * transfer that resolved a slot before the clear never lands on an account created after it.
+ * Ids are ordered by their UTF-8 bytes, which matches {@link String} order for all ids without
+ * characters outside the Basic Multilingual Plane.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "off-heap")
+public class AccountsRepositoryOffHeap implements MinorUnitAccountsRepository {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final int RECORD_SIZE = 24;
+    private static final int BALANCE = 0;
+    private static final int ID_OFFSET = 8;
+    private static final int ID_HASH = 16;
+    private static final int ID_LENGTH = 20;
+    private static final int RECORD_CHUNK_BITS = 16;
+    private static final int RECORD_CHUNK_MASK = (1 << RECORD_CHUNK_BITS) - 1;
+
+    private static final int ID_CHUNK_BITS = 20;
+    private static final int ID_CHUNK_SIZE = 1 << ID_CHUNK_BITS;
+    private static final int MAX_ID_BYTES = 1024;
+
+    // Index entry: [int hash][int slot + 1], where 0 marks a free entry
+    private static final int INDEX_ENTRY_SIZE = 8;
+    private static final int MAX_INDEX_CAPACITY = 1 << 27;
+    private static final double MAX_LOAD = 0.7;
+
+    private final int scale;
+    private final TransferJournal journal;
+    private final int initialCapacity;
+    // Serializes creation, clearing and rebuilding the sorted index
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile ByteBuffer[] records = new ByteBuffer[0];
+    private volatile ByteBuffer[] idChunks = new ByteBuffer[0];
+    private volatile ByteBuffer index;
+    // Next slot to allocate; slots below firstLiveSlot were retired by a clear
+    private volatile int count;
+    private volatile int firstLiveSlot;
+    private volatile SortedSlots sorted = SortedSlots.empty(0);
+    private long idArenaEnd;
+    private int indexCapacity;
+
+    public AccountsRepositoryOffHeap(int scale) {
+        this(scale, 1 << 16, Optional.empty());
+    }
+
+    @Autowired
+    public AccountsRepositoryOffHeap(@Value("${accounts.fixed-point.scale:2}") int scale,
+                                     @Value("${accounts.off-heap.initial-capacity:65536}") int initialCapacity,
+                                     Optional<TransferJournal> journal) {
+        this.scale = scale;
+        this.initialCapacity = initialCapacity;
+        this.journal = journal.orElse(null);
+        reset();
+        if (this.journal != null) {
+            this.journal.replay(new JournalReplay());
+        }
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        byte[] id = account.getAccountId().getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Account id is longer than " + MAX_ID_BYTES + " bytes");
+        }
+        long balance = toMinorUnits(account.getBalance());
+        writeLock.lock();
+        try {
+            if (slotOf(account.getAccountId()) != NO_SLOT) {
+                throw new DuplicateAccountIdException(
+                        "Account id " + account.getAccountId() + " already exists!");
+            }
+            if (journal != null) {
+                journal.appendAccountCreated(account.getAccountId(), account.getBalance());
+            }
+            insert(id, account.getAccountId().hashCode(), balance);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<String> createAccounts(List<Account> batch) {
+        List<String> duplicates = new ArrayList<>();
+        byte[][] ids = new byte[batch.size()][];
+        long[] balances = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Account account = batch.get(i);
+            ids[i] = account.getAccountId().getBytes(StandardCharsets.UTF_8);
+            if (ids[i].length > MAX_ID_BYTES) {
+                throw new IllegalArgumentException("Account id is longer than " + MAX_ID_BYTES + " bytes");
+            }
+            balances[i] = toMinorUnits(account.getBalance());
+        }
+        writeLock.lock();
+        try {
+            // Rebuild the index once for the whole batch rather than every time it fills up
+            while (size() + batch.size() > indexCapacity * MAX_LOAD && indexCapacity < MAX_INDEX_CAPACITY) {
+                growIndex();
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                Account account = batch.get(i);
+                if (slotOf(account.getAccountId()) != NO_SLOT) {
+                    duplicates.add(account.getAccountId());
+                    continue;
+                }
+                if (journal != null) {
+                    journal.appendAccountCreated(account.getAccountId(), account.getBalance());
+                }
+                insert(ids[i], account.getAccountId().hashCode(), balances[i]);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return duplicates;
+    }
+
+    // Called with the write lock held
+    private void insert(byte[] id, int hash, long balance) {
+        int slot = count;
+        if (size() + 1 > indexCapacity * MAX_LOAD) {
+            growIndex();
+        }
+        long idOffset = appendId(id);
+        ByteBuffer chunk = recordChunkFor(slot);
+        int offset = (slot & RECORD_CHUNK_MASK) * RECORD_SIZE;
+        chunk.putLong(offset + BALANCE, balance);
+        chunk.putLong(offset + ID_OFFSET, idOffset);
+        chunk.putInt(offset + ID_HASH, hash);
+        chunk.putInt(offset + ID_LENGTH, id.length);
+        publish(index, indexCapacity, hash, slot);
+        count = slot + 1;
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        int slot = slotOf(accountId);
+        if (slot == NO_SLOT) {
+            return null;
+        }
+        return new Account(accountId, BigDecimal.valueOf(balanceOf(slot), scale));
+    }
+
+    @Override
+    public void clearAccounts() {
+        writeLock.lock();
+        try {
+            if (journal != null) {
+                journal.appendAccountsCleared();
+            }
+            reset();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Called with the write lock held, or from the constructor. Only the index is replaced: records
+    // and ids stay where they are, and the slots allocated so far are retired
+    private void reset() {
+        int wanted = (int) Math.min(MAX_INDEX_CAPACITY, Math.max(16, initialCapacity / MAX_LOAD));
+        indexCapacity = Integer.highestOneBit(wanted - 1) << 1;  // Next power of two
+        index = ByteBuffer.allocateDirect(indexCapacity * INDEX_ENTRY_SIZE).order(ByteOrder.nativeOrder());
+        firstLiveSlot = count;
+        sorted = SortedSlots.empty(count);
+    }
+
+    @Override
+    public void updateAccount(Account account) {
+        int slot = slotOf(account.getAccountId());
+        if (slot == NO_SLOT) {
+            createAccount(account);
+            return;
+        }
+        LONGS.setVolatile(recordChunk(slot), recordOffset(slot) + BALANCE, toMinorUnits(account.getBalance()));
+    }
+
+    @Override
+    public int size() {
+        // Read the retired boundary first; count only grows, so this is never negative
+        int first = firstLiveSlot;
+        return count - first;
+    }
+
+    @Override
+    public Collection<Account> getAllAccounts() {
+        int first = firstLiveSlot;
+        int end = count;
+        List<Account> accounts = new ArrayList<>(end - first);
+        for (int slot = first; slot < end; slot++) {
+            accounts.add(view(slot));
+        }
+        return accounts;
+    }
+
+    @Override
+    public List<Account> getAccountsPage(String afterAccountId, int limit) {
+        SortedSlots slots = sortedSlots();
+        int position = 0;
+        if (afterAccountId != null) {
+            // Binary search for the first id strictly after the cursor
+            byte[] after = afterAccountId.getBytes(StandardCharsets.UTF_8);
+            int low = 0;
+            int high = slots.size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareId(slots.slotAt(mid), after) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            position = low;
+        }
+        List<Account> page = new ArrayList<>(Math.min(limit, 1024));
+        for (int i = position; i < slots.size && page.size() < limit; i++) {
+            page.add(view(slots.slotAt(i)));
+        }
+        return page;
+    }
+
+    @Override
+    public int slotOf(String accountId) {
+        ByteBuffer table = index;
+        int mask = table.capacity() / INDEX_ENTRY_SIZE - 1;
+        int hash = accountId.hashCode();
+        byte[] utf8 = isAscii(accountId) ? null : accountId.getBytes(StandardCharsets.UTF_8);
+        for (int position = spread(hash) & mask; ; position = (position + 1) & mask) {
+            int entry = position * INDEX_ENTRY_SIZE;
+            int slotPlusOne = (int) INTS.getAcquire(table, entry + 4);
+            if (slotPlusOne == 0) {
+                return NO_SLOT;
+            }
+            if (table.getInt(entry) == hash && idEquals(slotPlusOne - 1, accountId, utf8)) {
+                return slotPlusOne - 1;
+            }
+        }
+    }
+
+    @Override
+    public long toMinorUnits(BigDecimal amount) {
+        try {
+            return amount.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(
+                    "Amount " + amount + " cannot be represented with " + scale + " decimal places");
+        }
+    }
+
+    @Override
+    public long balanceOf(int slot) {
+        return (long) LONGS.getVolatile(recordChunk(slot), recordOffset(slot) + BALANCE);
+    }
+
+    @Override
+    public boolean tryDebit(int slot, long amount) {
+        ByteBuffer chunk = recordChunk(slot);
+        int offset = recordOffset(slot) + BALANCE;
+        long current;
+        do {
+            current = (long) LONGS.getVolatile(chunk, offset);
+            if (current < amount) {
+                return false;
+            }
+        } while (!LONGS.compareAndSet(chunk, offset, current, current - amount));
+        return true;
+    }
+
+    @Override
+    public void credit(int slot, long amount) {
+        LONGS.getAndAdd(recordChunk(slot), recordOffset(slot) + BALANCE, amount);
+    }
+
+    @Override
+    public long journalTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+        return journal == null ? 0 : journal.appendTransfer(accountFromId, accountToId, amount);
+    }
+
+    @Override
+    public void awaitDurable(long journalPosition) {
+        if (journal != null) {
+            journal.awaitDurable(journalPosition);
+        }
+    }
+
+    /** Off-heap bytes held by records, ids and the indexes. */
+    public long getOffHeapBytes() {
+        long bytes = (long) index.capacity() + sorted.slots.capacity();
+        for (ByteBuffer chunk : records) {
+            bytes += chunk.capacity();
+        }
+        for (ByteBuffer chunk : idChunks) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    private Account view(int slot) {
+        return new Account(idOf(slot), BigDecimal.valueOf(balanceOf(slot), scale));
+    }
+
+    private ByteBuffer recordChunk(int slot) {
+        return records[slot >>> RECORD_CHUNK_BITS];
+    }
+
+    private static int recordOffset(int slot) {
+        return (slot & RECORD_CHUNK_MASK) * RECORD_SIZE;
+    }
+
+    // Called with the write lock held; existing chunks are reused so concurrent CAS loops keep working
+    private ByteBuffer recordChunkFor(int slot) {
+        int chunkIndex = slot >>> RECORD_CHUNK_BITS;
+        if (chunkIndex >= records.length) {
+            ByteBuffer[] grown = Arrays.copyOf(records, chunkIndex + 1);
+            grown[chunkIndex] = ByteBuffer.allocateDirect(RECORD_SIZE << RECORD_CHUNK_BITS).order(ByteOrder.nativeOrder());
+            records = grown;
+        }
+        return records[chunkIndex];
+    }
+
+    // Called with the write lock held; an id never spans two chunks
+    private long appendId(byte[] id) {
+        int offsetInChunk = (int) (idArenaEnd & (ID_CHUNK_SIZE - 1));
+        if (offsetInChunk + id.length > ID_CHUNK_SIZE) {
+            idArenaEnd += ID_CHUNK_SIZE - offsetInChunk;
+        }
+        int chunkIndex = (int) (idArenaEnd >>> ID_CHUNK_BITS);
+        if (chunkIndex >= idChunks.length) {
+            ByteBuffer[] grown = Arrays.copyOf(idChunks, chunkIndex + 1);
+            grown[chunkIndex] = ByteBuffer.allocateDirect(ID_CHUNK_SIZE);
+            idChunks = grown;
+        }
+        long offset = idArenaEnd;
+        idChunks[chunkIndex].put((int) (offset & (ID_CHUNK_SIZE - 1)), id);
+        idArenaEnd += id.length;
+        return offset;
+    }
+
+    private String idOf(int slot) {
+        ByteBuffer chunk = recordChunk(slot);
+        int offset = recordOffset(slot);
+        long idOffset = chunk.getLong(offset + ID_OFFSET);
+        byte[] id = new byte[chunk.getInt(offset + ID_LENGTH)];
+        idChunks[(int) (idOffset >>> ID_CHUNK_BITS)].get((int) (idOffset & (ID_CHUNK_SIZE - 1)), id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    // Compares without decoding; utf8 is null when the id is ASCII, so each char is one byte
+    private boolean idEquals(int slot, String accountId, byte[] utf8) {
+        ByteBuffer chunk = recordChunk(slot);
+        int offset = recordOffset(slot);
+        int length = chunk.getInt(offset + ID_LENGTH);
+        if (length != (utf8 == null ? accountId.length() : utf8.length)) {
+            return false;
+        }
+        long idOffset = chunk.getLong(offset + ID_OFFSET);
+        ByteBuffer ids = idChunks[(int) (idOffset >>> ID_CHUNK_BITS)];
+        int start = (int) (idOffset & (ID_CHUNK_SIZE - 1));
+        for (int i = 0; i < length; i++) {
+            int expected = utf8 == null ? accountId.charAt(i) : utf8[i];
+            if (ids.get(start + i) != (byte) expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int compareId(int slot, byte[] other) {
+        ByteBuffer chunk = recordChunk(slot);
+        int offset = recordOffset(slot);
+        int length = chunk.getInt(offset + ID_LENGTH);
+        long idOffset = chunk.getLong(offset + ID_OFFSET);
+        ByteBuffer ids = idChunks[(int) (idOffset >>> ID_CHUNK_BITS)];
+        int start = (int) (idOffset & (ID_CHUNK_SIZE - 1));
+        for (int i = 0; i < Math.min(length, other.length); i++) {
+            int diff = Byte.toUnsignedInt(ids.get(start + i)) - Byte.toUnsignedInt(other[i]);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - other.length;
+    }
+
+    private int compareSlots(int left, int right) {
+        ByteBuffer leftChunk = recordChunk(left);
+        ByteBuffer rightChunk = recordChunk(right);
+        int leftLength = leftChunk.getInt(recordOffset(left) + ID_LENGTH);
+        int rightLength = rightChunk.getInt(recordOffset(right) + ID_LENGTH);
+        long leftOffset = leftChunk.getLong(recordOffset(left) + ID_OFFSET);
+        long rightOffset = rightChunk.getLong(recordOffset(right) + ID_OFFSET);
+        ByteBuffer leftIds = idChunks[(int) (leftOffset >>> ID_CHUNK_BITS)];
+        ByteBuffer rightIds = idChunks[(int) (rightOffset >>> ID_CHUNK_BITS)];
+        int leftStart = (int) (leftOffset & (ID_CHUNK_SIZE - 1));
+        int rightStart = (int) (rightOffset & (ID_CHUNK_SIZE - 1));
+        for (int i = 0; i < Math.min(leftLength, rightLength); i++) {
+            int diff = Byte.toUnsignedInt(leftIds.get(leftStart + i)) - Byte.toUnsignedInt(rightIds.get(rightStart + i));
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return leftLength - rightLength;
+    }
+
+    // Called with the write lock held; the new table is published only once it is complete
+    private void growIndex() {
+        if (indexCapacity >= MAX_INDEX_CAPACITY) {
+            throw new IllegalStateException("Off-heap account index is full at " + size() + " accounts");
+        }
+        int capacity = indexCapacity << 1;
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity * INDEX_ENTRY_SIZE).order(ByteOrder.nativeOrder());
+        for (int slot = firstLiveSlot; slot < count; slot++) {
+            publish(grown, capacity, recordChunk(slot).getInt(recordOffset(slot) + ID_HASH), slot);
+        }
+        index = grown;
+        indexCapacity = capacity;
+    }
+
+    private static void publish(ByteBuffer table, int capacity, int hash, int slot) {
+        int mask = capacity - 1;
+        int position = spread(hash) & mask;
+        while ((int) INTS.getAcquire(table, position * INDEX_ENTRY_SIZE + 4) != 0) {
+            position = (position + 1) & mask;
+        }
+        table.putInt(position * INDEX_ENTRY_SIZE, hash);
+        INTS.setRelease(table, position * INDEX_ENTRY_SIZE + 4, slot + 1);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Slots are allocated in sequence, so the accounts created since the last build are exactly
+    // [sorted.end, count); they are sorted on their own and merged in
+    private SortedSlots sortedSlots() {
+        SortedSlots current = sorted;
+        if (current.end == count) {
+            return current;
+        }
+        writeLock.lock();
+        try {
+            current = sorted;
+            int end = count;
+            if (current.end == end) {
+                return current;
+            }
+            Integer[] added = new Integer[end - current.end];
+            for (int i = 0; i < added.length; i++) {
+                added[i] = current.end + i;
+            }
+            int size = current.size + added.length;
+            Arrays.sort(added, this::compareSlots);
+
+            ByteBuffer merged = ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder());
+            int existing = 0;
+            int fresh = 0;
+            for (int i = 0; i < size; i++) {
+                boolean takeExisting = fresh == added.length
+                        || (existing < current.size && compareSlots(current.slotAt(existing), added[fresh]) < 0);
+                merged.putInt(i * Integer.BYTES, takeExisting ? current.slotAt(existing++) : added[fresh++]);
+            }
+            sorted = new SortedSlots(merged, size, end);
+            return sorted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // The live slots below end, in id order
+    private record SortedSlots(ByteBuffer slots, int size, int end) {
+
+        static SortedSlots empty(int end) {
+            return new SortedSlots(ByteBuffer.allocateDirect(0), 0, end);
+        }
+
+        int slotAt(int position) {
+            return slots.getInt(position * Integer.BYTES);
+        }
+    }
+
+    // Runs from the constructor, before the repository is shared
+    private class JournalReplay implements TransferJournal.Visitor {
+
+        @Override
+        public void accountCreated(String accountId, BigDecimal balance) {
+            if (slotOf(accountId) == NO_SLOT) {
+                insert(accountId.getBytes(StandardCharsets.UTF_8), accountId.hashCode(), toMinorUnits(balance));
+            }
+        }
+
+        @Override
+        public void transfer(String accountFromId, String accountToId, BigDecimal amount) {
+            int from = slotOf(accountFromId);
+            int to = slotOf(accountToId);
+            if (from == NO_SLOT || to == NO_SLOT) {
+                log.warn("Skipping journaled transfer from {} to {}: the accounts were cleared under it",
+                        accountFromId, accountToId);
+                return;
+            }
+            long minorAmount = toMinorUnits(amount);
+            credit(from, -minorAmount);
+            credit(to, minorAmount);
+        }
+
+        @Override
+        public void accountsCleared() {
+            reset();
+        }
+    }
+}
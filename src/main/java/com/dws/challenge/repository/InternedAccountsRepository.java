@@ -0,0 +1,30 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+
+/**
+ * An {@link AccountsRepository} that interns every account id to a dense {@code int} handle through
+ * an {@link AccountIdDictionary} and stores accounts in arrays indexed by it. A caller resolves an
+ * id once and from then on reads and updates the account, and indexes its own per-account state,
+ * without hashing the id again. A handle stays bound to its id for the life of the repository, also
+ * across {@link #clearAccounts()}, so a handle cached by a caller never comes to mean another account.
+ */
+public interface InternedAccountsRepository extends AccountsRepository {
+
+    int NO_HANDLE = AccountIdDictionary.NO_HANDLE;
+
+    /**
+     * Returns the handle of {@code accountId}, or {@link #NO_HANDLE} if the id was never stored. An
+     * id keeps its handle after its account is cleared, so {@link #getAccount(int)} may still be null.
+     */
+    int handleOf(String accountId);
+
+    /** Returns the id behind {@code handle}, or null if no id has that handle. */
+    String accountIdOf(int handle);
+
+    /** Returns the account with this handle, or null if there is none, also for an unknown handle. */
+    Account getAccount(int handle);
+
+    /** {@link #updateAccount(Account)} for a caller that already holds the account's handle. */
+    void updateAccount(int handle, Account account);
+}
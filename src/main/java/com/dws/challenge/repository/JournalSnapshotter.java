@@ -0,0 +1,163 @@
+package com.dws.challenge.repository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Periodically folds the sealed journal segments into a new {@link SnapshotFile} and deletes the
+ * segments and snapshots it supersedes, so startup replays one snapshot plus a short tail.
+ *
+ * <p>The snapshot is built from the previous snapshot and the immutable sealed segments rather than
+ * from the live accounts, which makes it consistent as of a segment boundary without ever blocking
+ * transfers. The new snapshot is read back and its checksum verified before anything it supersedes
+ * is deleted.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = {"accounts.journal.enabled", "accounts.snapshot.enabled"}, havingValue = "true")
+public class JournalSnapshotter {
+
+    public record SnapshotStats(long nextSegment, long accounts, long bytes, long durationMillis) {
+    }
+
+    private final TransferJournal journal;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+
+    public JournalSnapshotter(TransferJournal journal,
+                              @Value("${accounts.snapshot.interval-ms:60000}") long intervalMillis) {
+        this.journal = journal;
+        this.intervalMillis = intervalMillis;
+    }
+
+    // Started only once the repository has replayed the journal
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                log.error("Journal snapshot failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes a snapshot covering every sealed segment and compacts the journal. Returns empty when
+     * no segment has been sealed since the last snapshot.
+     */
+    public synchronized Optional<SnapshotStats> snapshot() {
+        long started = System.nanoTime();
+        try {
+            Path previous = journal.latestSnapshot();
+            long firstSegment = previous == null ? 0 : SnapshotFile.nextSegmentOf(previous);
+            long nextSegment = journal.getCurrentSegmentIndex();
+            if (nextSegment <= firstSegment) {
+                return Optional.empty();
+            }
+
+            Map<String, BigDecimal> balances = new HashMap<>();
+            BalanceFold fold = new BalanceFold(balances);
+            if (previous != null) {
+                SnapshotFile.read(previous, fold);
+            }
+            for (long segment = firstSegment; segment < nextSegment; segment++) {
+                journal.readSegment(segment, fold);
+            }
+
+            Path snapshot = SnapshotFile.pathFor(journal.getDirectory(), nextSegment);
+            long bytes = SnapshotFile.write(snapshot, nextSegment, balances);
+            try {
+                SnapshotFile.verify(snapshot);
+            } catch (IOException e) {
+                // The previous snapshot and the segments are still there; drop this one and retry next time
+                Files.deleteIfExists(snapshot);
+                throw e;
+            }
+            compact(nextSegment, snapshot);
+
+            SnapshotStats stats = new SnapshotStats(nextSegment, balances.size(), bytes,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            log.info("Wrote journal snapshot {}: {} accounts, {} bytes in {} ms",
+                    snapshot.getFileName(), stats.accounts(), stats.bytes(), stats.durationMillis());
+            return Optional.of(stats);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to snapshot journal in " + journal.getDirectory(), e);
+        }
+    }
+
+    private void compact(long nextSegment, Path snapshot) throws IOException {
+        for (Path segment : journal.listSegments(0)) {
+            if (TransferJournal.segmentIndexOf(segment) < nextSegment) {
+                Files.delete(segment);
+            }
+        }
+        try (Stream<Path> files = Files.list(journal.getDirectory())) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SnapshotFile.PREFIX) && !file.equals(snapshot)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static final class BalanceFold implements TransferJournal.Visitor {
+
+        private final Map<String, BigDecimal> balances;
+
+        private BalanceFold(Map<String, BigDecimal> balances) {
+            this.balances = balances;
+        }
+
+        @Override
+        public void accountCreated(String accountId, BigDecimal balance) {
+            balances.putIfAbsent(accountId, balance);
+        }
+
+        @Override
+        public void transfer(String accountFromId, String accountToId, BigDecimal amount) {
+            if (!balances.containsKey(accountFromId) || !balances.containsKey(accountToId)) {
+                // Replay skips it as well; see TransferJournal.Visitor
+                return;
+            }
+            balances.merge(accountFromId, amount.negate(), BigDecimal::add);
+            balances.merge(accountToId, amount, BigDecimal::add);
+        }
+
+        @Override
+        public void accountsCleared() {
+            balances.clear();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.dws.challenge.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * An {@link AccountsRepository} that keeps balances as scaled {@code long} minor units and can
+ * move money with atomic operations instead of locks. Accounts are addressed by a slot that is
+ * resolved once per request, so the debit and credit themselves do not allocate.
+ */
+public interface MinorUnitAccountsRepository extends AccountsRepository {
+
+    int NO_SLOT = -1;
+
+    /** Returns the slot holding the account's balance, or {@link #NO_SLOT} if it does not exist. */
+    int slotOf(String accountId);
+
+    /** Converts an amount to minor units, rejecting amounts with more decimals than the scale. */
+    long toMinorUnits(BigDecimal amount);
+
+    long balanceOf(int slot);
+
+    /** Debits the slot unless that would take the balance below zero. */
+    boolean tryDebit(int slot, long amount);
+
+    void credit(int slot, long amount);
+}
@@ -0,0 +1,136 @@
+package com.dws.challenge.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of every account balance as of a journal segment boundary:
+ * a header (magic, version, first uncovered segment, account count), one entry per account and a
+ * trailing CRC32C of everything before it.
+ */
+final class SnapshotFile {
+
+    static final String PREFIX = "snapshot-";
+    static final String SUFFIX = ".snap";
+
+    private static final int MAGIC = 0x534E4150;  // "SNAP"
+    // Version 1 gave the unscaled balance a one-byte length, too short for what the journal accepts
+    private static final int VERSION = 2;
+    // Magic, version, next segment and account count
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+
+    private SnapshotFile() {
+    }
+
+    static Path pathFor(Path directory, long nextSegment) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, nextSegment, SUFFIX));
+    }
+
+    static long nextSegmentOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /** Writes the snapshot to a temporary file, syncs it and atomically moves it into place. */
+    static long write(Path target, long nextSegment, Map<String, BigDecimal> balances) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        CheckedOutputStream checked = new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16), new CRC32C());
+        try (DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(nextSegment);
+            out.writeLong(balances.size());
+            for (Map.Entry<String, BigDecimal> entry : balances.entrySet()) {
+                byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] unscaled = entry.getValue().unscaledValue().toByteArray();
+                out.writeShort(id.length);
+                out.write(id);
+                out.writeInt(entry.getValue().scale());
+                out.writeShort(unscaled.length);
+                out.write(unscaled);
+            }
+            out.writeLong(checked.getChecksum().getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return Files.size(target);
+    }
+
+    /**
+     * Checks the trailing checksum against the rest of the file, without parsing any entry, and
+     * throws if they differ or the file is too short to hold one.
+     */
+    static void verify(Path snapshot) throws IOException {
+        long size = Files.size(snapshot);
+        if (size < HEADER_BYTES + Long.BYTES) {
+            throw new IOException("Truncated snapshot " + snapshot);
+        }
+        CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16), new CRC32C());
+        try (DataInputStream in = new DataInputStream(checked)) {
+            byte[] buffer = new byte[1 << 16];
+            long remaining = size - Long.BYTES;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Truncated snapshot " + snapshot);
+                }
+                remaining -= read;
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Checksum mismatch in snapshot " + snapshot);
+            }
+        }
+    }
+
+    /**
+     * Verifies the snapshot, then feeds every account in it to the visitor and returns the first
+     * segment it does not cover. A corrupt snapshot throws before the visitor sees any account.
+     */
+    static long read(Path snapshot, TransferJournal.Visitor visitor) throws IOException {
+        verify(snapshot);
+        CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16), new CRC32C());
+        try (DataInputStream in = new DataInputStream(checked)) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unrecognised snapshot file " + snapshot);
+            }
+            long nextSegment = in.readLong();
+            long count = in.readLong();
+            for (long i = 0; i < count; i++) {
+                byte[] id = new byte[in.readUnsignedShort()];
+                in.readFully(id);
+                int scale = in.readInt();
+                byte[] unscaled = new byte[version == 1 ? in.readUnsignedByte() : in.readUnsignedShort()];
+                in.readFully(unscaled);
+                visitor.accountCreated(new String(id, StandardCharsets.UTF_8),
+                        new BigDecimal(new BigInteger(unscaled), scale));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Checksum mismatch in snapshot " + snapshot);
+            }
+            return nextSegment;
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.dws.challenge.repository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal of account creations and committed transfers, stored as
+ * length-prefixed, CRC-checked binary records in fixed-size memory-mapped segment files.
+ *
+ * <p>Appends are a copy into the mapped segment and return the journal position of the record.
+ * Callers then {@link #awaitDurable(long) wait for durability} outside their own locks, which lets
+ * one flush cover every record appended by concurrent callers (group commit).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.journal.enabled", havingValue = "true")
+public class TransferJournal implements AutoCloseable {
+
+    public enum FsyncPolicy {
+        /** Every write waits for a flush; concurrent writers share the same flush. */
+        PER_WRITE,
+        /** A background thread flushes every fsync interval and writers wait for the next flush. */
+        BATCHED,
+        /** Writers never wait; the OS writes the mapped pages back on its own schedule. */
+        OS
+    }
+
+    /** Receives journal records in the order they were appended. */
+    public interface Visitor {
+
+        void accountCreated(String accountId, BigDecimal balance);
+
+        /**
+         * A transfer in flight while the accounts were cleared can be journaled after the clear, for
+         * accounts that no longer exist; such a record is skipped.
+         */
+        void transfer(String accountFromId, String accountToId, BigDecimal amount);
+
+        void accountsCleared();
+    }
+
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final byte ACCOUNT_CREATED = 1;
+    private static final byte TRANSFER = 2;
+    private static final byte ACCOUNTS_CLEARED = 3;
+    private static final int HEADER_BYTES = 8;  // record length + CRC
+    // Ids and unscaled values are prefixed with an unsigned short length
+    static final int MAX_FIELD_BYTES = 0xFFFF;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    // Locks rather than monitors: flushes block on I/O and must not pin virtual threads
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition flushed = syncLock.newCondition();
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+    private volatile long writtenPosition;
+    private volatile long durablePosition;
+    private volatile boolean closed;
+    private Thread flusher;
+
+    public TransferJournal(@Value("${accounts.journal.dir:data/journal}") Path directory,
+                           @Value("${accounts.journal.segment-size:67108864}") int segmentSize,
+                           @Value("${accounts.journal.fsync-policy:BATCHED}") FsyncPolicy fsyncPolicy,
+                           @Value("${accounts.journal.fsync-interval-ms:5}") long fsyncIntervalMillis) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+    }
+
+    /**
+     * Loads the latest snapshot, if any, then feeds every intact record after it to the visitor and
+     * positions the journal for appending after the last one. A torn or corrupt record ends the
+     * replay: it and the rest of its segment are cleared and any later segments deleted.
+     */
+    public void replay(Visitor visitor) {
+        appendLock.lock();
+        try {
+            Files.createDirectories(directory);
+            long firstSegment = 0;
+            Path snapshot = latestSnapshot();
+            if (snapshot != null) {
+                firstSegment = SnapshotFile.read(snapshot, visitor);
+            }
+
+            long recovered = firstSegment * segmentSize;
+            List<Path> segments = listSegments(firstSegment);
+            for (int i = 0; i < segments.size(); i++) {
+                long index = segmentIndexOf(segments.get(i));
+                try (FileChannel readChannel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                    int end = readRecords(buffer, visitor);
+                    recovered = index * segmentSize + end;
+                    if (i < segments.size() - 1 && hasDataFrom(buffer, end)) {
+                        // Appends resume at the corruption point, so later segments would replay out of order
+                        log.warn("Journal segment {} is corrupt at offset {}; deleting later segments", segments.get(i), end);
+                        for (Path later : segments.subList(i + 1, segments.size())) {
+                            Files.delete(later);
+                        }
+                        break;
+                    }
+                }
+            }
+            openForAppend(recovered);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay journal in " + directory, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long appendAccountCreated(String accountId, BigDecimal balance) {
+        byte[] id = field(accountId.getBytes(StandardCharsets.UTF_8), "Account id");
+        byte[] unscaled = field(balance.unscaledValue().toByteArray(), "Balance");
+        return append(ACCOUNT_CREATED, 1 + 2 + id.length + 4 + 2 + unscaled.length, id, null, balance.scale(), unscaled);
+    }
+
+    public long appendTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+        byte[] from = field(accountFromId.getBytes(StandardCharsets.UTF_8), "Account id");
+        byte[] to = field(accountToId.getBytes(StandardCharsets.UTF_8), "Account id");
+        byte[] unscaled = field(amount.unscaledValue().toByteArray(), "Amount");
+        return append(TRANSFER, 1 + 2 + from.length + 2 + to.length + 4 + 2 + unscaled.length,
+                from, to, amount.scale(), unscaled);
+    }
+
+    public long appendAccountsCleared() {
+        return append(ACCOUNTS_CLEARED, 1, null, null, 0, null);
+    }
+
+    /** Blocks until every record up to {@code position} is durable under the configured policy. */
+    public void awaitDurable(long position) {
+        if (fsyncPolicy == FsyncPolicy.OS || durablePosition >= position) {
+            return;
+        }
+        if (fsyncPolicy == FsyncPolicy.PER_WRITE) {
+            flush(position);
+            return;
+        }
+        syncLock.lock();
+        try {
+            while (durablePosition < position && !closed) {
+                flushed.await(fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /** Index of the segment being appended to; every segment below it is sealed and immutable. */
+    public long getCurrentSegmentIndex() {
+        appendLock.lock();
+        try {
+            return segmentIndex;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /** Feeds the records of one sealed segment to the visitor. */
+    void readSegment(long index, Visitor visitor) throws IOException {
+        try (FileChannel readChannel = FileChannel.open(segmentPath(index), StandardOpenOption.READ)) {
+            readRecords(readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size()), visitor);
+        }
+    }
+
+    Path latestSnapshot() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SnapshotFile.PREFIX) && name.endsWith(SnapshotFile.SUFFIX);
+                    })
+                    .max(Comparator.naturalOrder())
+                    .orElse(null);
+        }
+    }
+
+    public long getWrittenPosition() {
+        return writtenPosition;
+    }
+
+    public long getDurablePosition() {
+        return durablePosition;
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            if (closed || channel == null) {
+                return;
+            }
+            closed = true;
+            if (flusher != null) {
+                flusher.interrupt();
+            }
+            segment.force();
+            durablePosition = writtenPosition;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close journal segment", e);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        signalFlushed();
+    }
+
+    private static byte[] field(byte[] bytes, String name) {
+        if (bytes.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException(name + " of " + bytes.length + " bytes exceeds the journal limit of "
+                    + MAX_FIELD_BYTES);
+        }
+        return bytes;
+    }
+
+    private long append(byte type, int length, byte[] first, byte[] second, int scale, byte[] unscaled) {
+        appendLock.lock();
+        try {
+            return appendLocked(type, length, first, second, scale, unscaled);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private long appendLocked(byte type, int length, byte[] first, byte[] second, int scale, byte[] unscaled) {
+        if (channel == null || closed) {
+            throw new IllegalStateException("Journal is not open for appending");
+        }
+        if (length + HEADER_BYTES > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + length + " bytes exceeds the segment size");
+        }
+        if (segment.remaining() < length + HEADER_BYTES) {
+            rollSegment();
+        }
+
+        int start = segment.position();
+        segment.position(start + HEADER_BYTES);
+        segment.put(type);
+        if (first != null) {
+            segment.putShort((short) first.length).put(first);
+        }
+        if (second != null) {
+            segment.putShort((short) second.length).put(second);
+        }
+        if (unscaled != null) {
+            segment.putInt(scale).putShort((short) unscaled.length).put(unscaled);
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(segment.slice(start + HEADER_BYTES, length));
+        segment.putInt(start + 4, (int) crc.getValue());
+        segment.putInt(start, length);  // Written last: a non-zero length marks a complete record
+
+        writtenPosition = segmentIndex * segmentSize + segment.position();
+        return writtenPosition;
+    }
+
+    private void flush(long position) {
+        syncLock.lock();
+        try {
+            if (durablePosition >= position) {
+                return;  // Another writer's flush already covered this record
+            }
+            MappedByteBuffer current;
+            long target;
+            appendLock.lock();
+            try {
+                current = segment;
+                target = writtenPosition;
+            } finally {
+                appendLock.unlock();
+            }
+            current.force();
+            durablePosition = target;
+            flushed.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void signalFlushed() {
+        syncLock.lock();
+        try {
+            flushed.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void rollSegment() {
+        segment.force();
+        durablePosition = writtenPosition;
+        try {
+            channel.close();
+            segmentIndex++;
+            mapSegment(segmentIndex, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal segment " + segmentIndex, e);
+        }
+    }
+
+    private void openForAppend(long position) throws IOException {
+        segmentIndex = position / segmentSize;
+        int offset = (int) (position % segmentSize);
+        mapSegment(segmentIndex, offset);
+        // Clear any torn record left behind the recovery point so it cannot be misread later
+        for (int i = offset; i < segment.limit(); i++) {
+            if (hasData(segment, i)) {
+                segment.put(i, (byte) 0);
+            }
+        }
+        writtenPosition = position;
+        durablePosition = position;
+
+        if (fsyncPolicy == FsyncPolicy.BATCHED && flusher == null) {
+            flusher = new Thread(this::flushPeriodically, "journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    private void mapSegment(long index, int offset) throws IOException {
+        channel = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.position(offset);
+    }
+
+    private void flushPeriodically() {
+        while (!closed) {
+            try {
+                Thread.sleep(fsyncIntervalMillis);
+                if (durablePosition < writtenPosition) {
+                    flush(writtenPosition);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Journal flush failed", e);
+            }
+        }
+    }
+
+    /** Lists the segment files from {@code firstSegment} onwards, in order. */
+    List<Path> listSegments(long firstSegment) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .filter(path -> segmentIndexOf(path) >= firstSegment)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    Path segmentPath(long index) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    static long segmentIndexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Returns the offset just past the last intact record
+    private static int readRecords(MappedByteBuffer buffer, Visitor visitor) {
+        int offset = 0;
+        CRC32C crc = new CRC32C();
+        while (offset + HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > buffer.limit()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(offset + HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+
+            MappedByteBuffer record = buffer.slice(offset + HEADER_BYTES, length);
+            switch (record.get()) {
+                case ACCOUNT_CREATED -> visitor.accountCreated(readString(record), readDecimal(record));
+                case TRANSFER -> visitor.transfer(readString(record), readString(record), readDecimal(record));
+                case ACCOUNTS_CLEARED -> visitor.accountsCleared();
+                default -> throw new IllegalStateException("Unknown journal record type at offset " + offset);
+            }
+            offset += HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    private static boolean hasData(MappedByteBuffer buffer, int offset) {
+        return buffer.get(offset) != 0;
+    }
+
+    // A sealed segment ends in zeros past its last record; anything else there is a corrupt record
+    private static boolean hasDataFrom(MappedByteBuffer buffer, int offset) {
+        for (int i = offset; i < buffer.limit(); i++) {
+            if (hasData(buffer, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String readString(MappedByteBuffer record) {
+        byte[] bytes = new byte[Short.toUnsignedInt(record.getShort())];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BigDecimal readDecimal(MappedByteBuffer record) {
+        int scale = record.getInt();
+        byte[] unscaled = new byte[Short.toUnsignedInt(record.getShort())];
+        record.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
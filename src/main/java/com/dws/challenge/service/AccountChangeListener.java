@@ -0,0 +1,14 @@
+package com.dws.challenge.service;
+
+/**
+ * Told when a balance has changed, after the change has committed, so that anything derived from
+ * the old balance can be dropped. Called on the thread that made the change, so implementations
+ * must be quick and must not throw.
+ */
+public interface AccountChangeListener {
+
+    void accountChanged(String accountId);
+
+    /** Every account may have changed or disappeared, e.g. after the store was cleared. */
+    void allAccountsChanged();
+}
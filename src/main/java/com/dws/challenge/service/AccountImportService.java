@@ -0,0 +1,253 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.ImportSummary;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.MinorUnitAccountsRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Creates accounts in bulk from a streamed body with one account per line, either NDJSON objects
+ * with {@code accountId} and {@code balance} fields or {@code accountId,balance} CSV rows (with an
+ * optional header; the id is everything before the last comma).
+ *
+ * <p>The request thread only splits the body into batches of lines. Parsing, validation and
+ * {@link AccountsRepository#createAccounts} run for several batches at once on a pool sized to
+ * the machine, with a bounded number of batches in flight so the body is never held in memory.
+ * Rows that are duplicates or invalid, including balances with more decimals than a fixed-point
+ * repository keeps, are counted, not thrown. A failure that is not about one row
+ * stops the import; the batches created before it stay, and show up as duplicates on a re-run.
+ */
+@Slf4j
+@Service
+public class AccountImportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final int MAX_REPORTED = 100;
+    private static final String CSV_HEADER = "accountId,balance";
+
+    private final AccountsRepository accountsRepository;
+    private final JsonFactory jsonFactory;
+    private final int batchSize;
+    private final int parallelism;
+
+    @Autowired
+    public AccountImportService(AccountsRepository accountsRepository, ObjectMapper objectMapper,
+                                @Value("${accounts.import.batch-size:10000}") int batchSize,
+                                @Value("${accounts.import.parallelism:0}") int parallelism) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("accounts.import.batch-size must be positive");
+        }
+        this.accountsRepository = accountsRepository;
+        this.jsonFactory = objectMapper.getFactory();
+        this.batchSize = batchSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Imports every row of {@code body} whose account {@code isLocal} accepts. */
+    public ImportSummary importAccounts(InputStream body, Format format, Predicate<String> isLocal) throws IOException {
+        long startedAt = System.nanoTime();
+        Tally tally = new Tally();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        // Two batches per worker: one being inserted, one parsed and waiting
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 1 << 16);
+        try (ExecutorService workers = Executors.newFixedThreadPool(parallelism)) {
+            long lineNumber = 0;
+            long firstLine = 1;
+            List<String> lines = new ArrayList<>(batchSize);
+            String line;
+            while (failure.get() == null && (line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lines.isEmpty()) {
+                    firstLine = lineNumber;
+                }
+                if (format == Format.CSV && lineNumber == 1 && line.trim().equalsIgnoreCase(CSV_HEADER)) {
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() == batchSize) {
+                    submit(workers, inFlight, new Batch(firstLine, lines), format, isLocal, tally, failure);
+                    lines = new ArrayList<>(batchSize);
+                }
+            }
+            if (!lines.isEmpty() && failure.get() == null) {
+                submit(workers, inFlight, new Batch(firstLine, lines), format, isLocal, tally, failure);
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        ImportSummary summary = tally.summary();
+        log.info("Imported {} accounts from {} rows ({} duplicates, {} invalid, {} skipped) in {} ms",
+                summary.getCreated(), summary.getRows(), summary.getDuplicates(), summary.getInvalid(),
+                summary.getSkipped(), (System.nanoTime() - startedAt) / 1_000_000);
+        return summary;
+    }
+
+    private void submit(ExecutorService workers, Semaphore inFlight, Batch batch, Format format,
+                        Predicate<String> isLocal, Tally tally, AtomicReference<RuntimeException> failure) {
+        inFlight.acquireUninterruptibly();
+        workers.execute(() -> {
+            try {
+                importBatch(batch, format, isLocal, tally);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void importBatch(Batch batch, Format format, Predicate<String> isLocal, Tally tally) {
+        List<Account> accounts = new ArrayList<>(batch.lines.size());
+        List<Long> invalidLines = new ArrayList<>();
+        long rows = 0;
+        long skipped = 0;
+        for (int i = 0; i < batch.lines.size(); i++) {
+            String line = batch.lines.get(i);
+            if (line.isBlank()) {
+                continue;
+            }
+            rows++;
+            Account account = format == Format.NDJSON ? parseJson(line) : parseCsv(line);
+            if (account == null || !storable(account.getBalance())) {
+                invalidLines.add(batch.firstLine + i);
+            } else if (!isLocal.test(account.getAccountId())) {
+                skipped++;
+            } else {
+                accounts.add(account);
+            }
+        }
+        List<String> duplicates = accounts.isEmpty() ? List.of() : accountsRepository.createAccounts(accounts);
+        tally.add(rows, accounts.size() - duplicates.size(), duplicates, invalidLines, skipped);
+    }
+
+    // Reads the two fields straight off the parser; anything else in the object is ignored
+    private Account parseJson(String line) {
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            String accountId = null;
+            BigDecimal balance = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("accountId") && value == JsonToken.VALUE_STRING) {
+                    accountId = parser.getText();
+                } else if (field.equals("balance") && value.isNumeric()) {
+                    balance = parser.getDecimalValue();
+                } else if (field.equals("balance") && value == JsonToken.VALUE_STRING) {
+                    balance = parseBalance(parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return valid(accountId, balance);
+        } catch (JsonProcessingException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Account parseCsv(String line) {
+        int comma = line.lastIndexOf(',');
+        if (comma < 0) {
+            return null;
+        }
+        return valid(line.substring(0, comma).trim(), parseBalance(line.substring(comma + 1).trim()));
+    }
+
+    private static BigDecimal parseBalance(String value) {
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // The same rules as the @NotEmpty and @Min(0) constraints on Account, without a Validator per row
+    private static Account valid(String accountId, BigDecimal balance) {
+        if (accountId == null || accountId.isEmpty() || balance == null || balance.signum() < 0) {
+            return null;
+        }
+        return new Account(accountId, balance);
+    }
+
+    // A repository that keeps minor units rejects balances finer than its scale; that is one bad row
+    private boolean storable(BigDecimal balance) {
+        if (!(accountsRepository instanceof MinorUnitAccountsRepository minorUnits)) {
+            return true;
+        }
+        try {
+            minorUnits.toMinorUnits(balance);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private record Batch(long firstLine, List<String> lines) {
+    }
+
+    // Updated once per batch
+    private static final class Tally {
+        private long rows;
+        private long created;
+        private long duplicates;
+        private long invalid;
+        private long skipped;
+        private final List<String> duplicateIds = new ArrayList<>();
+        private final List<Long> invalidLines = new ArrayList<>();
+
+        synchronized void add(long rows, long created, List<String> duplicates, List<Long> invalidLines,
+                              long skipped) {
+            this.rows += rows;
+            this.created += created;
+            this.duplicates += duplicates.size();
+            this.invalid += invalidLines.size();
+            this.skipped += skipped;
+            addUpTo(this.duplicateIds, duplicates);
+            addUpTo(this.invalidLines, invalidLines);
+        }
+
+        synchronized ImportSummary summary() {
+            return new ImportSummary(rows, created, duplicates, invalid, skipped,
+                    List.copyOf(duplicateIds), List.copyOf(invalidLines));
+        }
+
+        private static <T> void addUpTo(List<T> target, List<T> values) {
+            for (int i = 0; i < values.size() && target.size() < MAX_REPORTED; i++) {
+                target.add(values.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.repository.InternedAccountsRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out the lock of an account, keyed by its id or, on an {@link InternedAccountsRepository},
+ * by its handle, in which case each account has its own lock, found by indexing an array rather
+ * than hashing the id. Ids share a fixed set of striped locks instead, so ids that were cleared or
+ * never existed do not keep a lock each; two ids on one stripe simply serialize. Whoever locks
+ * accounts uses the same key for all of them, so an account has only one lock. Locks for several
+ * accounts are always taken in ascending handle, or {@link #stripeOf(String) stripe}, order, so two
+ * transfers touching the same accounts can never deadlock while transfers on disjoint accounts
+ * proceed in parallel.
+ */
+@Component
+public class AccountLockManager {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int STRIPES = 1 << 12;
+
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final Object growLock = new Object();
+    // Grown only under growLock; volatile so readers see grown arrays
+    @SuppressWarnings("unchecked")
+    private volatile AtomicReferenceArray<Lock>[] handleLocks = newChunks(new AtomicReferenceArray[0], 1);
+
+    public AccountLockManager() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /** Index of the striped lock guarding {@code accountId}; locks are taken in ascending stripe order. */
+    public int stripeOf(String accountId) {
+        int hash = accountId.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    public Lock lockFor(String accountId) {
+        return stripes[stripeOf(accountId)];
+    }
+
+    public Lock lockFor(int handle) {
+        AtomicReferenceArray<Lock> chunk = chunkFor(handle);
+        int slot = handle & CHUNK_MASK;
+        Lock lock = chunk.get(slot);
+        if (lock == null) {
+            Lock created = new ReentrantLock();
+            lock = chunk.compareAndExchange(slot, null, created);
+            if (lock == null) {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * Locks the stripe of every account in {@code accountIds} in ascending order and returns the
+     * held locks, which must be released with {@link #unlockAll(List)}.
+     */
+    public List<Lock> lockAll(Collection<String> accountIds) {
+        int[] sorted = new int[accountIds.size()];
+        int count = 0;
+        for (String accountId : accountIds) {
+            sorted[count++] = stripeOf(accountId);
+        }
+        Arrays.sort(sorted);
+        List<Lock> held = new ArrayList<>(sorted.length);
+        try {
+            for (int i = 0; i < sorted.length; i++) {
+                if (i > 0 && sorted[i] == sorted[i - 1]) {
+                    continue;
+                }
+                Lock lock = stripes[sorted[i]];
+                lock.lock();
+                held.add(lock);
+            }
+        } catch (RuntimeException e) {
+            unlockAll(held);
+            throw e;
+        }
+        return held;
+    }
+
+    /** {@link #lockAll(Collection)} by handle, for accounts of an {@link InternedAccountsRepository}. */
+    public List<Lock> lockAll(int[] handles) {
+        int[] sorted = handles.clone();
+        Arrays.sort(sorted);
+        List<Lock> held = new ArrayList<>(sorted.length);
+        try {
+            for (int i = 0; i < sorted.length; i++) {
+                if (i > 0 && sorted[i] == sorted[i - 1]) {
+                    continue;
+                }
+                Lock lock = lockFor(sorted[i]);
+                lock.lock();
+                held.add(lock);
+            }
+        } catch (RuntimeException e) {
+            unlockAll(held);
+            throw e;
+        }
+        return held;
+    }
+
+    public void unlockAll(List<Lock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+
+    private AtomicReferenceArray<Lock> chunkFor(int handle) {
+        int index = handle >>> CHUNK_BITS;
+        AtomicReferenceArray<Lock>[] current = handleLocks;
+        if (index < current.length) {
+            return current[index];
+        }
+        synchronized (growLock) {
+            current = handleLocks;
+            if (index >= current.length) {
+                current = newChunks(current, Math.max(index + 1, current.length * 2));
+                handleLocks = current;
+            }
+            return current[index];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<Lock>[] newChunks(AtomicReferenceArray<Lock>[] existing, int length) {
+        AtomicReferenceArray<Lock>[] grown = Arrays.copyOf(existing, length);
+        for (int i = existing.length; i < length; i++) {
+            grown[i] = new AtomicReferenceArray<>(CHUNK_SIZE);
+        }
+        return grown;
+    }
+}
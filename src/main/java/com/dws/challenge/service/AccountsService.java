@@ -2,20 +2,30 @@ package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.InternedAccountsRepository;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.List;
 
 @Service
 public class AccountsService {
 
   private final AccountsRepository accountsRepository;
 
-  @Autowired
+  private final List<AccountChangeListener> changeListeners;
+
   public AccountsService(AccountsRepository accountsRepository) {
+    this(accountsRepository, List.of());
+  }
+
+  @Autowired
+  public AccountsService(AccountsRepository accountsRepository, List<AccountChangeListener> changeListeners) {
     this.accountsRepository = accountsRepository;
+    this.changeListeners = changeListeners;
   }
 
   public void createAccount(Account account) {
@@ -25,12 +35,32 @@ public class AccountsService {
   public Account getAccount(String accountId) {
     return this.accountsRepository.getAccount(accountId);
   }
+
+  /**
+   * The account's handle, which a caller may keep and pass to
+   * {@link TransferService#transfer(int, int, BigDecimal)}, or
+   * {@link InternedAccountsRepository#NO_HANDLE} if there is no such account or the repository does
+   * not intern account ids; {@link TransferService#handleOf} issues handles for any repository.
+   */
+  public int handleOf(String accountId) {
+    if (this.accountsRepository instanceof InternedAccountsRepository interned) {
+      int handle = interned.handleOf(accountId);
+      return interned.getAccount(handle) != null ? handle : InternedAccountsRepository.NO_HANDLE;
+    }
+    return InternedAccountsRepository.NO_HANDLE;
+  }
+
   public Collection<Account> getAllAccounts() {
     return this.accountsRepository.getAllAccounts();
   }
 
+  public List<Account> getAccountsPage(String afterAccountId, int limit) {
+    return this.accountsRepository.getAccountsPage(afterAccountId, limit);
+  }
+
   public void clearAllAccounts(){
     this.accountsRepository.clearAccounts();
+    this.changeListeners.forEach(AccountChangeListener::allAccountsChanged);
   }
 
 }
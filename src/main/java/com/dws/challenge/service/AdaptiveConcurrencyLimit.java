@@ -0,0 +1,98 @@
+package com.dws.challenge.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit on the number of transfers in flight that follows their latency, additive increase,
+ * multiplicative decrease. A transfer that finishes within {@code targetNanos} while at least
+ * half the limit is in use raises the limit by 1/limit, about one per round of transfers. One
+ * that takes longer cuts it by {@code backoffRatio}, at most once per target interval, so that a
+ * burst of slow transfers counts as one signal rather than collapsing the limit to its minimum.
+ *
+ * <p>Past the limit a transfer is turned away at once instead of joining the queue for a
+ * contended account lock, which keeps the latency of those admitted near the target.
+ */
+public final class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // The limit is fractional so that additive increases of 1/limit add up; stored as double bits
+    private final AtomicLong limit;
+    private final AtomicLong lastDecreaseAt = new AtomicLong();
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long targetNanos,
+                                    double backoffRatio) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be between 0 and 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetNanos = targetNanos;
+        this.backoffRatio = backoffRatio;
+        this.limit = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+    }
+
+    /** Takes a slot if fewer than the limit are in flight; a true result must be followed by {@link #release}. */
+    public boolean tryAcquire() {
+        int current = (int) limit();
+        while (true) {
+            int running = inFlight.get();
+            if (running >= current) {
+                return false;
+            }
+            if (inFlight.compareAndSet(running, running + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /** Gives a slot back, with how long the transfer in it took and the time it finished. */
+    public void release(long latencyNanos, long nowNanos) {
+        int running = inFlight.getAndDecrement();
+        if (latencyNanos > targetNanos) {
+            long last = lastDecreaseAt.get();
+            if ((last == 0 || nowNanos - last >= targetNanos) && lastDecreaseAt.compareAndSet(last, nowNanos)) {
+                decrease();
+            }
+        } else if (running * 2 >= limit()) {
+            // Only a limit that is actually being used has earned an increase
+            increase();
+        }
+    }
+
+    public double limit() {
+        return Double.longBitsToDouble(limit.get());
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void increase() {
+        while (true) {
+            long bits = limit.get();
+            double current = Double.longBitsToDouble(bits);
+            double next = Math.min(maxLimit, current + 1 / current);
+            if (next == current || limit.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    private void decrease() {
+        while (true) {
+            long bits = limit.get();
+            double next = Math.max(minLimit, Double.longBitsToDouble(bits) * backoffRatio);
+            if (limit.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+}
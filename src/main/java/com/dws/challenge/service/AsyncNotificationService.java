@@ -0,0 +1,253 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Bounded, asynchronous front for the real {@link NotificationService}. Callers only record the
+ * notification; virtual worker threads deliver it. Notifications for an account that is already waiting
+ * in the queue are coalesced into that pending entry, so a hot account costs one queue slot. The entry
+ * keeps the latest {@code notifications.async.max-coalesced} descriptions and a count of the older
+ * ones, which are counted as dropped.
+ *
+ * <p>Once bound to a {@link MeterRegistry} it publishes the queue depth, delivery counters, the time
+ * from queueing to delivery and the time the delegate takes to send each notification.
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(name = "notifications.async.enabled", havingValue = "true", matchIfMissing = true)
+public class AsyncNotificationService implements NotificationService, MeterBinder {
+
+    /** What a caller does when the queue is full. */
+    public enum Backpressure {
+        /** Wait for a free slot. */
+        BLOCK,
+        /** Discard the notification and count it as dropped. */
+        DROP,
+        /** Deliver the notification on the calling thread. */
+        SPILL
+    }
+
+    private final NotificationService delegate;
+    private final Backpressure backpressure;
+    private final int maxCoalesced;
+    private final BlockingQueue<String> queue;
+    private final Map<String, PendingNotification> pending = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong lastLagNanos = new AtomicLong();
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+    private volatile Timer dispatchTimer;
+    private volatile Timer lagTimer;
+
+    public AsyncNotificationService(NotificationService delegate, int capacity, int workerCount,
+                                    Backpressure backpressure) {
+        this(delegate, capacity, workerCount, backpressure, 100);
+    }
+
+    @Autowired
+    public AsyncNotificationService(@Qualifier("emailNotificationService") NotificationService delegate,
+                                    @Value("${notifications.async.capacity:10000}") int capacity,
+                                    @Value("${notifications.async.workers:2}") int workerCount,
+                                    @Value("${notifications.async.backpressure:BLOCK}") Backpressure backpressure,
+                                    @Value("${notifications.async.max-coalesced:100}") int maxCoalesced) {
+        if (maxCoalesced < 1) {
+            throw new IllegalArgumentException("notifications.async.max-coalesced must be at least 1");
+        }
+        this.delegate = delegate;
+        this.backpressure = backpressure;
+        this.maxCoalesced = maxCoalesced;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("notification-worker-" + i).start(this::drain));
+        }
+    }
+
+    @Override
+    public void notifyAboutTransfer(Account account, String transferDescription) {
+        String accountId = account.getAccountId();
+        PendingNotification fresh = new PendingNotification(account, transferDescription);
+        PendingNotification current = pending.merge(accountId, fresh, this::coalesce);
+        if (current != fresh) {
+            coalesced.incrementAndGet();
+            return;
+        }
+
+        if (queue.offer(accountId)) {
+            return;
+        }
+        switch (backpressure) {
+            case BLOCK -> {
+                try {
+                    queue.put(accountId);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    discard(accountId, fresh);
+                }
+            }
+            case DROP -> discard(accountId, fresh);
+            case SPILL -> {
+                if (pending.remove(accountId, fresh)) {
+                    deliver(fresh);
+                }
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Time between the first notification of the last delivered batch being queued and its delivery. */
+    public long getLastLag(TimeUnit unit) {
+        return unit.convert(lastLagNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxLag(TimeUnit unit) {
+        return unit.convert(maxLagNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("notifications.queue.depth", queue, BlockingQueue::size)
+                .description("Accounts waiting for a notification to be delivered")
+                .register(registry);
+        FunctionCounter.builder("notifications.delivered", delivered, AtomicLong::get).register(registry);
+        FunctionCounter.builder("notifications.coalesced", coalesced, AtomicLong::get).register(registry);
+        FunctionCounter.builder("notifications.dropped", dropped, AtomicLong::get).register(registry);
+        lagTimer = Timer.builder("notifications.lag")
+                .description("Time from a notification being queued to its delivery")
+                .publishPercentileHistogram()
+                .register(registry);
+        dispatchTimer = Timer.builder("notifications.dispatch")
+                .description("Time the delegate takes to send one notification")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        // Flush whatever is still queued so a clean shutdown does not lose notifications
+        String accountId;
+        while ((accountId = queue.poll()) != null) {
+            PendingNotification notification = pending.remove(accountId);
+            if (notification != null) {
+                deliver(notification);
+            }
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            try {
+                PendingNotification notification = pending.remove(queue.take());
+                if (notification != null) {
+                    deliver(notification);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void deliver(PendingNotification notification) {
+        long dispatchStart = System.nanoTime();
+        try {
+            delegate.notifyAboutTransfer(notification.account, notification.description());
+        } catch (RuntimeException e) {
+            log.warn("Failed to send notification for account {}", notification.account.getAccountId(), e);
+        }
+        long now = System.nanoTime();
+        long lag = now - notification.queuedAtNanos;
+        lastLagNanos.set(lag);
+        maxLagNanos.accumulate(lag);
+        delivered.incrementAndGet();
+        Timer dispatch = dispatchTimer;
+        if (dispatch != null) {
+            dispatch.record(now - dispatchStart, TimeUnit.NANOSECONDS);
+            lagTimer.record(lag, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Runs inside ConcurrentHashMap.merge, so it is serialized per account
+    private PendingNotification coalesce(PendingNotification current, PendingNotification next) {
+        current.account = next.account;
+        current.descriptions.addAll(next.descriptions);
+        while (current.descriptions.size() > maxCoalesced) {
+            current.descriptions.removeFirst();
+            current.omitted++;
+            dropped.incrementAndGet();
+        }
+        return current;
+    }
+
+    private void discard(String accountId, PendingNotification notification) {
+        // Descriptions coalesced into the entry in the meantime are dropped with it
+        if (pending.remove(accountId, notification)) {
+            dropped.addAndGet(notification.descriptions.size());
+        }
+    }
+
+    private static final class PendingNotification {
+
+        private final long queuedAtNanos = System.nanoTime();
+        private final Deque<String> descriptions = new ArrayDeque<>(2);
+        private Account account;
+        // Older descriptions pushed out by the cap
+        private long omitted;
+
+        private PendingNotification(Account account, String description) {
+            this.account = account;
+            this.descriptions.add(description);
+        }
+
+        private String description() {
+            String latest = String.join("; ", descriptions);
+            return omitted == 0 ? latest : omitted + " earlier transfers not shown; " + latest;
+        }
+    }
+}
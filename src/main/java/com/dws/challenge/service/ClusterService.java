@@ -0,0 +1,396 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.PartitionCredit;
+import com.dws.challenge.dto.ResponseWrapper;
+import com.dws.challenge.exception.PartitionUnavailableException;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.exception.UnknownAccountException;
+import com.dws.challenge.repository.TransferJournal;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Partitioned deployment: each node owns the accounts {@link PartitionRouter} assigns to it,
+ * requests for other accounts are forwarded to their owner, and transfers between partitions run
+ * in two phases on top of {@link TransferService}.
+ *
+ * <p>The node owning the source account reserves the amount locally, then asks the owner of the
+ * destination account to credit it under a transfer id. A rejected credit releases the
+ * reservation. A credit whose outcome is unknown (owner unreachable or failing) keeps the
+ * reservation and is retried in the background until the owner answers; the owner applies each
+ * transfer id once, so a retry never credits twice.
+ *
+ * <p>The owner remembers each transfer id it has credited until the coordinator acknowledges the
+ * outcome, which it does in the background once it will not send that credit again. An
+ * acknowledged id is kept for one more request timeout, for a delivery the coordinator gave up on
+ * that is still on its way. A coordinator restart forgets the acknowledgements it had not sent yet,
+ * so their ids stay with the owner; accounts of a partitioned deployment are kept in memory only,
+ * so a restarted owner has lost its ids together with the balances they were applied to. With {@code cluster.pending-credits-file} set, the
+ * coordinator syncs each credit to that file before sending it and takes up the open ones again
+ * after a restart. A rejected credit whose source account is gone after a restart stays pending,
+ * and is listed by {@link #getPendingCredits()}, until the account is created again and the
+ * reservation can be released into it. Without the file a coordinator restart forgets its credits
+ * in doubt.
+ *
+ * <p>Nodes prove they are peers to each other with the shared {@code cluster.secret}, sent in
+ * {@link #SECRET_HEADER}; the credit endpoint refuses anyone else.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+public class ClusterService {
+
+    /** Marks a request that has already been forwarded once, so a misconfigured ring cannot loop. */
+    public static final String FORWARDED_HEADER = "X-Partition-Forwarded";
+
+    /** Carries the shared secret that node-to-node requests are authenticated with. */
+    public static final String SECRET_HEADER = "X-Partition-Secret";
+
+    private static final String CREDIT_PATH = "/internal/v1/partitions/credit";
+    private static final String ACKNOWLEDGE_PATH = "/internal/v1/partitions/credit/acknowledged";
+    private static final ParameterizedTypeReference<ResponseWrapper<Object>> OBJECT_RESPONSE =
+            new ParameterizedTypeReference<>() { };
+
+    private final PartitionRouter router;
+    private final TransferService transferService;
+    private final RestClient restClient;
+    private final long retryIntervalMillis;
+    private final long acknowledgedRetentionMillis;
+    private final byte[] secret;
+    private final Map<String, PartitionCredit> pendingCredits = new ConcurrentHashMap<>();
+    // Transfer ids this node has credited, or refused to, until their coordinator acknowledges them
+    private final Map<String, AppliedCredit> appliedCredits = new ConcurrentHashMap<>();
+    // Settled credits whose owner has not been told yet that it may forget them
+    private final Map<String, PartitionCredit> unacknowledgedCredits = new ConcurrentHashMap<>();
+    // Absent unless cluster.pending-credits-file is set
+    private final PendingCreditFile pendingCreditFile;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public ClusterService(PartitionRouter router, TransferService transferService,
+                          RestClient.Builder restClientBuilder, Optional<TransferJournal> journal,
+                          @Value("${cluster.secret:}") String secret,
+                          @Value("${cluster.pending-credits-file:}") String pendingCreditsFile,
+                          @Value("${cluster.request-timeout:PT5S}") Duration requestTimeout,
+                          @Value("${cluster.retry-interval-ms:1000}") long retryIntervalMillis) {
+        if (journal.isPresent()) {
+            // The journal records whole transfers; a reservation or credit on its own would not replay
+            throw new IllegalStateException("cluster.enabled cannot be combined with accounts.journal.enabled");
+        }
+        if (secret.isBlank()) {
+            throw new IllegalStateException("cluster.secret must be set when cluster.enabled is true");
+        }
+        this.router = router;
+        this.transferService = transferService;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.retryIntervalMillis = retryIntervalMillis;
+        this.acknowledgedRetentionMillis = requestTimeout.toMillis();
+        this.pendingCreditFile = pendingCreditsFile.isBlank() ? null : new PendingCreditFile(Path.of(pendingCreditsFile));
+        if (pendingCreditFile != null) {
+            for (PartitionCredit credit : pendingCreditFile.openCredits()) {
+                log.warn("Credit {} to {} was in doubt before a restart, retrying in the background",
+                        credit.getTransferId(), credit.getAccountToId());
+                pendingCredits.put(credit.getTransferId(), credit);
+            }
+        }
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(
+                HttpClient.newBuilder().connectTimeout(requestTimeout).build());
+        requestFactory.setReadTimeout(requestTimeout);
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "partition-credit-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::retryPendingCredits,
+                retryIntervalMillis, retryIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::acknowledgeCredits,
+                retryIntervalMillis, retryIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::forgetAcknowledgedCredits,
+                retryIntervalMillis, retryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (pendingCreditFile != null) {
+            pendingCreditFile.close();
+        }
+    }
+
+    public boolean isLocal(String accountId) {
+        return router.isLocal(accountId);
+    }
+
+    public String ownerOf(String accountId) {
+        return router.ownerOf(accountId);
+    }
+
+    /** Whether {@code presented}, a {@link #SECRET_HEADER} value, is this cluster's secret. */
+    public boolean isPeer(String presented) {
+        return presented != null && MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Sends the request to {@code node} and returns its response as if it had been handled here. */
+    public <T> ResponseEntity<ResponseWrapper<T>> forward(String node, HttpMethod method, String uriTemplate,
+                                                          Object body,
+                                                          ParameterizedTypeReference<ResponseWrapper<T>> responseType,
+                                                          Object... uriVariables) {
+        RestClient.RequestBodySpec request = restClient.method(method)
+                .uri(node + uriTemplate, uriVariables)
+                .header(FORWARDED_HEADER, router.getSelf())
+                .header(SECRET_HEADER, new String(secret, StandardCharsets.UTF_8));
+        if (body != null) {
+            request.contentType(MediaType.APPLICATION_JSON).body(body);
+        }
+        try {
+            return request.exchange((clientRequest, response) ->
+                    ResponseEntity.status(response.getStatusCode()).body(response.bodyTo(responseType)));
+        } catch (RestClientException e) {
+            throw new PartitionUnavailableException("Partition " + node + " is unavailable", e);
+        }
+    }
+
+    /**
+     * Transfers from a local account to an account owned by another node. Returns false when the
+     * amount is reserved but the owner could not be reached; the credit is then retried in the
+     * background.
+     */
+    public boolean transfer(String accountFromId, String accountToId, BigDecimal amount) {
+        transferService.reserve(accountFromId, accountToId, amount);
+        PartitionCredit credit = new PartitionCredit(UUID.randomUUID().toString(), accountFromId, accountToId, amount);
+        if (pendingCreditFile != null) {
+            try {
+                pendingCreditFile.added(credit);
+            } catch (RuntimeException e) {
+                transferService.releaseReservation(accountFromId, amount);
+                throw e;
+            }
+        }
+        try {
+            sendCredit(credit);
+        } catch (TransferException e) {
+            transferService.releaseReservation(accountFromId, amount);
+            resolved(credit);
+            throw e;
+        } catch (PartitionUnavailableException e) {
+            log.warn("Credit {} to {} is in doubt, retrying in the background", credit.getTransferId(),
+                    ownerOf(accountToId), e);
+            pendingCredits.put(credit.getTransferId(), credit);
+            return false;
+        }
+        resolved(credit);
+        transferService.confirmReservation(accountFromId, accountToId, amount);
+        return true;
+    }
+
+    /**
+     * Applies a credit sent by another node; repeated deliveries of one transfer id apply it once.
+     * A delivery that arrives while the first is still being applied waits for its outcome, and a
+     * rejection is replayed like a success.
+     */
+    public void applyCredit(PartitionCredit credit) {
+        if (credit.getAmount().signum() <= 0) {
+            throw TransferException.INVALID_AMOUNT;
+        }
+        if (!isLocal(credit.getAccountToId())) {
+            throw new IllegalArgumentException("Account " + credit.getAccountToId() + " is not owned by this node");
+        }
+        String fingerprint = credit.getAccountFromId() + '|' + credit.getAccountToId() + '|'
+                + credit.getAmount().stripTrailingZeros().toPlainString();
+        AppliedCredit fresh = new AppliedCredit(fingerprint);
+        AppliedCredit existing = appliedCredits.putIfAbsent(credit.getTransferId(), fresh);
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new IllegalArgumentException("Transfer id " + credit.getTransferId()
+                        + " was already credited for a different transfer");
+            }
+            TransferException rejection;
+            try {
+                rejection = existing.outcome.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e;
+            }
+            if (rejection != null) {
+                throw rejection;
+            }
+            return;
+        }
+        try {
+            transferService.credit(credit.getAccountFromId(), credit.getAccountToId(), credit.getAmount());
+            fresh.outcome.complete(null);
+        } catch (TransferException e) {
+            fresh.outcome.complete(e);
+            throw e;
+        } catch (Throwable e) {
+            // Nothing was credited, so a retry may try again; errors too, or a redelivery would wait forever
+            appliedCredits.remove(credit.getTransferId(), fresh);
+            fresh.outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Called by the coordinators of {@code transferIds} once they will not send those credits again:
+     * the ids are forgotten after one more request timeout.
+     */
+    public void acknowledgeCredits(Collection<String> transferIds) {
+        long forgetAt = System.currentTimeMillis() + acknowledgedRetentionMillis;
+        for (String transferId : transferIds) {
+            AppliedCredit applied = appliedCredits.get(transferId);
+            if (applied != null) {
+                applied.forgetAt = forgetAt;
+            }
+        }
+    }
+
+    /** Whether this node still remembers having credited, or refused to credit, {@code transferId}. */
+    public boolean remembersCredit(String transferId) {
+        return appliedCredits.containsKey(transferId);
+    }
+
+    public int getPendingCreditCount() {
+        return pendingCredits.size();
+    }
+
+    /** Credits sent to another node whose outcome is not settled yet, for reconciliation. */
+    public Collection<PartitionCredit> getPendingCredits() {
+        return List.copyOf(pendingCredits.values());
+    }
+
+    void retryPendingCredits() {
+        for (PartitionCredit credit : pendingCredits.values()) {
+            try {
+                retry(credit);
+            } catch (RuntimeException e) {
+                // Keep the retry task alive for the other credits
+                log.error("Retrying credit {} failed", credit.getTransferId(), e);
+            }
+        }
+    }
+
+    private void retry(PartitionCredit credit) {
+        try {
+            sendCredit(credit);
+            transferService.confirmReservation(credit.getAccountFromId(), credit.getAccountToId(), credit.getAmount());
+        } catch (TransferException e) {
+            log.warn("Credit {} was rejected, releasing the reservation: {}", credit.getTransferId(), e.getMessage());
+            try {
+                transferService.releaseReservation(credit.getAccountFromId(), credit.getAmount());
+            } catch (UnknownAccountException unknown) {
+                // Lost with a restart; the reservation waits until the account is created again
+                log.error("Cannot release {} reserved for credit {}: account {} does not exist",
+                        credit.getAmount(), credit.getTransferId(), credit.getAccountFromId());
+                return;
+            }
+        } catch (PartitionUnavailableException e) {
+            return;
+        }
+        pendingCredits.remove(credit.getTransferId());
+        resolved(credit);
+    }
+
+    void acknowledgeCredits() {
+        Map<String, List<String>> byOwner = new HashMap<>();
+        for (PartitionCredit credit : unacknowledgedCredits.values()) {
+            byOwner.computeIfAbsent(ownerOf(credit.getAccountToId()), owner -> new ArrayList<>())
+                    .add(credit.getTransferId());
+        }
+        byOwner.forEach((owner, transferIds) -> {
+            try {
+                ResponseEntity<ResponseWrapper<Object>> response =
+                        forward(owner, HttpMethod.POST, ACKNOWLEDGE_PATH, transferIds, OBJECT_RESPONSE);
+                if (response.getStatusCode().is2xxSuccessful()) {
+                    transferIds.forEach(unacknowledgedCredits::remove);
+                }
+            } catch (PartitionUnavailableException e) {
+                // Sent again on the next run; until then the owner just remembers the ids a little longer
+            }
+        });
+    }
+
+    void forgetAcknowledgedCredits() {
+        long now = System.currentTimeMillis();
+        appliedCredits.values().removeIf(applied -> applied.forgetAt <= now);
+    }
+
+    private void resolved(PartitionCredit credit) {
+        if (pendingCreditFile != null) {
+            pendingCreditFile.resolved(credit.getTransferId());
+        }
+        unacknowledgedCredits.put(credit.getTransferId(), credit);
+    }
+
+    private void sendCredit(PartitionCredit credit) {
+        String owner = ownerOf(credit.getAccountToId());
+        ResponseEntity<ResponseWrapper<Object>> response = forward(owner, HttpMethod.POST, CREDIT_PATH, credit, OBJECT_RESPONSE);
+        if (response.getStatusCode().is4xxClientError()) {
+            // The owner refused the credit outright, so nothing was applied there
+            throw new TransferException(response.getBody() != null
+                    ? response.getBody().getMessage() : "Credit rejected by " + owner);
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new PartitionUnavailableException("Partition " + owner + " answered " + response.getStatusCode(), null);
+        }
+    }
+
+    // The outcome of the first delivery of a transfer id: null once credited, or its rejection
+    private static final class AppliedCredit {
+
+        final String fingerprint;
+        final CompletableFuture<TransferException> outcome = new CompletableFuture<>();
+        // Set once the coordinator has acknowledged the outcome
+        volatile long forgetAt = Long.MAX_VALUE;
+
+        AppliedCredit(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.exception.IdempotencyKeyReusedException;
+import com.dws.challenge.exception.TransferException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of recent requests by their {@code Idempotency-Key}, so a client retry
+ * gets the original response instead of running the operation again. The cache is bounded in size
+ * and entries expire after a fixed time.
+ *
+ * <p>A retry that arrives while the original is still running waits for its outcome. Successful
+ * results and {@link TransferException}s are replayed; any other failure, errors included, forgets
+ * the key so the retry can run again.
+ */
+@Service
+public class IdempotencyService implements MeterBinder {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final Cache<String, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public IdempotencyService(@Value("${transfers.idempotency.max-keys:100000}") long maxKeys,
+                              @Value("${transfers.idempotency.ttl:PT24H}") Duration ttl) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Runs {@code action} the first time {@code key} is seen and replays its outcome afterwards.
+     * {@code fingerprint} identifies the request; reusing a key for a different request fails.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, String fingerprint, Supplier<T> action) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        Entry fresh = new Entry(fingerprint);
+        Entry existing = entries.asMap().putIfAbsent(key, fresh);
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyKeyReusedException("Idempotency-Key " + key + " was already used for a different request");
+            }
+            hits.increment();
+            Object outcome;
+            try {
+                outcome = existing.outcome.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e;
+            }
+            if (outcome instanceof TransferException transferException) {
+                throw transferException;
+            }
+            return (T) outcome;
+        }
+
+        misses.increment();
+        try {
+            T result = action.get();
+            fresh.outcome.complete(result);
+            return result;
+        } catch (TransferException e) {
+            fresh.outcome.complete(e);
+            throw e;
+        } catch (Throwable e) {
+            // Anything else must complete the outcome too, or a retry waiting on it would never return
+            entries.asMap().remove(key, fresh);
+            fresh.outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public long getSize() {
+        return entries.estimatedSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("transfers.idempotency.hits", hits, LongAdder::sum)
+                .description("Requests answered from a remembered Idempotency-Key")
+                .register(registry);
+        FunctionCounter.builder("transfers.idempotency.misses", misses, LongAdder::sum).register(registry);
+        Gauge.builder("transfers.idempotency.size", this, IdempotencyService::getSize).register(registry);
+    }
+
+    private static final class Entry {
+
+        private final String fingerprint;
+        private final CompletableFuture<Object> outcome = new CompletableFuture<>();
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.dws.challenge.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Assigns accounts to nodes by consistent hashing of the accountId. Each node is placed on the
+ * ring at {@link #VIRTUAL_NODES} points, so adding or removing a node moves only about 1/n of the
+ * accounts and the remainder stays evenly spread. Every node computes the same owner for an
+ * account as long as they share the {@code cluster.nodes} list.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+public class PartitionRouter {
+
+    static final int VIRTUAL_NODES = 128;
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+    private final List<String> nodes;
+    private final String self;
+
+    @Autowired
+    public PartitionRouter(@Value("${cluster.nodes}") List<String> nodes, @Value("${cluster.self}") String self) {
+        if (!nodes.contains(self)) {
+            throw new IllegalArgumentException("cluster.self " + self + " is not one of cluster.nodes " + nodes);
+        }
+        this.nodes = List.copyOf(nodes);
+        this.self = self;
+        for (String node : nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(node + '#' + i), node);
+            }
+        }
+    }
+
+    public String ownerOf(String accountId) {
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(accountId));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    public boolean isLocal(String accountId) {
+        return self.equals(ownerOf(accountId));
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    // FNV-1a over the UTF-8 bytes followed by the murmur3 finalizer; stable across JVMs and releases
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,183 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.PartitionCredit;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The cross-partition credits a coordinator has not seen through yet, so that a restart does not
+ * lose track of reserved funds. A credit is synced to the file before it is first sent and marked
+ * resolved once its owner has applied or rejected it; on opening, the credits still open are
+ * handed back to be sent again and the file is rewritten with just those.
+ *
+ * <p>Each record is a type byte followed by modified UTF-8 strings; a record torn by a crash is
+ * dropped, since it was never acknowledged.
+ */
+final class PendingCreditFile implements Closeable {
+
+    private static final byte ADDED = 1;
+    private static final byte RESOLVED = 2;
+
+    private final Path file;
+    private final Map<String, PartitionCredit> open = new LinkedHashMap<>();
+    // A lock rather than a monitor: appends block on fsync and must not pin virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+
+    PendingCreditFile(Path file) {
+        this.file = file;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            if (Files.exists(file)) {
+                load();
+            }
+            rewrite();
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open pending credits in " + file, e);
+        }
+    }
+
+    /** The credits that were added and never resolved, oldest first. */
+    List<PartitionCredit> openCredits() {
+        lock.lock();
+        try {
+            return new ArrayList<>(open.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void added(PartitionCredit credit) {
+        lock.lock();
+        try {
+            addedLocked(credit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void resolved(String transferId) {
+        lock.lock();
+        try {
+            resolvedLocked(transferId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void addedLocked(PartitionCredit credit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ADDED);
+            out.writeUTF(credit.getTransferId());
+            out.writeUTF(credit.getAccountFromId());
+            out.writeUTF(credit.getAccountToId());
+            out.writeUTF(credit.getAmount().toPlainString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append(bytes.toByteArray());
+        open.put(credit.getTransferId(), credit);
+    }
+
+    private void resolvedLocked(String transferId) {
+        if (open.remove(transferId) == null) {
+            return;
+        }
+        try {
+            if (open.isEmpty()) {
+                // Nothing left to recover, so the history can go
+                channel.truncate(0);
+                channel.force(false);
+                return;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write pending credits in " + file, e);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(40);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(RESOLVED);
+            out.writeUTF(transferId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append(bytes.toByteArray());
+    }
+
+    private void append(byte[] record) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write pending credits in " + file, e);
+        }
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int type = in.read();
+                if (type == ADDED) {
+                    PartitionCredit credit = new PartitionCredit(in.readUTF(), in.readUTF(), in.readUTF(),
+                            new BigDecimal(in.readUTF()));
+                    open.put(credit.getTransferId(), credit);
+                } else if (type == RESOLVED) {
+                    open.remove(in.readUTF());
+                } else {
+                    // End of file, or the start of a record cut short
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // The last record was cut short
+        }
+    }
+
+    private void rewrite() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel = out;
+            List<PartitionCredit> credits = new ArrayList<>(open.values());
+            open.clear();
+            for (PartitionCredit credit : credits) {
+                addedLocked(credit);
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,89 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * {@link Mono}/{@link Flux} view of {@link AccountsService} and {@link TransferService} for the
+ * WebFlux endpoints. Reads only touch memory and run on the thread that subscribes, usually an
+ * event loop. Balance changes run on {@code writeScheduler}, the bounded elastic scheduler unless a
+ * test supplies another: they can block, on a contended account lock, on the sequencer, on a full
+ * notification queue or on a journal fsync, and must never hold up an event loop.
+ *
+ * <p>{@link #getAllAccounts()} reads the accounts one page at a time, in id order, and reads the
+ * next page only once downstream has asked for more accounts than the current one holds. A slow
+ * client therefore holds at most two pages in memory, however many accounts there are.
+ */
+@Service
+@ConditionalOnProperty(name = "accounts.reactive.enabled", havingValue = "true")
+public class ReactiveAccountsService {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final AccountsService accountsService;
+    private final TransferService transferService;
+    private final Scheduler writeScheduler;
+
+    @Autowired
+    public ReactiveAccountsService(AccountsService accountsService, TransferService transferService) {
+        this(accountsService, transferService, Schedulers.boundedElastic());
+    }
+
+    public ReactiveAccountsService(AccountsService accountsService, TransferService transferService,
+                                   Scheduler writeScheduler) {
+        this.accountsService = accountsService;
+        this.transferService = transferService;
+        this.writeScheduler = writeScheduler;
+    }
+
+    public Mono<Void> createAccount(Account account) {
+        return Mono.<Void>fromRunnable(() -> accountsService.createAccount(account)).subscribeOn(writeScheduler);
+    }
+
+    /** The account, or an empty Mono if there is none with that id. */
+    public Mono<Account> getAccount(String accountId) {
+        return Mono.fromSupplier(() -> accountsService.getAccount(accountId));
+    }
+
+    public Flux<Account> getAllAccounts() {
+        return Flux.<List<Account>, Cursor>generate(() -> Cursor.FIRST, (cursor, sink) -> {
+                    if (cursor.exhausted()) {
+                        sink.complete();
+                        return cursor;
+                    }
+                    List<Account> page = accountsService.getAccountsPage(cursor.afterAccountId(), PAGE_SIZE);
+                    sink.next(page);
+                    return page.size() < PAGE_SIZE
+                            ? Cursor.LAST
+                            : new Cursor(page.get(page.size() - 1).getAccountId(), false);
+                })
+                // One page is fetched ahead of the one being drained, no more
+                .flatMapIterable(page -> page, 1);
+    }
+
+    public Mono<Void> transfer(String accountFromId, String accountToId, BigDecimal amount) {
+        return Mono.<Void>fromRunnable(() -> transferService.transfer(accountFromId, accountToId, amount))
+                .subscribeOn(writeScheduler);
+    }
+
+    public Mono<List<TransferResult>> transferBatch(List<TransferRequest> transfers, BatchMode mode) {
+        return Mono.fromCallable(() -> transferService.transferBatch(transfers, mode)).subscribeOn(writeScheduler);
+    }
+
+    private record Cursor(String afterAccountId, boolean exhausted) {
+        static final Cursor FIRST = new Cursor(null, false);
+        static final Cursor LAST = new Cursor(null, true);
+    }
+}
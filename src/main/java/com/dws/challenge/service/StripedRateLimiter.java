@@ -0,0 +1,62 @@
+package com.dws.challenge.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-key rate limits without a map entry per key: keys are hashed onto a fixed number of stripes,
+ * each a token bucket holding up to {@code burst} tokens and refilled at {@code ratePerSecond}.
+ * Keys that share a stripe share its tokens, so with enough stripes a key is now and then limited
+ * a little early, but never late.
+ *
+ * <p>A bucket is a single long, the time at which it would be full again (the theoretical arrival
+ * time of the generic cell rate algorithm, which admits exactly what a token bucket does), taken
+ * with one compare-and-set. Nothing is locked or allocated per request, and stripes sit a cache
+ * line apart so that a hot key does not slow down the keys next to it.
+ */
+public final class StripedRateLimiter {
+
+    // Longs per 64-byte cache line
+    private static final int STRIDE = 8;
+
+    private final AtomicLongArray buckets;
+    private final int mask;
+    private final long interval;
+    private final long tolerance;
+
+    public StripedRateLimiter(int stripes, double ratePerSecond, int burst) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripes must be a power of two, was " + stripes);
+        }
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.buckets = new AtomicLongArray(stripes * STRIDE);
+        this.mask = stripes - 1;
+        this.interval = Math.max(1, (long) (1_000_000_000 / ratePerSecond));
+        this.tolerance = interval * burst;
+        // System.nanoTime() may be negative, so a fresh bucket must be full whatever the clock says
+        for (int i = 0; i < stripes; i++) {
+            buckets.set(i * STRIDE, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Takes a token for {@code key} at {@code nowNanos}, a {@link System#nanoTime()} reading.
+     * Returns 0 if there was one, or how many nanoseconds until there will be one.
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        int hash = key.hashCode();
+        int index = ((hash ^ (hash >>> 16)) & mask) * STRIDE;
+        while (true) {
+            long fullAt = buckets.get(index);
+            long next = Math.max(fullAt, nowNanos) + interval;
+            long wait = next - tolerance - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (buckets.compareAndSet(index, fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+}
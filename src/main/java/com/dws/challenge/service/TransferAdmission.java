@@ -0,0 +1,123 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.exception.TooManyTransfersException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control in front of {@link TransferService}, so that one client hammering one account
+ * cannot starve everybody else through the account locks, which are not fair. A transfer is
+ * admitted in two steps, each of which throws {@link TooManyTransfersException}, answered with 429,
+ * instead of letting it wait:
+ *
+ * <ul>
+ *   <li>{@link #checkRate} once, where the request enters the system, against a token bucket for
+ *   the client and one for the debited account ({@link StripedRateLimiter});</li>
+ *   <li>{@link #enter} and {@link #exit} around the transfer on the node that applies it, against a
+ *   limit on transfers in flight that adapts to their latency ({@link AdaptiveConcurrencyLimit}).</li>
+ * </ul>
+ *
+ * A rate of 0 turns that bucket off.
+ */
+@Component
+@ConditionalOnProperty(name = "transfers.admission.enabled", havingValue = "true")
+public class TransferAdmission implements MeterBinder {
+
+    /** Names the client a rate limit applies to; requests without it are limited by remote address. */
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    private static final int STRIPES = 4096;
+    private static final int MIN_LIMIT = 1;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    // Null when their rate is 0
+    private final StripedRateLimiter clientRates;
+    private final StripedRateLimiter accountRates;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final LongAdder clientLimited = new LongAdder();
+    private final LongAdder accountLimited = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
+
+    @Autowired
+    public TransferAdmission(@Value("${transfers.admission.client-rate:1000}") double clientRate,
+                             @Value("${transfers.admission.client-burst:2000}") int clientBurst,
+                             @Value("${transfers.admission.account-rate:200}") double accountRate,
+                             @Value("${transfers.admission.account-burst:400}") int accountBurst,
+                             @Value("${transfers.admission.initial-limit:64}") int initialLimit,
+                             @Value("${transfers.admission.max-limit:1024}") int maxLimit,
+                             @Value("${transfers.admission.latency-target:20ms}") Duration latencyTarget) {
+        this.clientRates = clientRate > 0 ? new StripedRateLimiter(STRIPES, clientRate, clientBurst) : null;
+        this.accountRates = accountRate > 0 ? new StripedRateLimiter(STRIPES, accountRate, accountBurst) : null;
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit(initialLimit, MIN_LIMIT, maxLimit,
+                latencyTarget.toNanos(), BACKOFF_RATIO);
+    }
+
+    /**
+     * Takes a token from {@code clientId}'s bucket and from {@code accountFromId}'s, or throws if
+     * either is empty. A rejected transfer still spends the tokens it took, so a client that keeps
+     * retrying stays limited.
+     */
+    public void checkRate(String clientId, String accountFromId) {
+        long now = System.nanoTime();
+        if (clientRates != null && clientId != null) {
+            long wait = clientRates.tryAcquire(clientId, now);
+            if (wait > 0) {
+                clientLimited.increment();
+                throw new TooManyTransfersException(TooManyTransfersException.Reason.CLIENT_RATE, clientId, wait);
+            }
+        }
+        if (accountRates != null) {
+            long wait = accountRates.tryAcquire(accountFromId, now);
+            if (wait > 0) {
+                accountLimited.increment();
+                throw new TooManyTransfersException(TooManyTransfersException.Reason.ACCOUNT_RATE, accountFromId, wait);
+            }
+        }
+    }
+
+    /**
+     * Takes a slot under the concurrency limit, or throws if there is none free. Returns the time
+     * of entry, which must be passed to {@link #exit} once the transfer is done, however it ended.
+     */
+    public long enter() {
+        if (!concurrencyLimit.tryAcquire()) {
+            overloaded.increment();
+            throw TooManyTransfersException.OVERLOADED;
+        }
+        return System.nanoTime();
+    }
+
+    public void exit(long enteredAt) {
+        long now = System.nanoTime();
+        concurrencyLimit.release(now - enteredAt, now);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("transfers.admission.limit", concurrencyLimit, AdaptiveConcurrencyLimit::limit)
+                .description("Transfers currently allowed in flight")
+                .register(registry);
+        Gauge.builder("transfers.admission.in-flight", concurrencyLimit, AdaptiveConcurrencyLimit::inFlight)
+                .description("Transfers admitted and not yet finished")
+                .register(registry);
+        rejections(registry, "client_rate", clientLimited);
+        rejections(registry, "account_rate", accountLimited);
+        rejections(registry, "overloaded", overloaded);
+    }
+
+    private static void rejections(MeterRegistry registry, String reason, LongAdder count) {
+        FunctionCounter.builder("transfers.admission.rejected", count, LongAdder::sum)
+                .description("Transfers turned away by admission control")
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,303 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.dto.LedgerEntry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory history of the most recent committed transfers. Entries are numbered by a sequence and
+ * stored column-wise in a ring of fixed-size chunks of primitive arrays, so an entry costs 33 bytes
+ * and no object of its own; once the ring holds {@code retention} entries each new one replaces
+ * the oldest. Every account keeps a sorted array of the sequences that touch it, which is what
+ * queries search: finding the start of a time range or a cursor is a binary search over the
+ * account's postings, and reading {@code k} entries from there touches only those entries.
+ *
+ * <p>There is no global lock. An append locks the posting lists of its two accounts, in a fixed
+ * order, and takes its sequence under them, so entries touching one account are numbered, and
+ * timestamped, in the order they were appended. {@link TransferService} appends while it still
+ * holds the account locks, or on the sequencer's processor, so that order is the order the
+ * balances changed; the lock-free repositories and optimistic mode have no such order, and append
+ * right after their compare-and-swap commits.
+ *
+ * <p>Reads take an account's posting lock only to copy out its array and size. An entry's slot
+ * holds its sequence, written last, and is cleared before the slot is reused, so a reader that
+ * finds the sequence it expects before and after reading the entry has read a whole entry.
+ * A posting list drops evicted sequences whenever it grows.
+ */
+@Component
+public class TransferLedger implements MeterBinder {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final long EMPTY = -1;
+    // Marks an amount that did not fit an unscaled long and a byte scale
+    private static final byte OVERFLOW_SCALE = Byte.MIN_VALUE;
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final long capacity;
+    private final long ringMask;
+    private final AtomicReferenceArray<Chunk> chunks;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Object newAccountLock = new Object();
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+    private final Map<Long, BigDecimal> overflowAmounts = new ConcurrentHashMap<>();
+
+    // Grown only under newAccountLock; volatile so readers see grown arrays
+    private volatile String[] accountIds = new String[1024];
+
+    @Autowired
+    public TransferLedger(@Value("${transfers.ledger.enabled:true}") boolean enabled,
+                          @Value("${transfers.ledger.retention:1048576}") int retention) {
+        this(enabled, retention, Clock.systemUTC());
+    }
+
+    public TransferLedger(boolean enabled, int retention, Clock clock) {
+        if (retention < 1) {
+            throw new IllegalArgumentException("Ledger retention must be positive, was " + retention);
+        }
+        this.enabled = enabled;
+        this.clock = clock;
+        // Whole chunks, a power of two of them, so that a sequence maps to its slot with a mask
+        this.capacity = Math.max(CHUNK_SIZE, Long.highestOneBit(retention - 1L) << 1);
+        this.ringMask = capacity - 1;
+        this.chunks = new AtomicReferenceArray<>((int) (capacity >>> CHUNK_BITS));
+    }
+
+    /** A ledger that records nothing, for services built outside the Spring context. */
+    public static TransferLedger disabled() {
+        return new TransferLedger(false, 1, Clock.systemUTC());
+    }
+
+    public void record(String accountFromId, String accountToId, BigDecimal amount) {
+        if (!enabled) {
+            return;
+        }
+        Postings from = postingsFor(accountFromId);
+        Postings to = postingsFor(accountToId);
+        Postings first = from.handle < to.handle ? from : to;
+        Postings second = first == from ? to : from;
+        synchronized (first) {
+            synchronized (second) {
+                long sequence = nextSequence.getAndIncrement();
+                long timestamp = Math.max(clock.millis(), Math.max(from.lastTimestamp, to.lastTimestamp));
+                write(sequence, timestamp, from.handle, to.handle, amount);
+                from.add(sequence, timestamp, oldestRetained());
+                if (to != from) {
+                    to.add(sequence, timestamp, oldestRetained());
+                }
+            }
+        }
+    }
+
+    /**
+     * Entries touching {@code accountId}, oldest first, with a timestamp in
+     * {@code [fromMillis, toMillis)} and a sequence greater than {@code afterSequence}
+     * (pass -1 to start from the beginning). Returns at most {@code limit} entries; entries past
+     * the retention limit are gone.
+     */
+    public List<LedgerEntry> entriesFor(String accountId, long fromMillis, long toMillis, long afterSequence,
+                                        int limit) {
+        Postings account = postings.get(accountId);
+        if (account == null) {
+            return List.of();
+        }
+        int count;
+        long[] sequences;
+        synchronized (account) {
+            count = account.size;
+            sequences = account.sequences;
+        }
+
+        int start = firstAfterSequence(sequences, 0, count, Math.max(afterSequence, oldestRetained() - 1));
+        start = firstAtOrAfter(sequences, start, count, fromMillis);
+        List<LedgerEntry> entries = new ArrayList<>(Math.min(limit, count - start));
+        for (int i = start; i < count && entries.size() < limit; i++) {
+            LedgerEntry entry = read(sequences[i]);
+            if (entry == null) {
+                // Evicted while this query ran
+                continue;
+            }
+            if (entry.getTimestamp().toEpochMilli() >= toMillis) {
+                break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /** Number of entries recorded since startup, including those since evicted. */
+    public long size() {
+        return nextSequence.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("transfers.ledger.entries", this, TransferLedger::size)
+                .description("Transfers recorded in the history ledger")
+                .register(registry);
+    }
+
+    private long oldestRetained() {
+        return Math.max(0, nextSequence.get() - capacity);
+    }
+
+    private void write(long sequence, long timestamp, int from, int to, BigDecimal amount) {
+        int chunkIndex = (int) ((sequence & ringMask) >>> CHUNK_BITS);
+        Chunk chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            Chunk created = new Chunk();
+            chunk = chunks.compareAndExchange(chunkIndex, null, created);
+            if (chunk == null) {
+                chunk = created;
+            }
+        }
+        int offset = (int) (sequence & CHUNK_MASK);
+        long evicted = chunk.sequences.getAndSet(offset, EMPTY);
+        if (evicted != EMPTY && chunk.scales[offset] == OVERFLOW_SCALE) {
+            overflowAmounts.remove(evicted);
+        }
+        // Readers that see the slot cleared must not see any of the new entry before it
+        VarHandle.storeStoreFence();
+
+        chunk.timestamps[offset] = timestamp;
+        chunk.from[offset] = from;
+        chunk.to[offset] = to;
+        BigDecimal stripped = amount.stripTrailingZeros();
+        if (stripped.scale() > Byte.MIN_VALUE && stripped.scale() <= Byte.MAX_VALUE
+                && stripped.unscaledValue().bitLength() < Long.SIZE) {
+            chunk.unscaled[offset] = stripped.unscaledValue().longValue();
+            chunk.scales[offset] = (byte) stripped.scale();
+        } else {
+            overflowAmounts.put(sequence, amount);
+            chunk.scales[offset] = OVERFLOW_SCALE;
+        }
+        chunk.sequences.setRelease(offset, sequence);
+    }
+
+    // Null if the entry has been, or is being, replaced by a newer one
+    private LedgerEntry read(long sequence) {
+        Chunk chunk = chunks.get((int) ((sequence & ringMask) >>> CHUNK_BITS));
+        int offset = (int) (sequence & CHUNK_MASK);
+        if (chunk.sequences.getAcquire(offset) != sequence) {
+            return null;
+        }
+        long timestamp = chunk.timestamps[offset];
+        int from = chunk.from[offset];
+        int to = chunk.to[offset];
+        long unscaled = chunk.unscaled[offset];
+        byte scale = chunk.scales[offset];
+        BigDecimal amount = scale == OVERFLOW_SCALE ? overflowAmounts.get(sequence) : null;
+        VarHandle.loadLoadFence();
+        if (chunk.sequences.get(offset) != sequence) {
+            return null;
+        }
+        if (amount == null) {
+            amount = BigDecimal.valueOf(unscaled, scale);
+        }
+        String[] accountIds = this.accountIds;
+        return new LedgerEntry(sequence, Instant.ofEpochMilli(timestamp), accountIds[from], accountIds[to], amount);
+    }
+
+    private Postings postingsFor(String accountId) {
+        Postings existing = postings.get(accountId);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (newAccountLock) {
+            existing = postings.get(accountId);
+            if (existing != null) {
+                return existing;
+            }
+            int handle = postings.size();
+            if (handle == accountIds.length) {
+                accountIds = Arrays.copyOf(accountIds, accountIds.length * 2);
+            }
+            accountIds[handle] = accountId;
+            Postings created = new Postings(handle);
+            postings.put(accountId, created);
+            return created;
+        }
+    }
+
+    private int firstAtOrAfter(long[] sequences, int low, int count, long fromMillis) {
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long sequence = sequences[mid];
+            Chunk chunk = chunks.get((int) ((sequence & ringMask) >>> CHUNK_BITS));
+            // Only a slot evicted since the query started can be mid-replacement here, and read() drops those
+            if (chunk.timestamps[(int) (sequence & CHUNK_MASK)] < fromMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int firstAfterSequence(long[] sequences, int low, int count, long afterSequence) {
+        int index = Arrays.binarySearch(sequences, low, count, afterSequence);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static final class Chunk {
+        final AtomicLongArray sequences = new AtomicLongArray(CHUNK_SIZE);
+        final long[] timestamps = new long[CHUNK_SIZE];
+        final int[] from = new int[CHUNK_SIZE];
+        final int[] to = new int[CHUNK_SIZE];
+        final long[] unscaled = new long[CHUNK_SIZE];
+        final byte[] scales = new byte[CHUNK_SIZE];
+
+        Chunk() {
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                sequences.set(i, EMPTY);
+            }
+        }
+    }
+
+    // Sequences of the entries touching one account, in ascending order; guarded by its own monitor
+    private static final class Postings {
+        final int handle;
+        long[] sequences = new long[8];
+        int size;
+        long lastTimestamp = Long.MIN_VALUE;
+
+        Postings(int handle) {
+            this.handle = handle;
+        }
+
+        void add(long sequence, long timestamp, long oldestRetained) {
+            if (size == sequences.length) {
+                // Readers may hold the old array, so the kept sequences go to a new one
+                int evicted = firstAfterSequence(sequences, 0, size, oldestRetained - 1);
+                int kept = size - evicted;
+                long[] grown = new long[kept * 2 < sequences.length ? sequences.length : sequences.length * 2];
+                System.arraycopy(sequences, evicted, grown, 0, kept);
+                sequences = grown;
+                size = kept;
+            }
+            sequences[size] = sequence;
+            size = size + 1;
+            lastTimestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.dws.challenge.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters recorded by {@link TransferService}. Every meter is registered up front, so recording on
+ * the transfer path is a plain counter or histogram update without tag lookups or allocation.
+ *
+ * <p>Rejections are always counted. Timings are taken for one transfer in {@code sampleRate}
+ * (1 times every transfer, 0 turns timing off), which also skips the {@link System#nanoTime()}
+ * calls for transfers that are not sampled.
+ */
+@Component
+public class TransferMetrics {
+
+    /** Returned by {@link #start()} for a transfer that is not being timed. */
+    public static final long NOT_SAMPLED = 0;
+
+    private final int sampleRate;
+    private final Timer latency;
+    private final Timer lockWait;
+    private final Timer lockHold;
+    private final Counter insufficientFunds;
+    private final Counter unknownAccount;
+    private final Counter sameAccount;
+    private final Counter invalidAmount;
+    private final Counter optimisticConflicts;
+
+    @Autowired
+    public TransferMetrics(MeterRegistry registry, @Value("${transfers.metrics.sample-rate:1}") int sampleRate) {
+        if (sampleRate < 0) {
+            throw new IllegalArgumentException("transfers.metrics.sample-rate must not be negative");
+        }
+        this.sampleRate = sampleRate;
+        this.latency = Timer.builder("transfers.latency")
+                .description("Time to apply a single transfer, including lock wait and journal write")
+                .publishPercentiles(0.5, 0.95, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(500))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(registry);
+        this.lockWait = Timer.builder("transfers.lock.wait")
+                .description("Time spent acquiring both account locks")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(50))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(registry);
+        this.lockHold = Timer.builder("transfers.lock.hold")
+                .description("Time both account locks are held")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(50))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(registry);
+        this.insufficientFunds = rejections(registry, "insufficient_funds");
+        this.unknownAccount = rejections(registry, "unknown_account");
+        this.sameAccount = rejections(registry, "same_account");
+        this.invalidAmount = rejections(registry, "invalid_amount");
+        this.optimisticConflicts = Counter.builder("transfers.optimistic.conflicts")
+                .description("Versioned updates that lost a race and were retried")
+                .register(registry);
+    }
+
+    /** Meters that go nowhere, for services built outside the Spring context. */
+    public static TransferMetrics noop() {
+        return new TransferMetrics(new CompositeMeterRegistry(), 0);
+    }
+
+    /** Starts timing a transfer if it is sampled; pass the result to {@link #lap} and {@link #finished}. */
+    public long start() {
+        if (sampleRate == 0 || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    /** Current time if the transfer started at {@code startedAt} is sampled. */
+    public long lap(long startedAt) {
+        return startedAt == NOT_SAMPLED ? NOT_SAMPLED : System.nanoTime();
+    }
+
+    /** Records the lock wait since {@code waitStart} and returns the time the locks were acquired. */
+    public long lockAcquired(long waitStart) {
+        if (waitStart == NOT_SAMPLED) {
+            return NOT_SAMPLED;
+        }
+        long now = System.nanoTime();
+        lockWait.record(now - waitStart, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    public void lockReleased(long lockedAt) {
+        if (lockedAt != NOT_SAMPLED) {
+            lockHold.record(System.nanoTime() - lockedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void finished(long startedAt) {
+        if (startedAt != NOT_SAMPLED) {
+            latency.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void rejectedInsufficientFunds() {
+        insufficientFunds.increment();
+    }
+
+    public void rejectedUnknownAccount() {
+        unknownAccount.increment();
+    }
+
+    public void rejectedSameAccount() {
+        sameAccount.increment();
+    }
+
+    public void rejectedInvalidAmount() {
+        invalidAmount.increment();
+    }
+
+    public void optimisticConflict() {
+        optimisticConflicts.increment();
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("transfers.rejected")
+                .description("Transfers rejected before any balance changed")
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,290 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer pipeline for {@link TransferService.ConcurrencyMode#SEQUENCED}, after the LMAX
+ * Disruptor. Callers claim a sequence, fill the pre-allocated command slot it maps to in a ring
+ * and publish it. One processor thread applies commands strictly in sequence order, so balances
+ * are only ever written by that thread and need no locks. A journal thread follows it through
+ * the same slots, appends what each command changed, waits once for the whole run it has drained
+ * to become durable, and then completes each command's future, which frees the slot.
+ *
+ * <p>Consumers spin briefly when there is nothing to do and then park; a producer unparks a
+ * consumer only if it is parked. A producer that finds the ring full parks and retries.
+ */
+final class TransferSequencer {
+
+    enum Kind { TRANSFER, DEBIT, CREDIT, BATCH }
+
+    /** What runs on the two pipeline threads; both see every command once, in sequence order. */
+    interface Handler {
+
+        /** Applies the command on the processor thread; sets {@link Command#applied} or throws. */
+        void apply(Command command);
+
+        /** Journals what an applied command changed and returns the journal position, or 0. */
+        long journal(Command command);
+
+        void awaitDurable(long journalPosition);
+    }
+
+    /** A ring slot, reused for every sequence that maps to it; only the pipeline reads it. */
+    static final class Command {
+        Kind kind;
+        String accountFromId;
+        String accountToId;
+        BigDecimal amount;
+        List<TransferRequest> batch;
+        List<TransferResult> results;
+        boolean atomic;
+        boolean applied;
+        RuntimeException failure;
+        CompletableFuture<Boolean> future;
+
+        private void clear() {
+            accountFromId = null;
+            accountToId = null;
+            amount = null;
+            batch = null;
+            results = null;
+            failure = null;
+            future = null;
+        }
+    }
+
+    private static final int SPINS = 64;
+    private static final int YIELDS = 8;
+    private static final long FULL_RING_PARK_NANOS = 1_000;
+
+    private final Handler handler;
+    private final Command[] ring;
+    private final int mask;
+    // published[i] is the last sequence written to slot i; -1 until the first
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long processed = -1;
+    private volatile long completed = -1;
+    private volatile boolean running = true;
+    private final Sleeper processor;
+    private final Sleeper journaler;
+
+    TransferSequencer(int ringSize, Handler handler) {
+        if (ringSize < 2 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("transfers.sequencer.ring-size must be a power of two, got " + ringSize);
+        }
+        this.handler = handler;
+        this.ring = new Command[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            ring[i] = new Command();
+        }
+        this.mask = ringSize - 1;
+        this.published = new AtomicLongArray(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            published.set(i, -1);
+        }
+        this.processor = new Sleeper(daemon("transfer-sequencer", this::process));
+        this.journaler = new Sleeper(daemon("transfer-sequencer-journal", this::journal));
+        processor.thread.start();
+        journaler.thread.start();
+    }
+
+    /** Applies a transfer; returns false, changing nothing, if the debited account cannot cover it. */
+    boolean transfer(String accountFromId, String accountToId, BigDecimal amount) {
+        return submit(Kind.TRANSFER, accountFromId, accountToId, amount, null, null, false);
+    }
+
+    boolean debit(String accountId, BigDecimal amount) {
+        return submit(Kind.DEBIT, accountId, null, amount, null, null, false);
+    }
+
+    void credit(String accountId, BigDecimal amount) {
+        submit(Kind.CREDIT, null, accountId, amount, null, null, false);
+    }
+
+    /** Applies a batch as one command, filling in {@code results} for the items not yet decided. */
+    void batch(List<TransferRequest> transfers, List<TransferResult> results, boolean atomic) {
+        submit(Kind.BATCH, null, null, null, transfers, results, atomic);
+    }
+
+    void close() {
+        running = false;
+        processor.wake();
+        journaler.wake();
+    }
+
+    private boolean submit(Kind kind, String accountFromId, String accountToId, BigDecimal amount,
+                           List<TransferRequest> batch, List<TransferResult> results, boolean atomic) {
+        if (!running) {
+            throw new IllegalStateException("Transfer sequencer is shut down");
+        }
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        long sequence = claimed.incrementAndGet();
+        // The slot is free once the command a full lap behind has completed
+        while (sequence - ring.length > completed) {
+            if (!running) {
+                throw new IllegalStateException("Transfer sequencer is shut down");
+            }
+            LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+        }
+        Command command = ring[(int) sequence & mask];
+        command.kind = kind;
+        command.accountFromId = accountFromId;
+        command.accountToId = accountToId;
+        command.amount = amount;
+        command.batch = batch;
+        command.results = results;
+        command.atomic = atomic;
+        command.applied = false;
+        command.future = future;
+        published.set((int) sequence & mask, sequence);
+        processor.wake();
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private void process() {
+        long next = 0;
+        int idle = 0;
+        while (running) {
+            long last = next - 1;
+            while (published.get((int) (last + 1) & mask) == last + 1) {
+                last++;
+            }
+            if (last < next) {
+                idle = idle(idle, processor, next);
+                continue;
+            }
+            idle = 0;
+            for (long sequence = next; sequence <= last; sequence++) {
+                Command command = ring[(int) sequence & mask];
+                try {
+                    handler.apply(command);
+                } catch (RuntimeException e) {
+                    command.applied = false;
+                    command.failure = e;
+                }
+            }
+            processed = last;
+            next = last + 1;
+            journaler.wake();
+        }
+    }
+
+    private void journal() {
+        long next = 0;
+        int idle = 0;
+        while (running) {
+            long last = processed;
+            if (last < next) {
+                idle = idle(idle, journaler, next);
+                continue;
+            }
+            idle = 0;
+            long journalPosition = 0;
+            RuntimeException journalFailure = null;
+            for (long sequence = next; sequence <= last && journalFailure == null; sequence++) {
+                Command command = ring[(int) sequence & mask];
+                if (command.applied) {
+                    try {
+                        journalPosition = Math.max(journalPosition, handler.journal(command));
+                    } catch (RuntimeException e) {
+                        journalFailure = e;
+                    }
+                }
+            }
+            if (journalFailure == null && journalPosition > 0) {
+                try {
+                    handler.awaitDurable(journalPosition);
+                } catch (RuntimeException e) {
+                    journalFailure = e;
+                }
+            }
+            for (long sequence = next; sequence <= last; sequence++) {
+                complete(ring[(int) sequence & mask], journalFailure);
+            }
+            completed = last;
+            next = last + 1;
+        }
+        failPending(next);
+    }
+
+    // The balances are already applied when journaling fails, so the caller learns of the failure
+    // as it would in the other modes, where the journal write fails after the balances were checked
+    private static void complete(Command command, RuntimeException journalFailure) {
+        CompletableFuture<Boolean> future = command.future;
+        RuntimeException failure = command.failure != null ? command.failure : journalFailure;
+        boolean applied = command.applied;
+        command.clear();
+        if (failure != null) {
+            future.completeExceptionally(failure);
+        } else {
+            future.complete(applied);
+        }
+    }
+
+    private void failPending(long next) {
+        IllegalStateException shutDown = new IllegalStateException("Transfer sequencer is shut down");
+        for (long sequence = next; sequence <= claimed.get(); sequence++) {
+            CompletableFuture<Boolean> future = ring[(int) sequence & mask].future;
+            if (future != null) {
+                future.completeExceptionally(shutDown);
+            }
+        }
+    }
+
+    // Spins, then yields, then parks until woken; re-checks for work after announcing the park so a
+    // producer that published in between either is seen here or sees the sleeper and unparks it
+    private int idle(int idle, Sleeper sleeper, long next) {
+        if (idle < SPINS) {
+            Thread.onSpinWait();
+        } else if (idle < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            sleeper.sleeping = true;
+            if (running && !hasWork(sleeper, next)) {
+                LockSupport.park(this);
+            }
+            sleeper.sleeping = false;
+        }
+        return idle + 1;
+    }
+
+    private boolean hasWork(Sleeper sleeper, long next) {
+        return sleeper == processor ? published.get((int) next & mask) == next : processed >= next;
+    }
+
+    private static Thread daemon(String name, Runnable loop) {
+        Thread thread = new Thread(loop, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class Sleeper {
+        private final Thread thread;
+        private volatile boolean sleeping;
+
+        private Sleeper(Thread thread) {
+            this.thread = thread;
+        }
+
+        void wake() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}
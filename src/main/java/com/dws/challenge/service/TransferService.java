@@ -1,62 +1,965 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.BatchTransferRequest;
+import com.dws.challenge.domain.ShardedAccount;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+import com.dws.challenge.exception.ConcurrentUpdateException;
+import com.dws.challenge.exception.InsufficientFundsException;
 import com.dws.challenge.exception.TransferException;
-import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.exception.UnknownAccountException;
+import com.dws.challenge.repository.AccountIdDictionary;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.InternedAccountsRepository;
+import com.dws.challenge.repository.MinorUnitAccountsRepository;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.LockSupport;
 
 @Service
 public class TransferService {
 
+    /** How transfers on repositories without minor-unit slots are kept consistent. */
+    public enum ConcurrencyMode {
+        /** Lock both accounts and update them in place. */
+        LOCKING,
+        /** Read without locks and commit with {@link AccountsRepository#updateIfVersion}, retrying on conflict. */
+        OPTIMISTIC,
+        /** Hand every balance change to one thread through a {@link TransferSequencer} ring; no locks. */
+        SEQUENCED
+    }
+
+    private static final int SPIN_ATTEMPTS = 4;
+    private static final long MIN_BACKOFF_NANOS = 1_000;
+    private static final long MAX_BACKOFF_NANOS = 1_000_000;
 
-    private final AccountsRepositoryInMemory accountRepository;
+    private final AccountsRepository accountRepository;
+    // The same repository when it interns account ids; the LOCKING paths then work by handle
+    private final InternedAccountsRepository internedRepository;
+    // Handles issued by this service when the repository does not intern ids itself
+    private final AccountIdDictionary issuedHandles;
     private final NotificationService notificationService;
-    private final Lock lock = new ReentrantLock();
+    private final AccountLockManager lockManager;
+    private final TransferMetrics metrics;
+    private final ConcurrencyMode concurrencyMode;
+    private final int maxAttempts;
+    private final TransferLedger ledger;
+    private final List<AccountChangeListener> changeListeners;
+    // Only in SEQUENCED mode on a repository without minor-unit slots
+    private final TransferSequencer sequencer;
+    private final int maxBatchSize;
+
+    public TransferService(AccountsRepository accountRepository, NotificationService notificationService,
+                           AccountLockManager lockManager) {
+        this(accountRepository, notificationService, lockManager, TransferMetrics.noop());
+    }
+
+    public TransferService(AccountsRepository accountRepository, NotificationService notificationService,
+                           AccountLockManager lockManager, TransferMetrics metrics) {
+        this(accountRepository, notificationService, lockManager, metrics, ConcurrencyMode.LOCKING, 100);
+    }
+
+    public TransferService(AccountsRepository accountRepository, NotificationService notificationService,
+                           AccountLockManager lockManager, TransferMetrics metrics,
+                           ConcurrencyMode concurrencyMode, int maxAttempts) {
+        this(accountRepository, notificationService, lockManager, metrics, concurrencyMode, maxAttempts,
+                TransferLedger.disabled());
+    }
+
+    public TransferService(AccountsRepository accountRepository, NotificationService notificationService,
+                           AccountLockManager lockManager, TransferMetrics metrics,
+                           ConcurrencyMode concurrencyMode, int maxAttempts, TransferLedger ledger) {
+        this(accountRepository, notificationService, lockManager, metrics, concurrencyMode, maxAttempts, ledger,
+                List.of(), 4096, BatchTransferRequest.MAX_TRANSFERS);
+    }
 
     @Autowired
-    public TransferService(AccountsRepositoryInMemory accountRepository, NotificationService notificationService) {
+    public TransferService(AccountsRepository accountRepository, NotificationService notificationService,
+                           AccountLockManager lockManager, TransferMetrics metrics,
+                           @Value("${transfers.concurrency:LOCKING}") ConcurrencyMode concurrencyMode,
+                           @Value("${transfers.optimistic.max-attempts:100}") int maxAttempts,
+                           TransferLedger ledger, List<AccountChangeListener> changeListeners,
+                           @Value("${transfers.sequencer.ring-size:4096}") int ringSize,
+                           @Value("${transfers.batch.max-size:1000}") int maxBatchSize) {
+        if (maxBatchSize < 1 || maxBatchSize > BatchTransferRequest.MAX_TRANSFERS) {
+            throw new IllegalArgumentException("transfers.batch.max-size must be between 1 and "
+                    + BatchTransferRequest.MAX_TRANSFERS + ", got " + maxBatchSize);
+        }
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC && !accountRepository.supportsVersionedUpdates()) {
+            throw new IllegalStateException("transfers.concurrency=OPTIMISTIC needs versioned updates, which "
+                    + accountRepository.getClass().getSimpleName() + " does not support");
+        }
         this.accountRepository = accountRepository;
+        this.internedRepository = accountRepository instanceof InternedAccountsRepository interned ? interned : null;
+        this.issuedHandles = internedRepository == null ? new AccountIdDictionary() : null;
         this.notificationService = notificationService;
+        this.lockManager = lockManager;
+        this.metrics = metrics;
+        this.concurrencyMode = concurrencyMode;
+        this.maxAttempts = maxAttempts;
+        this.ledger = ledger;
+        this.changeListeners = changeListeners;
+        this.maxBatchSize = maxBatchSize;
+        this.sequencer = concurrencyMode == ConcurrencyMode.SEQUENCED
+                && !(accountRepository instanceof MinorUnitAccountsRepository)
+                ? new TransferSequencer(ringSize, new SequencedHandler())
+                : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sequencer != null) {
+            sequencer.close();
+        }
     }
 
     @Transactional
     public void transfer(String accountFromId, String accountToId, BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new TransferException("Transfer amount must be positive");
+        long startedAt = metrics.start();
+        validate(accountFromId, accountToId, amount);
+        if (accountRepository instanceof MinorUnitAccountsRepository minorUnits) {
+            transferMinorUnits(minorUnits, accountFromId, accountToId, amount);
+            committed(accountFromId, accountToId);
+            metrics.finished(startedAt);
+            return;
         }
-        if(accountFromId.equals(accountToId)){
-            throw new TransferException("Transfer must be between two different accounts");
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            transferOptimistic(accountFromId, accountToId, amount);
+            committed(accountFromId, accountToId);
+            metrics.finished(startedAt);
+            return;
+        }
+        if (sequencer != null) {
+            transferSequenced(accountFromId, accountToId, amount);
+            committed(accountFromId, accountToId);
+            metrics.finished(startedAt);
+            return;
         }
 
-        Account accountFrom = Optional.ofNullable(accountRepository.getAccount(accountFromId))
-                .orElseThrow(() -> new TransferException("Account number "+accountFromId+" not found"));
-        Account accountTo = Optional.ofNullable(accountRepository.getAccount(accountToId))
-                .orElseThrow(() -> new TransferException("Account number "+accountToId+" not found"));
+        int accountFromHandle = repositoryHandleOf(accountFromId);
+        int accountToHandle = repositoryHandleOf(accountToId);
+        transferLocked(accountFromHandle, accountToHandle, accountFromId, accountToId, amount, startedAt);
+    }
 
-        lock.lock();
+    /**
+     * The account's handle, which a caller may keep and pass to
+     * {@link #transfer(int, int, BigDecimal)}, or {@link InternedAccountsRepository#NO_HANDLE} if
+     * there is no such account. On an {@link InternedAccountsRepository} it is the repository's own
+     * handle, as from {@link AccountsService#handleOf}; otherwise this service issues it.
+     */
+    public int handleOf(String accountId) {
+        if (internedRepository != null) {
+            int handle = internedRepository.handleOf(accountId);
+            return internedRepository.getAccount(handle) != null ? handle : InternedAccountsRepository.NO_HANDLE;
+        }
+        return accountRepository.getAccount(accountId) != null
+                ? issuedHandles.intern(accountId) : InternedAccountsRepository.NO_HANDLE;
+    }
+
+    /**
+     * {@link #transfer(String, String, BigDecimal)} between accounts named by handles a caller kept
+     * from {@link #handleOf} or {@link AccountsService#handleOf}. On an
+     * {@link InternedAccountsRepository} neither id is looked up again; otherwise the handles are
+     * resolved back to ids and the transfer takes the id-based path.
+     */
+    @Transactional
+    public void transfer(int accountFromHandle, int accountToHandle, BigDecimal amount) {
+        String accountFromId = accountIdOf(accountFromHandle);
+        if (accountFromId == null) {
+            throw unknownAccount("#" + accountFromHandle);
+        }
+        String accountToId = accountIdOf(accountToHandle);
+        if (accountToId == null) {
+            throw unknownAccount("#" + accountToHandle);
+        }
+        if (internedRepository == null || concurrencyMode != ConcurrencyMode.LOCKING) {
+            transfer(accountFromId, accountToId, amount);
+            return;
+        }
+        long startedAt = metrics.start();
+        validate(accountFromId, accountToId, amount);
+        transferLocked(accountFromHandle, accountToHandle, accountFromId, accountToId, amount, startedAt);
+    }
+
+    // The handles are NO_HANDLE unless the repository interns ids
+    private void transferLocked(int accountFromHandle, int accountToHandle, String accountFromId, String accountToId,
+                                BigDecimal amount, long startedAt) {
+        Account accountFrom = accountOf(accountFromHandle, accountFromId);
+        if (accountFrom == null) {
+            throw unknownAccount(accountFromId);
+        }
+        Account accountTo = accountOf(accountToHandle, accountToId);
+        if (accountTo == null) {
+            throw unknownAccount(accountToId);
+        }
+        // Unlocked read of the volatile balance: a transfer that cannot succeed is turned away without
+        // queueing for the locks. The check is repeated under the lock, where it is authoritative.
+        if (accountFrom.getBalance().compareTo(amount) < 0) {
+            metrics.rejectedInsufficientFunds();
+            throw new InsufficientFundsException(accountFromId);
+        }
+
+        Lock first;
+        Lock second;
+        if (accountTo instanceof ShardedAccount) {
+            // Credits to a sharded account are lock-free, so only the debited account is locked
+            first = second = lockOf(accountFromHandle, accountFromId);
+        } else {
+            // Always lock the lower handle, or stripe, first so opposite-direction transfers cannot deadlock
+            boolean fromFirst = internedRepository != null
+                    ? accountFromHandle < accountToHandle
+                    : lockManager.stripeOf(accountFromId) < lockManager.stripeOf(accountToId);
+            first = fromFirst ? lockOf(accountFromHandle, accountFromId) : lockOf(accountToHandle, accountToId);
+            second = fromFirst ? lockOf(accountToHandle, accountToId) : lockOf(accountFromHandle, accountFromId);
+        }
+
+        long journalPosition;
+        long waitStart = metrics.lap(startedAt);
+        first.lock();
+        second.lock();
+        long lockedAt = metrics.lockAcquired(waitStart);
         try {
             if (accountFrom.getBalance().compareTo(amount) < 0) {
-                throw new TransferException("Insufficient balance in "+accountFrom.getAccountId()+" account");
+                metrics.rejectedInsufficientFunds();
+                throw new InsufficientFundsException(accountFrom.getAccountId());
+            }
+
+            journalPosition = accountRepository.journalTransfer(accountFromId, accountToId, amount);
+            adjust(accountFrom, amount.negate());
+            adjust(accountTo, amount);
+
+            store(accountFromHandle, accountFrom);
+            store(accountToHandle, accountTo);
+            // Under the locks, so each account's history is in the order its balance changed
+            ledger.record(accountFromId, accountToId, amount);
+        } finally {
+            second.unlock();
+            first.unlock();
+            metrics.lockReleased(lockedAt);
+        }
+        accountRepository.awaitDurable(journalPosition);
+        committed(accountFromId, accountToId);
+
+        // Published only once the balance change has committed and the locks are released
+        notificationService.notifyAboutTransfer(accountFrom, "Transferred " + amount + " to account " + accountToId);
+        notificationService.notifyAboutTransfer(accountTo, "Received " + amount + " from account " + accountFromId);
+        metrics.finished(startedAt);
+    }
+
+    // Lock-free path: the overdraft check is part of the debit CAS, so no account lock is taken
+    private void transferMinorUnits(MinorUnitAccountsRepository minorUnits, String accountFromId,
+                                    String accountToId, BigDecimal amount) {
+        int fromSlot = minorUnits.slotOf(accountFromId);
+        if (fromSlot == MinorUnitAccountsRepository.NO_SLOT) {
+            throw unknownAccount(accountFromId);
+        }
+        int toSlot = minorUnits.slotOf(accountToId);
+        if (toSlot == MinorUnitAccountsRepository.NO_SLOT) {
+            throw unknownAccount(accountToId);
+        }
+
+        long minorAmount = minorUnits.toMinorUnits(amount);
+        if (!minorUnits.tryDebit(fromSlot, minorAmount)) {
+            metrics.rejectedInsufficientFunds();
+            throw new InsufficientFundsException(accountFromId);
+        }
+        long journalPosition;
+        try {
+            journalPosition = minorUnits.journalTransfer(accountFromId, accountToId, amount);
+        } catch (RuntimeException e) {
+            minorUnits.credit(fromSlot, minorAmount);
+            throw e;
+        }
+        minorUnits.credit(toSlot, minorAmount);
+        ledger.record(accountFromId, accountToId, amount);
+        minorUnits.awaitDurable(journalPosition);
+
+        notificationService.notifyAboutTransfer(minorUnits.getAccount(accountFromId), "Transferred " + amount + " to account " + accountToId);
+        notificationService.notifyAboutTransfer(minorUnits.getAccount(accountToId), "Received " + amount + " from account " + accountFromId);
+    }
+
+    // Same shape as the minor-unit path: a checked debit, then a credit that cannot fail, each
+    // committed with a version compare-and-swap instead of under the account locks
+    private void transferOptimistic(String accountFromId, String accountToId, BigDecimal amount) {
+        if (accountRepository.getAccount(accountToId) == null) {
+            throw unknownAccount(accountToId);
+        }
+        if (!tryDebitOptimistic(accountFromId, amount)) {
+            metrics.rejectedInsufficientFunds();
+            throw new InsufficientFundsException(accountFromId);
+        }
+        long journalPosition;
+        try {
+            journalPosition = accountRepository.journalTransfer(accountFromId, accountToId, amount);
+        } catch (RuntimeException e) {
+            creditOptimistic(accountFromId, amount);
+            throw e;
+        }
+        creditOptimistic(accountToId, amount);
+        ledger.record(accountFromId, accountToId, amount);
+        accountRepository.awaitDurable(journalPosition);
+
+        notificationService.notifyAboutTransfer(accountRepository.getAccount(accountFromId), "Transferred " + amount + " to account " + accountToId);
+        notificationService.notifyAboutTransfer(accountRepository.getAccount(accountToId), "Received " + amount + " from account " + accountFromId);
+    }
+
+    // The checks are repeated by the processor, which is the only thread that changes balances; the
+    // journal stage has made the transfer durable by the time the sequencer returns
+    private void transferSequenced(String accountFromId, String accountToId, BigDecimal amount) {
+        Account accountFrom = accountRepository.getAccount(accountFromId);
+        if (accountFrom == null) {
+            throw unknownAccount(accountFromId);
+        }
+        Account accountTo = accountRepository.getAccount(accountToId);
+        if (accountTo == null) {
+            throw unknownAccount(accountToId);
+        }
+        if (accountFrom.getBalance().compareTo(amount) < 0 || !sequencer.transfer(accountFromId, accountToId, amount)) {
+            metrics.rejectedInsufficientFunds();
+            throw new InsufficientFundsException(accountFromId);
+        }
+
+        notificationService.notifyAboutTransfer(accountFrom, "Transferred " + amount + " to account " + accountToId);
+        notificationService.notifyAboutTransfer(accountTo, "Received " + amount + " from account " + accountFromId);
+    }
+
+    private boolean tryDebitOptimistic(String accountId, BigDecimal amount) {
+        for (int attempt = 0; ; attempt++) {
+            Account current = accountRepository.getAccount(accountId);
+            if (current == null) {
+                throw unknownAccount(accountId);
+            }
+            if (current instanceof ShardedAccount sharded) {
+                return sharded.tryDebit(amount);
+            }
+            if (current.getBalance().compareTo(amount) < 0) {
+                return false;
+            }
+            if (accountRepository.updateIfVersion(new Account(accountId, current.getBalance().subtract(amount)),
+                    current.getVersion())) {
+                return true;
+            }
+            backoff(attempt, true);
+        }
+    }
+
+    // Never gives up: it completes a transfer whose debit is already committed
+    private void creditOptimistic(String accountId, BigDecimal amount) {
+        for (int attempt = 0; ; attempt++) {
+            Account current = accountRepository.getAccount(accountId);
+            if (current == null) {
+                throw unknownAccount(accountId);
+            }
+            if (current instanceof ShardedAccount sharded) {
+                sharded.credit(amount);
+                return;
+            }
+            if (accountRepository.updateIfVersion(new Account(accountId, current.getBalance().add(amount)),
+                    current.getVersion())) {
+                return;
             }
+            backoff(attempt, false);
+        }
+    }
 
-            accountFrom.setBalance(accountFrom.getBalance().subtract(amount));
-            accountTo.setBalance(accountTo.getBalance().add(amount));
+    // Spins briefly, then parks for a random time under an exponentially growing ceiling
+    private void backoff(int attempt, boolean mayGiveUp) {
+        metrics.optimisticConflict();
+        if (mayGiveUp && attempt + 1 >= maxAttempts) {
+            throw new ConcurrentUpdateException("Transfer abandoned after " + maxAttempts + " conflicting updates");
+        }
+        if (attempt < SPIN_ATTEMPTS) {
+            Thread.onSpinWait();
+            return;
+        }
+        long ceiling = Math.min(MAX_BACKOFF_NANOS, MIN_BACKOFF_NANOS << Math.min(attempt - SPIN_ATTEMPTS, 20));
+        LockSupport.parkNanos(1 + ThreadLocalRandom.current().nextLong(ceiling));
+    }
 
-            accountRepository.updateAccount(accountFrom);
-            accountRepository.updateAccount(accountTo);
+    /**
+     * First phase of a transfer to an account held by another node: takes {@code amount} out of a
+     * local account and holds it until the owner of {@code accountToId} has credited it. Followed by
+     * {@link #confirmReservation} once the credit is acknowledged, or {@link #releaseReservation}
+     * if the owner rejects it.
+     */
+    public void reserve(String accountFromId, String accountToId, BigDecimal amount) {
+        validate(accountFromId, accountToId, amount);
+        if (!debitLocal(accountFromId, amount)) {
+            metrics.rejectedInsufficientFunds();
+            throw new InsufficientFundsException(accountFromId);
+        }
+        changed(accountFromId);
+    }
 
+    public void confirmReservation(String accountFromId, String accountToId, BigDecimal amount) {
+        ledger.record(accountFromId, accountToId, amount);
+        Account accountFrom = accountRepository.getAccount(accountFromId);
+        // Gone if this node restarted while the credit was in doubt
+        if (accountFrom != null) {
             notificationService.notifyAboutTransfer(accountFrom, "Transferred " + amount + " to account " + accountToId);
-            notificationService.notifyAboutTransfer(accountTo, "Received " + amount + " from account " + accountFromId);
+        }
+    }
 
+    public void releaseReservation(String accountFromId, BigDecimal amount) {
+        creditLocal(accountFromId, amount);
+        changed(accountFromId);
+    }
+
+    /** Second phase on the node that owns {@code accountToId}: credits the reserved amount. */
+    public void credit(String accountFromId, String accountToId, BigDecimal amount) {
+        validate(accountFromId, accountToId, amount);
+        creditLocal(accountToId, amount);
+        ledger.record(accountFromId, accountToId, amount);
+        changed(accountToId);
+        notificationService.notifyAboutTransfer(accountRepository.getAccount(accountToId),
+                "Received " + amount + " from account " + accountFromId);
+    }
+
+    private boolean debitLocal(String accountId, BigDecimal amount) {
+        if (accountRepository instanceof MinorUnitAccountsRepository minorUnits) {
+            int slot = minorUnits.slotOf(accountId);
+            if (slot == MinorUnitAccountsRepository.NO_SLOT) {
+                throw unknownAccount(accountId);
+            }
+            return minorUnits.tryDebit(slot, minorUnits.toMinorUnits(amount));
+        }
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            return tryDebitOptimistic(accountId, amount);
+        }
+        if (sequencer != null) {
+            return sequencer.debit(accountId, amount);
+        }
+
+        int handle = repositoryHandleOf(accountId);
+        Account account = accountOf(handle, accountId);
+        if (account == null) {
+            throw unknownAccount(accountId);
+        }
+        if (account.getBalance().compareTo(amount) < 0) {
+            return false;
+        }
+        Lock lock = lockOf(handle, accountId);
+        lock.lock();
+        try {
+            if (account.getBalance().compareTo(amount) < 0) {
+                return false;
+            }
+            adjust(account, amount.negate());
+            store(handle, account);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void creditLocal(String accountId, BigDecimal amount) {
+        if (accountRepository instanceof MinorUnitAccountsRepository minorUnits) {
+            int slot = minorUnits.slotOf(accountId);
+            if (slot == MinorUnitAccountsRepository.NO_SLOT) {
+                throw unknownAccount(accountId);
+            }
+            minorUnits.credit(slot, minorUnits.toMinorUnits(amount));
+            return;
+        }
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            creditOptimistic(accountId, amount);
+            return;
+        }
+        if (sequencer != null) {
+            sequencer.credit(accountId, amount);
+            return;
+        }
+
+        int handle = repositoryHandleOf(accountId);
+        Account account = accountOf(handle, accountId);
+        if (account == null) {
+            throw unknownAccount(accountId);
+        }
+        if (account instanceof ShardedAccount sharded) {
+            sharded.credit(amount);
+            return;
+        }
+        Lock lock = lockOf(handle, accountId);
+        lock.lock();
+        try {
+            adjust(account, amount);
+            store(handle, account);
         } finally {
             lock.unlock();
         }
     }
+
+    /**
+     * Applies a batch of transfers in order. The accounts the batch touches are locked once, in
+     * sorted order, and balances are written back only after every item has been evaluated, so an
+     * {@link BatchMode#ALL_OR_NOTHING} batch that fails leaves no trace. A batch holds at most
+     * {@code transfers.batch.max-size} transfers, which bounds how many accounts one batch locks.
+     */
+    public List<TransferResult> transferBatch(List<TransferRequest> transfers, BatchMode mode) {
+        if (transfers.size() > maxBatchSize) {
+            throw new TransferException("A batch holds at most " + maxBatchSize + " transfers, got " + transfers.size());
+        }
+        boolean atomic = mode == BatchMode.ALL_OR_NOTHING;
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequest transfer = transfers.get(i);
+            try {
+                validate(transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+                results.add(null);
+            } catch (TransferException e) {
+                if (atomic) {
+                    throw batchRejected(i, e.getMessage());
+                }
+                results.add(TransferResult.failed(i, e.getMessage()));
+            }
+        }
+
+        long journalPosition;
+        if (accountRepository instanceof MinorUnitAccountsRepository minorUnits) {
+            journalPosition = applyBatchMinorUnits(minorUnits, transfers, results, atomic);
+        } else if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            journalPosition = applyBatchOptimistic(transfers, results, atomic);
+        } else if (sequencer != null) {
+            sequencer.batch(transfers, results, atomic);
+            journalPosition = 0;
+        } else {
+            journalPosition = applyBatchLocked(transfers, results, atomic, false);
+        }
+        accountRepository.awaitDurable(journalPosition);
+
+        for (int i = 0; i < transfers.size(); i++) {
+            if (results.get(i).isSuccess()) {
+                TransferRequest transfer = transfers.get(i);
+                committed(transfer.getAccountFromId(), transfer.getAccountToId());
+                notificationService.notifyAboutTransfer(accountRepository.getAccount(transfer.getAccountFromId()),
+                        "Transferred " + transfer.getAmount() + " to account " + transfer.getAccountToId());
+                notificationService.notifyAboutTransfer(accountRepository.getAccount(transfer.getAccountToId()),
+                        "Received " + transfer.getAmount() + " from account " + transfer.getAccountFromId());
+            }
+        }
+        return results;
+    }
+
+    // On the sequencer's processor thread nothing else changes balances, so no locks are taken, and
+    // journaling is left to the sequencer's journal stage
+    private long applyBatchLocked(List<TransferRequest> transfers, List<TransferResult> results, boolean atomic,
+                                  boolean sequenced) {
+        Map<String, Account> accounts = new LinkedHashMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            TransferRequest transfer = transfers.get(i);
+            String missing = resolve(transfer.getAccountFromId(), accounts) ? null : transfer.getAccountFromId();
+            if (missing == null && !resolve(transfer.getAccountToId(), accounts)) {
+                missing = transfer.getAccountToId();
+            }
+            if (missing != null) {
+                metrics.rejectedUnknownAccount();
+                if (atomic) {
+                    throw batchRejected(i, "Account number "+missing+" not found");
+                }
+                results.set(i, TransferResult.failed(i, "Account number "+missing+" not found"));
+            }
+        }
+
+        List<Lock> held = sequenced ? List.of() : lockAll(accounts.keySet());
+        try {
+            Map<String, BigDecimal> opening = new HashMap<>();
+            accounts.forEach((accountId, account) -> opening.put(accountId, account.getBalance()));
+            Map<String, BigDecimal> balances = new HashMap<>(opening);
+
+            for (int i = 0; i < transfers.size(); i++) {
+                if (results.get(i) != null) {
+                    continue;
+                }
+                TransferRequest transfer = transfers.get(i);
+                BigDecimal fromBalance = balances.get(transfer.getAccountFromId());
+                if (fromBalance.compareTo(transfer.getAmount()) < 0) {
+                    metrics.rejectedInsufficientFunds();
+                    if (atomic) {
+                        throw batchRejected(i, "Insufficient balance in "+transfer.getAccountFromId()+" account");
+                    }
+                    results.set(i, TransferResult.failed(i, "Insufficient balance in "+transfer.getAccountFromId()+" account"));
+                    continue;
+                }
+                balances.put(transfer.getAccountFromId(), fromBalance.subtract(transfer.getAmount()));
+                balances.merge(transfer.getAccountToId(), transfer.getAmount(), BigDecimal::add);
+                results.set(i, TransferResult.succeeded(i));
+            }
+
+            long journalPosition = sequenced ? 0 : journalSucceeded(transfers, results);
+            accounts.forEach((accountId, account) -> {
+                adjust(account, balances.get(accountId).subtract(opening.get(accountId)));
+                accountRepository.updateAccount(account);
+            });
+            recordSucceeded(transfers, results);
+            return journalPosition;
+        } finally {
+            lockManager.unlockAll(held);
+        }
+    }
+
+    // Per-item batches run each transfer lock-free. Atomic batches are checked sequentially against a
+    // snapshot and then applied as net per-account deltas, undoing the debits if one no longer fits.
+    private long applyBatchMinorUnits(MinorUnitAccountsRepository minorUnits, List<TransferRequest> transfers,
+                                      List<TransferResult> results, boolean atomic) {
+        long journalPosition = 0;
+        Map<Integer, Long> balances = new HashMap<>();
+        Map<Integer, Long> deltas = new LinkedHashMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            TransferRequest transfer = transfers.get(i);
+            int fromSlot = minorUnits.slotOf(transfer.getAccountFromId());
+            int toSlot = minorUnits.slotOf(transfer.getAccountToId());
+            if (fromSlot == MinorUnitAccountsRepository.NO_SLOT || toSlot == MinorUnitAccountsRepository.NO_SLOT) {
+                String missing = fromSlot == MinorUnitAccountsRepository.NO_SLOT
+                        ? transfer.getAccountFromId() : transfer.getAccountToId();
+                metrics.rejectedUnknownAccount();
+                if (atomic) {
+                    throw batchRejected(i, "Account number "+missing+" not found");
+                }
+                results.set(i, TransferResult.failed(i, "Account number "+missing+" not found"));
+                continue;
+            }
+            long amount;
+            try {
+                amount = minorUnits.toMinorUnits(transfer.getAmount());
+            } catch (IllegalArgumentException e) {
+                if (atomic) {
+                    throw batchRejected(i, e.getMessage());
+                }
+                results.set(i, TransferResult.failed(i, e.getMessage()));
+                continue;
+            }
+
+            if (!atomic) {
+                if (minorUnits.tryDebit(fromSlot, amount)) {
+                    try {
+                        journalPosition = minorUnits.journalTransfer(
+                                transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+                    } catch (RuntimeException e) {
+                        minorUnits.credit(fromSlot, amount);
+                        throw e;
+                    }
+                    minorUnits.credit(toSlot, amount);
+                    ledger.record(transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+                    results.set(i, TransferResult.succeeded(i));
+                } else {
+                    metrics.rejectedInsufficientFunds();
+                    results.set(i, TransferResult.failed(i, "Insufficient balance in "+transfer.getAccountFromId()+" account"));
+                }
+                continue;
+            }
+
+            long fromBalance = balances.computeIfAbsent(fromSlot, minorUnits::balanceOf);
+            if (fromBalance < amount) {
+                metrics.rejectedInsufficientFunds();
+                throw batchRejected(i, "Insufficient balance in "+transfer.getAccountFromId()+" account");
+            }
+            balances.put(fromSlot, fromBalance - amount);
+            balances.put(toSlot, balances.computeIfAbsent(toSlot, minorUnits::balanceOf) + amount);
+            deltas.merge(fromSlot, -amount, Long::sum);
+            deltas.merge(toSlot, amount, Long::sum);
+            results.set(i, TransferResult.succeeded(i));
+        }
+
+        if (atomic) {
+            applyDeltas(minorUnits, deltas);
+            recordSucceeded(transfers, results);
+            journalPosition = journalSucceeded(transfers, results);
+        }
+        return journalPosition;
+    }
+
+    private void applyDeltas(MinorUnitAccountsRepository minorUnits, Map<Integer, Long> deltas) {
+        List<Map.Entry<Integer, Long>> debited = new ArrayList<>();
+        for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+            if (delta.getValue() >= 0) {
+                continue;
+            }
+            if (!minorUnits.tryDebit(delta.getKey(), -delta.getValue())) {
+                debited.forEach(undo -> minorUnits.credit(undo.getKey(), -undo.getValue()));
+                throw new TransferException("Batch rejected: balances changed while it was being applied");
+            }
+            debited.add(delta);
+        }
+        deltas.forEach((slot, delta) -> {
+            if (delta > 0) {
+                minorUnits.credit(slot, delta);
+            }
+        });
+    }
+
+    // Mirrors applyBatchMinorUnits, with version compare-and-swap debits and credits
+    private long applyBatchOptimistic(List<TransferRequest> transfers, List<TransferResult> results, boolean atomic) {
+        long journalPosition = 0;
+        Map<String, BigDecimal> balances = new HashMap<>();
+        Map<String, BigDecimal> deltas = new LinkedHashMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            TransferRequest transfer = transfers.get(i);
+            Account accountFrom = accountRepository.getAccount(transfer.getAccountFromId());
+            Account accountTo = accountRepository.getAccount(transfer.getAccountToId());
+            if (accountFrom == null || accountTo == null) {
+                String missing = accountFrom == null ? transfer.getAccountFromId() : transfer.getAccountToId();
+                metrics.rejectedUnknownAccount();
+                if (atomic) {
+                    throw batchRejected(i, "Account number "+missing+" not found");
+                }
+                results.set(i, TransferResult.failed(i, "Account number "+missing+" not found"));
+                continue;
+            }
+
+            if (!atomic) {
+                if (tryDebitOptimistic(transfer.getAccountFromId(), transfer.getAmount())) {
+                    try {
+                        journalPosition = accountRepository.journalTransfer(
+                                transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+                    } catch (RuntimeException e) {
+                        creditOptimistic(transfer.getAccountFromId(), transfer.getAmount());
+                        throw e;
+                    }
+                    creditOptimistic(transfer.getAccountToId(), transfer.getAmount());
+                    ledger.record(transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+                    results.set(i, TransferResult.succeeded(i));
+                } else {
+                    metrics.rejectedInsufficientFunds();
+                    results.set(i, TransferResult.failed(i, "Insufficient balance in "+transfer.getAccountFromId()+" account"));
+                }
+                continue;
+            }
+
+            BigDecimal fromBalance = balances.computeIfAbsent(transfer.getAccountFromId(), id -> accountFrom.getBalance());
+            if (fromBalance.compareTo(transfer.getAmount()) < 0) {
+                metrics.rejectedInsufficientFunds();
+                throw batchRejected(i, "Insufficient balance in "+transfer.getAccountFromId()+" account");
+            }
+            balances.put(transfer.getAccountFromId(), fromBalance.subtract(transfer.getAmount()));
+            balances.put(transfer.getAccountToId(),
+                    balances.computeIfAbsent(transfer.getAccountToId(), id -> accountTo.getBalance()).add(transfer.getAmount()));
+            deltas.merge(transfer.getAccountFromId(), transfer.getAmount().negate(), BigDecimal::add);
+            deltas.merge(transfer.getAccountToId(), transfer.getAmount(), BigDecimal::add);
+            results.set(i, TransferResult.succeeded(i));
+        }
+
+        if (atomic) {
+            List<Map.Entry<String, BigDecimal>> debited = new ArrayList<>();
+            for (Map.Entry<String, BigDecimal> delta : deltas.entrySet()) {
+                if (delta.getValue().signum() >= 0) {
+                    continue;
+                }
+                if (!tryDebitOptimistic(delta.getKey(), delta.getValue().negate())) {
+                    debited.forEach(undo -> creditOptimistic(undo.getKey(), undo.getValue().negate()));
+                    throw new TransferException("Batch rejected: balances changed while it was being applied");
+                }
+                debited.add(delta);
+            }
+            deltas.forEach((accountId, delta) -> {
+                if (delta.signum() > 0) {
+                    creditOptimistic(accountId, delta);
+                }
+            });
+            recordSucceeded(transfers, results);
+            journalPosition = journalSucceeded(transfers, results);
+        }
+        return journalPosition;
+    }
+
+    private void recordSucceeded(List<TransferRequest> transfers, List<TransferResult> results) {
+        for (int i = 0; i < transfers.size(); i++) {
+            if (results.get(i).isSuccess()) {
+                TransferRequest transfer = transfers.get(i);
+                ledger.record(transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+            }
+        }
+    }
+
+    private long journalSucceeded(List<TransferRequest> transfers, List<TransferResult> results) {
+        long journalPosition = 0;
+        for (int i = 0; i < transfers.size(); i++) {
+            if (results.get(i).isSuccess()) {
+                TransferRequest transfer = transfers.get(i);
+                journalPosition = accountRepository.journalTransfer(
+                        transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+            }
+        }
+        return journalPosition;
+    }
+
+    // Sharded accounts may be credited concurrently, so they are adjusted rather than overwritten.
+    // Callers hold the account lock, or are the sequencer's processor, and have checked the balance covers a debit.
+    private static void adjust(Account account, BigDecimal delta) {
+        if (account instanceof ShardedAccount sharded) {
+            if (delta.signum() > 0) {
+                sharded.credit(delta);
+            } else if (delta.signum() < 0 && !sharded.tryDebit(delta.negate())) {
+                throw new IllegalStateException("Balance of " + account.getAccountId() + " fell below a checked debit");
+            }
+            return;
+        }
+        account.setBalance(account.getBalance().add(delta));
+    }
+
+    private int repositoryHandleOf(String accountId) {
+        return internedRepository != null ? internedRepository.handleOf(accountId) : InternedAccountsRepository.NO_HANDLE;
+    }
+
+    private String accountIdOf(int handle) {
+        return internedRepository != null ? internedRepository.accountIdOf(handle) : issuedHandles.accountIdOf(handle);
+    }
+
+    private Account accountOf(int handle, String accountId) {
+        return internedRepository != null ? internedRepository.getAccount(handle) : accountRepository.getAccount(accountId);
+    }
+
+    // Interned accounts are locked by handle on every LOCKING path, so each has a single lock
+    private Lock lockOf(int handle, String accountId) {
+        return internedRepository != null ? lockManager.lockFor(handle) : lockManager.lockFor(accountId);
+    }
+
+    private List<Lock> lockAll(Collection<String> accountIds) {
+        if (internedRepository == null) {
+            return lockManager.lockAll(accountIds);
+        }
+        int[] handles = new int[accountIds.size()];
+        int i = 0;
+        for (String accountId : accountIds) {
+            handles[i++] = internedRepository.handleOf(accountId);
+        }
+        return lockManager.lockAll(handles);
+    }
+
+    private void store(int handle, Account account) {
+        if (internedRepository != null) {
+            internedRepository.updateAccount(handle, account);
+        } else {
+            accountRepository.updateAccount(account);
+        }
+    }
+
+    private boolean resolve(String accountId, Map<String, Account> accounts) {
+        if (accounts.containsKey(accountId)) {
+            return true;
+        }
+        Account account = accountRepository.getAccount(accountId);
+        if (account == null) {
+            return false;
+        }
+        accounts.put(accountId, account);
+        return true;
+    }
+
+    // An item that fails an ALL_OR_NOTHING batch fails the whole of it
+    private static TransferException batchRejected(int index, String message) {
+        return new TransferException("Transfer " + index + " rejected: " + message);
+    }
+
+    private TransferException unknownAccount(String accountId) {
+        metrics.rejectedUnknownAccount();
+        return new UnknownAccountException(accountId);
+    }
+
+    // Called once a transfer is durable: tells listeners both balances moved. The ledger has it already.
+    private void committed(String accountFromId, String accountToId) {
+        changed(accountFromId);
+        changed(accountToId);
+    }
+
+    private void changed(String accountId) {
+        for (int i = 0; i < changeListeners.size(); i++) {
+            changeListeners.get(i).accountChanged(accountId);
+        }
+    }
+
+    private void validate(String accountFromId, String accountToId, BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            metrics.rejectedInvalidAmount();
+            throw TransferException.INVALID_AMOUNT;
+        }
+        if(accountFromId.equals(accountToId)){
+            metrics.rejectedSameAccount();
+            throw TransferException.SAME_ACCOUNT;
+        }
+    }
+
+    // Runs on the sequencer's threads: apply on the single processor, journal on the stage behind it
+    private class SequencedHandler implements TransferSequencer.Handler {
+
+        @Override
+        public void apply(TransferSequencer.Command command) {
+            switch (command.kind) {
+                case TRANSFER -> {
+                    Account accountFrom = existing(command.accountFromId);
+                    Account accountTo = existing(command.accountToId);
+                    if (accountFrom.getBalance().compareTo(command.amount) < 0) {
+                        return;
+                    }
+                    adjust(accountFrom, command.amount.negate());
+                    adjust(accountTo, command.amount);
+                    accountRepository.updateAccount(accountFrom);
+                    accountRepository.updateAccount(accountTo);
+                    ledger.record(command.accountFromId, command.accountToId, command.amount);
+                }
+                case DEBIT -> {
+                    Account account = existing(command.accountFromId);
+                    if (account.getBalance().compareTo(command.amount) < 0) {
+                        return;
+                    }
+                    adjust(account, command.amount.negate());
+                    accountRepository.updateAccount(account);
+                }
+                case CREDIT -> {
+                    Account account = existing(command.accountToId);
+                    adjust(account, command.amount);
+                    accountRepository.updateAccount(account);
+                }
+                case BATCH -> applyBatchLocked(command.batch, command.results, command.atomic, true);
+            }
+            command.applied = true;
+        }
+
+        @Override
+        public long journal(TransferSequencer.Command command) {
+            return switch (command.kind) {
+                case TRANSFER -> accountRepository.journalTransfer(command.accountFromId, command.accountToId,
+                        command.amount);
+                case BATCH -> journalSucceeded(command.batch, command.results);
+                // Single-account changes of a partitioned transfer are not journaled in any mode
+                case DEBIT, CREDIT -> 0;
+            };
+        }
+
+        @Override
+        public void awaitDurable(long journalPosition) {
+            accountRepository.awaitDurable(journalPosition);
+        }
+
+        private Account existing(String accountId) {
+            Account account = accountRepository.getAccount(accountId);
+            if (account == null) {
+                throw unknownAccount(accountId);
+            }
+            return account;
+        }
+    }
 }
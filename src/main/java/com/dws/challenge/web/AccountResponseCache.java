@@ -0,0 +1,85 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountChangeListener;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read-through cache of {@code GET /v1/accounts/{accountId}} bodies, serialized by
+ * {@link PreSerializedResponses}, each with a strong ETag over its bytes. Entries are dropped when
+ * the TransferService reports a committed balance change, so a cached body is never older than
+ * the last commit that finished. Size is bounded by Caffeine's W-TinyLFU eviction, which keeps
+ * the accounts polled most often. Missing accounts are not cached.
+ *
+ * <p>An invalidation that arrives while the same account is being loaded waits for the load and
+ * then removes its result, so a body read before a commit cannot outlive the commit.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.response-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class AccountResponseCache implements AccountChangeListener, MeterBinder {
+
+    private final AccountsRepository accountsRepository;
+    private final PreSerializedResponses responses;
+    private final Cache<String, CachedAccount> entries;
+
+    @Autowired
+    public AccountResponseCache(AccountsRepository accountsRepository, PreSerializedResponses responses,
+                                @Value("${accounts.response-cache.max-size:100000}") long maxSize) {
+        this.accountsRepository = accountsRepository;
+        this.responses = responses;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /** The serialized account, loading it on a miss, or null if there is no such account. */
+    public CachedAccount get(String accountId) {
+        return entries.get(accountId, this::load);
+    }
+
+    @Override
+    public void accountChanged(String accountId) {
+        entries.invalidate(accountId);
+    }
+
+    @Override
+    public void allAccountsChanged() {
+        entries.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, entries, "accounts.responses");
+    }
+
+    private CachedAccount load(String accountId) {
+        Account account = accountsRepository.getAccount(accountId);
+        if (account == null) {
+            return null;
+        }
+        byte[] body = responses.accountBody(account);
+        return new CachedAccount(body, etag(body));
+    }
+
+    // 64-bit FNV-1a: a body only ever collides with another body of the same account by chance
+    private static String etag(byte[] body) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : body) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return "\"" + Long.toHexString(hash) + "\"";
+    }
+
+    public record CachedAccount(byte[] body, String etag) {
+    }
+}
@@ -1,14 +1,31 @@
 package com.dws.challenge.web;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchTransferRequest;
 import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.dto.AccountsPage;
+import com.dws.challenge.dto.ImportSummary;
+import com.dws.challenge.dto.LedgerEntry;
 import com.dws.challenge.dto.ResponseWrapper;
+import com.dws.challenge.dto.TransactionsPage;
+import com.dws.challenge.dto.TransferResult;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.EmptyRequestBodyException;
+import com.dws.challenge.service.AccountImportService;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.ClusterService;
+import com.dws.challenge.service.IdempotencyService;
+import com.dws.challenge.service.TransferAdmission;
+import com.dws.challenge.service.TransferLedger;
 import com.dws.challenge.service.TransferService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -16,36 +33,95 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
-import java.util.Collection;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
+  private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+  private static final int MAX_PAGE_SIZE = 1000;
+  private static final int STREAM_PAGE_SIZE = 1000;
+  private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+  private static final ParameterizedTypeReference<ResponseWrapper<Object>> OBJECT_RESPONSE =
+          new ParameterizedTypeReference<>() { };
+  private static final ParameterizedTypeReference<ResponseWrapper<Account>> ACCOUNT_RESPONSE =
+          new ParameterizedTypeReference<>() { };
+  private static final ParameterizedTypeReference<ResponseWrapper<TransactionsPage>> TRANSACTIONS_RESPONSE =
+          new ParameterizedTypeReference<>() { };
+
   private final AccountsService accountsService;
 
   private final TransferService transferService;
 
+  private final ObjectMapper objectMapper;
+
+  private final IdempotencyService idempotencyService;
+
+  private final TransferLedger transferLedger;
+
+  private final AccountImportService accountImportService;
+
+  private final PreSerializedResponses preSerializedResponses;
+
+  // Absent when accounts.response-cache.enabled=false
+  private final AccountResponseCache accountResponseCache;
+
+  // Only present in a partitioned deployment (cluster.enabled=true)
+  private final ClusterService clusterService;
+
+  // Absent unless transfers.admission.enabled=true
+  private final TransferAdmission transferAdmission;
+
   @Autowired
-  public AccountsController(AccountsService accountsService, TransferService transferService) {
+  public AccountsController(AccountsService accountsService, TransferService transferService,
+    ObjectMapper objectMapper, IdempotencyService idempotencyService, TransferLedger transferLedger,
+    AccountImportService accountImportService,
+    PreSerializedResponses preSerializedResponses, Optional<AccountResponseCache> accountResponseCache,
+    Optional<ClusterService> clusterService, Optional<TransferAdmission> transferAdmission) {
     this.accountsService = accountsService;
     this.transferService = transferService;
+    this.objectMapper = objectMapper;
+    this.idempotencyService = idempotencyService;
+    this.transferLedger = transferLedger;
+    this.accountImportService = accountImportService;
+    this.preSerializedResponses = preSerializedResponses;
+    this.accountResponseCache = accountResponseCache.orElse(null);
+    this.clusterService = clusterService.orElse(null);
+    this.transferAdmission = transferAdmission.orElse(null);
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> createAccount(@RequestBody(required = false) @Valid Account account) {
+  public ResponseEntity<Object> createAccount(@RequestBody(required = false) @Valid Account account,
+          @RequestHeader(name = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy,
+          @RequestHeader(name = ClusterService.SECRET_HEADER, required = false) String peerSecret) {
     if (account == null) {
       throw new EmptyRequestBodyException("Request body is missing.");
     }
+    if (isRemote(account.getAccountId(), fromPeer(forwardedBy, peerSecret))) {
+      ResponseEntity<ResponseWrapper<Object>> forwarded = clusterService.forward(
+              clusterService.ownerOf(account.getAccountId()), HttpMethod.POST, "/v1/accounts", account, OBJECT_RESPONSE);
+      return ResponseEntity.status(forwarded.getStatusCode()).body(forwarded.getBody());
+    }
 
     log.info("Creating account {}", account);
 
@@ -72,27 +148,122 @@ public class AccountsController {
     return new ResponseEntity<>(successResponse,HttpStatus.CREATED);
   }
 
+  // Streams one account per line, NDJSON or CSV, into the repository in parallel batches. On a
+  // partitioned deployment each node keeps only its own accounts, so the same file goes to every node.
+  @PostMapping(path = "/import", consumes = {"application/x-ndjson", "text/csv"})
+  public ResponseEntity<ResponseWrapper<ImportSummary>> importAccounts(InputStream body,
+          @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType) throws IOException {
+    AccountImportService.Format format = APPLICATION_NDJSON.includes(MediaType.parseMediaType(contentType))
+            ? AccountImportService.Format.NDJSON
+            : AccountImportService.Format.CSV;
+    ImportSummary summary = accountImportService.importAccounts(body, format,
+            clusterService == null ? accountId -> true : clusterService::isLocal);
+
+    ResponseWrapper<ImportSummary> response = new ResponseWrapper<>(
+            summary,
+            "Accounts imported",
+            HttpStatus.OK.value()
+    );
+
+    return ResponseEntity.ok(response);
+  }
+
+  // A local account is written straight to the response, or answered with 304 Not Modified when
+  // If-None-Match has its current ETag; returning null tells Spring it is handled
   @GetMapping(path = "/{accountId}")
-  public ResponseEntity<ResponseWrapper<Account>> getAccount(@PathVariable String accountId) {
-    log.info("Retrieving account for id {}", accountId);
-    ResponseWrapper<Account> response = new ResponseWrapper<>(
-            this.accountsService.getAccount(accountId),
-            "Account retrieved successfully",
+  public ResponseEntity<ResponseWrapper<Account>> getAccount(@PathVariable String accountId,
+          @RequestHeader(name = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy,
+          @RequestHeader(name = ClusterService.SECRET_HEADER, required = false) String peerSecret,
+          WebRequest webRequest, HttpServletResponse response) throws IOException {
+    if (isRemote(accountId, fromPeer(forwardedBy, peerSecret))) {
+      return clusterService.forward(clusterService.ownerOf(accountId), HttpMethod.GET, "/v1/accounts/{accountId}",
+              null, ACCOUNT_RESPONSE, accountId);
+    }
+    log.debug("Retrieving account for id {}", accountId);
+    if (accountResponseCache == null) {
+      preSerializedResponses.writeAccount(response, this.accountsService.getAccount(accountId));
+      return null;
+    }
+    AccountResponseCache.CachedAccount cached = accountResponseCache.get(accountId);
+    if (cached == null) {
+      preSerializedResponses.writeAccount(response, null);
+    } else if (!webRequest.checkNotModified(cached.etag())) {
+      preSerializedResponses.write(response, cached.body());
+    }
+    return null;
+  }
+
+  // Transfers touching the account, oldest first; from is inclusive and to exclusive
+  @GetMapping(path = "/{accountId}/transactions")
+  public ResponseEntity<ResponseWrapper<TransactionsPage>> getTransactions(@PathVariable String accountId,
+          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+          @RequestParam(required = false) String cursor,
+          @RequestParam(defaultValue = "100") int limit,
+          @RequestHeader(name = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy,
+          @RequestHeader(name = ClusterService.SECRET_HEADER, required = false) String peerSecret) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    if (isRemote(accountId, fromPeer(forwardedBy, peerSecret))) {
+      return clusterService.forward(clusterService.ownerOf(accountId), HttpMethod.GET,
+              "/v1/accounts/{accountId}/transactions?from={from}&to={to}&cursor={cursor}&limit={limit}",
+              null, TRANSACTIONS_RESPONSE, accountId, from, to, cursor, limit);
+    }
+
+    String afterSequence = decodePageToken(cursor);
+    List<LedgerEntry> entries = transferLedger.entriesFor(accountId,
+            from == null ? Long.MIN_VALUE : from.toEpochMilli(),
+            to == null ? Long.MAX_VALUE : to.toEpochMilli(),
+            afterSequence == null ? -1 : parseSequence(afterSequence),
+            limit);
+    String nextCursor = entries.size() == limit
+            ? encodePageToken(Long.toString(entries.get(entries.size() - 1).getSequence()))
+            : null;
+
+    ResponseWrapper<TransactionsPage> response = new ResponseWrapper<>(
+            new TransactionsPage(entries, nextCursor),
+            "Transactions retrieved successfully",
             HttpStatus.OK.value()
     );
 
     return ResponseEntity.ok(response);
   }
 
+  // Same body as a ResponseWrapper<List<Account>>, but written page by page straight to the response
   @GetMapping(path = "/getAllAccounts")
-  public ResponseEntity<ResponseWrapper<List<Account>>> getAllAccounts() {
+  public ResponseEntity<StreamingResponseBody> getAllAccounts() {
     log.info("Retrieving all accounts");
-    List<Account> accounts = accountsService.getAllAccounts().stream()
-            .map(account -> new Account(account.getAccountId(), account.getBalance()))
-            .collect(Collectors.toList());
+    StreamingResponseBody body = outputStream -> {
+      try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("data");
+        writeAllAccounts(generator, false);
+        generator.writeEndArray();
+        generator.writeStringField("message", "Accounts retrieved successfully");
+        generator.writeNumberField("statusCode", HttpStatus.OK.value());
+        generator.writeEndObject();
+      }
+    };
 
-    ResponseWrapper<List<Account>> response = new ResponseWrapper<>(
-            accounts,
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+  }
+
+  @GetMapping
+  public ResponseEntity<ResponseWrapper<AccountsPage>> getAccountsPage(
+          @RequestParam(defaultValue = "100") int pageSize,
+          @RequestParam(required = false) String pageToken) {
+    if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+    }
+
+    List<Account> accounts = accountsService.getAccountsPage(decodePageToken(pageToken), pageSize);
+    String nextPageToken = accounts.size() == pageSize
+            ? encodePageToken(accounts.get(accounts.size() - 1).getAccountId())
+            : null;
+
+    ResponseWrapper<AccountsPage> response = new ResponseWrapper<>(
+            new AccountsPage(accounts, nextPageToken),
             "Accounts retrieved successfully",
             HttpStatus.OK.value()
     );
@@ -100,8 +271,61 @@ public class AccountsController {
     return ResponseEntity.ok(response);
   }
 
+  @GetMapping(path = "/stream")
+  public ResponseEntity<StreamingResponseBody> streamAccounts() {
+    StreamingResponseBody body = outputStream -> {
+      try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+        generator.setRootValueSeparator(null);
+        writeAllAccounts(generator, true);
+      }
+    };
+
+    return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+  }
+
   @PostMapping(path = "/transfer")
-  public ResponseEntity<ResponseWrapper<Object>> transfer(@Valid @RequestBody TransferRequest transferRequest) {
+  public ResponseEntity<ResponseWrapper<Object>> transfer(@Valid @RequestBody TransferRequest transferRequest,
+          @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+          @RequestHeader(name = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy,
+          @RequestHeader(name = ClusterService.SECRET_HEADER, required = false) String peerSecret,
+          @RequestHeader(name = TransferAdmission.CLIENT_ID_HEADER, required = false) String clientId,
+          HttpServletRequest request, HttpServletResponse response) throws IOException {
+    boolean fromPeer = fromPeer(forwardedBy, peerSecret);
+    // Rates are checked on the node the client called, also for a replay, which is still a request;
+    // a peer forwarding the transfer has checked them already
+    if (transferAdmission != null && !fromPeer) {
+      transferAdmission.checkRate(clientId != null ? clientId : request.getRemoteAddr(),
+              transferRequest.getAccountFromId());
+    }
+    if (idempotencyKey != null) {
+      // A retry with the same key gets the stored outcome without reaching TransferService
+      return idempotencyService.execute(idempotencyKey, fingerprint(transferRequest),
+              () -> executeTransfer(transferRequest, fromPeer));
+    }
+    ResponseEntity<ResponseWrapper<Object>> outcome = applyTransfer(transferRequest, fromPeer);
+    if (outcome != null) {
+      return outcome;
+    }
+    // Success is by far the most common outcome; its body is written pre-serialized
+    preSerializedResponses.writeTransferSuccessful(response);
+    return null;
+  }
+
+  private ResponseEntity<ResponseWrapper<Object>> executeTransfer(TransferRequest transferRequest, boolean fromPeer) {
+    ResponseEntity<ResponseWrapper<Object>> outcome = applyTransfer(transferRequest, fromPeer);
+    if (outcome != null) {
+      return outcome;
+    }
+    ResponseWrapper<Object> response = new ResponseWrapper<>(
+            null,
+            PreSerializedResponses.TRANSFER_SUCCESSFUL,
+            HttpStatus.OK.value()
+    );
+    return new ResponseEntity<>(response, HttpStatus.OK);
+  }
+
+  // Returns null once the transfer has been applied locally, or the response to send in any other case
+  private ResponseEntity<ResponseWrapper<Object>> applyTransfer(TransferRequest transferRequest, boolean fromPeer) {
     if (transferRequest.getAmount() == null || transferRequest.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
       ResponseWrapper<Object> response = new ResponseWrapper<>(
               null,
@@ -111,18 +335,135 @@ public class AccountsController {
       return new ResponseEntity<>(response,HttpStatus.BAD_REQUEST);
     }
 
-      transferService.transfer(
-              transferRequest.getAccountFromId(),
-              transferRequest.getAccountToId(),
-              transferRequest.getAmount()
-      );
+    // The node owning the source account coordinates the transfer
+    if (isRemote(transferRequest.getAccountFromId(), fromPeer)) {
+      return clusterService.forward(clusterService.ownerOf(transferRequest.getAccountFromId()), HttpMethod.POST,
+              "/v1/accounts/transfer", transferRequest, OBJECT_RESPONSE);
+    }
+    long enteredAt = transferAdmission != null ? transferAdmission.enter() : 0;
+    try {
+      if (clusterService != null && !clusterService.isLocal(transferRequest.getAccountToId())) {
+        boolean credited = clusterService.transfer(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount()
+        );
+        if (!credited) {
+          ResponseWrapper<Object> response = new ResponseWrapper<>(
+                  null,
+                  "Transfer accepted, credit to account " + transferRequest.getAccountToId() + " is pending",
+                  HttpStatus.ACCEPTED.value()
+          );
+          return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
+        }
+      } else {
+        transferService.transfer(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount()
+        );
+      }
+    } finally {
+      if (transferAdmission != null) {
+        transferAdmission.exit(enteredAt);
+      }
+    }
+    return null;
+  }
 
-      ResponseWrapper<Object> response = new ResponseWrapper<>(
-              null,
-              "Transfer successful",
-              HttpStatus.OK.value()
-      );
-      return new ResponseEntity<>(response,HttpStatus.OK);
+  @PostMapping(path = "/transfer/batch")
+  public ResponseEntity<ResponseWrapper<List<TransferResult>>> transferBatch(
+          @Valid @RequestBody BatchTransferRequest batchRequest,
+          @RequestHeader(name = TransferAdmission.CLIENT_ID_HEADER, required = false) String clientId,
+          HttpServletRequest request) {
+    if (clusterService != null) {
+      for (TransferRequest transfer : batchRequest.getTransfers()) {
+        if (!clusterService.isLocal(transfer.getAccountFromId()) || !clusterService.isLocal(transfer.getAccountToId())) {
+          throw new IllegalArgumentException("Batch transfers must stay within one partition; account "
+                  + transfer.getAccountFromId() + " or " + transfer.getAccountToId() + " is owned by another node");
+        }
+      }
+    }
+    List<TransferResult> results;
+    if (transferAdmission == null) {
+      results = transferService.transferBatch(batchRequest.getTransfers(), batchRequest.getMode());
+    } else {
+      // Every item counts against the rates; the batch as a whole takes one slot under the concurrency limit
+      String client = clientId != null ? clientId : request.getRemoteAddr();
+      for (TransferRequest transfer : batchRequest.getTransfers()) {
+        transferAdmission.checkRate(client, transfer.getAccountFromId());
+      }
+      long enteredAt = transferAdmission.enter();
+      try {
+        results = transferService.transferBatch(batchRequest.getTransfers(), batchRequest.getMode());
+      } finally {
+        transferAdmission.exit(enteredAt);
+      }
+    }
+
+    long succeeded = results.stream().filter(TransferResult::isSuccess).count();
+    ResponseWrapper<List<TransferResult>> response = new ResponseWrapper<>(
+            results,
+            "Batch processed: " + succeeded + " succeeded, " + (results.size() - succeeded) + " failed",
+            HttpStatus.OK.value()
+    );
+    return new ResponseEntity<>(response, HttpStatus.OK);
+  }
+
+  // A request arriving from another node is handled here even if the ring disagrees, so it cannot loop
+  private boolean isRemote(String accountId, boolean fromPeer) {
+    return clusterService != null && !fromPeer && !clusterService.isLocal(accountId);
+  }
+
+  // The forwarded header alone proves nothing; only a peer also knows the cluster secret
+  private boolean fromPeer(String forwardedBy, String peerSecret) {
+    return clusterService != null && forwardedBy != null && clusterService.isPeer(peerSecret);
+  }
+
+  // Walks the accounts in id order one page at a time, so memory use does not grow with the account count
+  private void writeAllAccounts(JsonGenerator generator, boolean lineDelimited) throws IOException {
+    String afterAccountId = null;
+    List<Account> page;
+    do {
+      page = accountsService.getAccountsPage(afterAccountId, STREAM_PAGE_SIZE);
+      for (Account account : page) {
+        generator.writeObject(account);
+        if (lineDelimited) {
+          generator.writeRaw('\n');
+        }
+      }
+      if (!page.isEmpty()) {
+        afterAccountId = page.get(page.size() - 1).getAccountId();
+      }
+    } while (page.size() == STREAM_PAGE_SIZE);
+  }
+
+  private static String fingerprint(TransferRequest transferRequest) {
+    BigDecimal amount = transferRequest.getAmount();
+    return transferRequest.getAccountFromId() + '|' + transferRequest.getAccountToId() + '|'
+            + (amount == null ? "" : amount.stripTrailingZeros().toPlainString());
+  }
 
+  private static long parseSequence(String afterSequence) {
+    try {
+      return Long.parseLong(afterSequence);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid cursor");
+    }
+  }
+
+  private static String encodePageToken(String lastAccountId) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(lastAccountId.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String decodePageToken(String pageToken) {
+    if (pageToken == null || pageToken.isEmpty()) {
+      return null;
+    }
+    try {
+      return new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid page token");
+    }
   }
 }
@@ -0,0 +1,266 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.exception.ConcurrentUpdateException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.TooManyTransfersException;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.exception.UnknownAccountException;
+import com.dws.challenge.service.ClusterService;
+import com.dws.challenge.service.TransferAdmission;
+import com.dws.challenge.service.TransferService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TCP listener for clients that submit transfers at high rates and cannot afford JSON parsing and
+ * bean validation per request. A connection carries a stream of fixed-layout frames, big-endian:
+ *
+ * <pre>
+ * request:  u8 fromLength | from (UTF-8) | u8 toLength | to (UTF-8) | i64 unscaled amount | i8 scale
+ * response: u8 status
+ * </pre>
+ *
+ * The amount is {@code unscaled * 10^-scale}. Every request frame gets one status byte, in the
+ * order the frames arrived, so a client may pipeline as many frames as it likes before reading.
+ * Frames are decoded straight from the read buffer into the arguments of
+ * {@link TransferService#transfer}; the only objects created per transfer are the two account id
+ * strings and the amount.
+ *
+ * <p>Each connection is served by its own virtual thread. There is no idempotency or forwarding:
+ * in a partitioned deployment a transfer touching an account owned by another node is answered
+ * with {@link #NOT_LOCAL} and must be sent to that node, or over HTTP. With {@link TransferAdmission}
+ * on, a frame it turns away is answered with {@link #TOO_MANY}, the client being the remote address.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transfers.binary.enabled", havingValue = "true")
+public class BinaryTransferServer {
+
+    public static final byte OK = 0;
+    public static final byte INSUFFICIENT_FUNDS = 1;
+    public static final byte UNKNOWN_ACCOUNT = 2;
+    /** Amount not positive or not representable, or both accounts the same. */
+    public static final byte INVALID = 3;
+    public static final byte NOT_LOCAL = 4;
+    /** Optimistic mode gave up after repeated conflicts; the transfer may be retried. */
+    public static final byte CONFLICT = 5;
+    public static final byte ERROR = 6;
+    /** Turned away by {@link TransferAdmission}; the transfer may be retried later. */
+    public static final byte TOO_MANY = 7;
+
+    /** Largest possible request frame: two 255-byte ids plus their lengths and the amount. */
+    public static final int MAX_FRAME_SIZE = 1 + 255 + 1 + 255 + Long.BYTES + 1;
+
+    private static final int MIN_FRAME_SIZE = 1 + 1 + Long.BYTES + 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TransferService transferService;
+    // Only present in a partitioned deployment (cluster.enabled=true)
+    private final ClusterService clusterService;
+    // Absent unless transfers.admission.enabled=true
+    private final TransferAdmission transferAdmission;
+    private final int port;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private volatile ServerSocketChannel serverChannel;
+
+    public BinaryTransferServer(TransferService transferService, Optional<ClusterService> clusterService, int port) {
+        this(transferService, clusterService, Optional.empty(), port);
+    }
+
+    @Autowired
+    public BinaryTransferServer(TransferService transferService, Optional<ClusterService> clusterService,
+                                Optional<TransferAdmission> transferAdmission,
+                                @Value("${transfers.binary.port:18081}") int port) {
+        this.transferService = transferService;
+        this.clusterService = clusterService.orElse(null);
+        this.transferAdmission = transferAdmission.orElse(null);
+        this.port = port;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        try {
+            serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen for binary transfers on port " + port, e);
+        }
+        Thread acceptor = new Thread(this::accept, "binary-transfer-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Accepting binary transfers on port {}", getPort());
+    }
+
+    @PreDestroy
+    public void stop() {
+        closeQuietly(serverChannel);
+        connections.forEach(BinaryTransferServer::closeQuietly);
+    }
+
+    /** Port actually bound, which differs from the configured one when that is 0. */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Appends a request frame to {@code buffer}; for Java clients and tests. */
+    public static void writeFrame(ByteBuffer buffer, String accountFromId, String accountToId, BigDecimal amount) {
+        writeId(buffer, accountFromId);
+        writeId(buffer, accountToId);
+        buffer.putLong(amount.unscaledValue().longValueExact());
+        int scale = amount.scale();
+        if (scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount scale " + scale + " does not fit a frame");
+        }
+        buffer.put((byte) scale);
+    }
+
+    private void accept() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel connection = serverChannel.accept();
+                connections.add(connection);
+                Thread.ofVirtual().name("binary-transfer-" + connection.getRemoteAddress()).start(() -> serve(connection));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Failed to accept a binary transfer connection", e);
+            }
+        }
+    }
+
+    private void serve(SocketChannel connection) {
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        // One status byte for every frame a full read buffer can hold
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE / MIN_FRAME_SIZE + 1);
+        try (connection) {
+            // The connection's remote address is its client for the admission rate limits
+            String clientId = ((InetSocketAddress) connection.getRemoteAddress()).getAddress().getHostAddress();
+            while (connection.read(in) >= 0) {
+                in.flip();
+                while (hasCompleteFrame(in)) {
+                    if (!out.hasRemaining()) {
+                        flush(connection, out);
+                    }
+                    out.put(handleFrame(in, clientId));
+                }
+                in.compact();
+                flush(connection, out);
+            }
+        } catch (ClosedChannelException e) {
+            // Closed by stop()
+        } catch (IOException e) {
+            log.debug("Binary transfer connection closed", e);
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private byte handleFrame(ByteBuffer in, String clientId) {
+        byte[] bytes = in.array();
+        int fromLength = Byte.toUnsignedInt(in.get());
+        String accountFromId = new String(bytes, in.arrayOffset() + in.position(), fromLength, StandardCharsets.UTF_8);
+        in.position(in.position() + fromLength);
+        int toLength = Byte.toUnsignedInt(in.get());
+        String accountToId = new String(bytes, in.arrayOffset() + in.position(), toLength, StandardCharsets.UTF_8);
+        in.position(in.position() + toLength);
+        long unscaled = in.getLong();
+        int scale = in.get();
+
+        if (clusterService != null && (!clusterService.isLocal(accountFromId) || !clusterService.isLocal(accountToId))) {
+            return NOT_LOCAL;
+        }
+        long enteredAt = 0;
+        if (transferAdmission != null) {
+            try {
+                transferAdmission.checkRate(clientId, accountFromId);
+                enteredAt = transferAdmission.enter();
+            } catch (TooManyTransfersException e) {
+                return TOO_MANY;
+            }
+        }
+        try {
+            transferService.transfer(accountFromId, accountToId, BigDecimal.valueOf(unscaled, scale));
+            return OK;
+        } catch (InsufficientFundsException e) {
+            return INSUFFICIENT_FUNDS;
+        } catch (UnknownAccountException e) {
+            return UNKNOWN_ACCOUNT;
+        } catch (TransferException | IllegalArgumentException e) {
+            return INVALID;
+        } catch (ConcurrentUpdateException e) {
+            return CONFLICT;
+        } catch (RuntimeException e) {
+            log.error("Binary transfer from {} to {} failed", accountFromId, accountToId, e);
+            return ERROR;
+        } finally {
+            if (transferAdmission != null) {
+                transferAdmission.exit(enteredAt);
+            }
+        }
+    }
+
+    private static boolean hasCompleteFrame(ByteBuffer in) {
+        int start = in.position();
+        int available = in.remaining();
+        if (available < 1) {
+            return false;
+        }
+        int fromLength = Byte.toUnsignedInt(in.get(start));
+        if (available < 1 + fromLength + 1) {
+            return false;
+        }
+        int toLength = Byte.toUnsignedInt(in.get(start + 1 + fromLength));
+        return available >= 1 + fromLength + 1 + toLength + Long.BYTES + 1;
+    }
+
+    private static void flush(SocketChannel connection, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            connection.write(out);
+        }
+        out.clear();
+    }
+
+    private static void writeId(ByteBuffer buffer, String accountId) {
+        byte[] bytes = accountId.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 255) {
+            throw new IllegalArgumentException("Account id " + accountId + " is longer than 255 bytes");
+        }
+        buffer.put((byte) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close binary transfer channel", e);
+        }
+    }
+}
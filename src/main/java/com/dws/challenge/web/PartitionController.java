@@ -0,0 +1,92 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.PartitionCredit;
+import com.dws.challenge.dto.ResponseWrapper;
+import com.dws.challenge.service.ClusterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import jakarta.validation.Valid;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Node-to-node endpoints of the partitioned deployment; not meant for clients, and refused to any
+ * request without the cluster's secret in {@link ClusterService#SECRET_HEADER}.
+ */
+@RestController
+@RequestMapping("/internal/v1/partitions")
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+public class PartitionController {
+
+  private final ClusterService clusterService;
+
+  @Autowired
+  public PartitionController(ClusterService clusterService) {
+    this.clusterService = clusterService;
+  }
+
+  @PostMapping(path = "/credit")
+  public ResponseEntity<ResponseWrapper<Object>> credit(@Valid @RequestBody PartitionCredit credit,
+          @RequestHeader(name = ClusterService.SECRET_HEADER, required = false) String secret) {
+    if (!clusterService.isPeer(secret)) {
+      return forbidden();
+    }
+    clusterService.applyCredit(credit);
+    ResponseWrapper<Object> response = new ResponseWrapper<>(
+            null,
+            "Credit applied",
+            HttpStatus.OK.value()
+    );
+    return new ResponseEntity<>(response, HttpStatus.OK);
+  }
+
+  // The coordinator will not send these credits again, so this node may forget their transfer ids
+  @PostMapping(path = "/credit/acknowledged")
+  public ResponseEntity<ResponseWrapper<Object>> acknowledged(@RequestBody List<String> transferIds,
+          @RequestHeader(name = ClusterService.SECRET_HEADER, required = false) String secret) {
+    if (!clusterService.isPeer(secret)) {
+      return forbidden();
+    }
+    clusterService.acknowledgeCredits(transferIds);
+    ResponseWrapper<Object> response = new ResponseWrapper<>(
+            null,
+            "Credits acknowledged",
+            HttpStatus.OK.value()
+    );
+    return new ResponseEntity<>(response, HttpStatus.OK);
+  }
+
+  // Credits this node sent whose outcome is not settled, for an operator reconciling reservations
+  @GetMapping(path = "/pending")
+  public ResponseEntity<ResponseWrapper<Collection<PartitionCredit>>> pending(
+          @RequestHeader(name = ClusterService.SECRET_HEADER, required = false) String secret) {
+    if (!clusterService.isPeer(secret)) {
+      return forbidden();
+    }
+    ResponseWrapper<Collection<PartitionCredit>> response = new ResponseWrapper<>(
+            clusterService.getPendingCredits(),
+            "Pending credits retrieved successfully",
+            HttpStatus.OK.value()
+    );
+    return new ResponseEntity<>(response, HttpStatus.OK);
+  }
+
+  private static <T> ResponseEntity<ResponseWrapper<T>> forbidden() {
+    ResponseWrapper<T> response = new ResponseWrapper<>(
+            null,
+            "Not a peer of this cluster",
+            HttpStatus.FORBIDDEN.value()
+    );
+    return new ResponseEntity<>(response, HttpStatus.FORBIDDEN);
+  }
+}
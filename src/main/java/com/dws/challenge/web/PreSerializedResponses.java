@@ -0,0 +1,146 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.ResponseWrapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the bodies of the two hottest responses, a successful transfer and a single account,
+ * straight to the servlet output stream. The parts that never change are serialized once at
+ * startup, from the same {@link ResponseWrapper} and {@link ObjectMapper} the regular path uses,
+ * so the bytes are identical. An account is copied into the gap with its two fields into a single
+ * exactly sized array, which is also what sets the Content-Length. Neither path builds a
+ * ResponseWrapper, a ResponseEntity, a JSON generator or a message string.
+ */
+@Component
+public class PreSerializedResponses {
+
+    static final String TRANSFER_SUCCESSFUL = "Transfer successful";
+    static final String ACCOUNT_RETRIEVED = "Account retrieved successfully";
+
+    private static final byte[] ACCOUNT_ID_FIELD = "{\"accountId\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BALANCE_FIELD = ",\"balance\":".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] transferSuccessful;
+    private final byte[] accountNotFound;
+    private final byte[] accountPrefix;
+    private final byte[] accountSuffix;
+
+    @Autowired
+    public PreSerializedResponses(ObjectMapper objectMapper) {
+        try {
+            this.transferSuccessful = objectMapper.writeValueAsBytes(
+                    new ResponseWrapper<>(null, TRANSFER_SUCCESSFUL, HttpStatus.OK.value()));
+            this.accountNotFound = objectMapper.writeValueAsBytes(
+                    new ResponseWrapper<>(null, ACCOUNT_RETRIEVED, HttpStatus.OK.value()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot pre-serialize responses", e);
+        }
+        // The account goes where the null data is
+        int data = indexOf(accountNotFound, "null".getBytes(StandardCharsets.US_ASCII));
+        this.accountPrefix = Arrays.copyOfRange(accountNotFound, 0, data);
+        this.accountSuffix = Arrays.copyOfRange(accountNotFound, data + "null".length(), accountNotFound.length);
+    }
+
+    public void writeTransferSuccessful(HttpServletResponse response) throws IOException {
+        write(response, transferSuccessful);
+    }
+
+    /** The transfer success body, for callers that write it themselves. */
+    public void writeTransferSuccessful(OutputStream out) throws IOException {
+        out.write(transferSuccessful);
+    }
+
+    public void writeAccount(HttpServletResponse response, Account account) throws IOException {
+        write(response, accountBody(account));
+    }
+
+    /** Writes the ResponseWrapper body for {@code account}, or for a null account if it is missing. */
+    public void writeAccount(OutputStream out, Account account) throws IOException {
+        out.write(accountBody(account));
+    }
+
+    /** Writes a body produced by this class, such as one kept by {@link AccountResponseCache}, as a 200. */
+    void write(HttpServletResponse response, byte[] body) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    // Shared, never to be modified
+    byte[] transferSuccessfulBody() {
+        return transferSuccessful;
+    }
+
+    // Same bytes as Jackson's serialization of the wrapped Account, in one exactly sized array
+    byte[] accountBody(Account account) {
+        if (account == null) {
+            return accountNotFound;
+        }
+        String accountId = account.getAccountId();
+        // BigDecimal caches its toString(), which is also what Jackson writes
+        String balance = account.getBalance().toString();
+        byte[] quotedId = isPlainAscii(accountId) ? null : JsonStringEncoder.getInstance().quoteAsUTF8(accountId);
+        int idLength = quotedId == null ? accountId.length() : quotedId.length;
+
+        byte[] body = new byte[accountPrefix.length + ACCOUNT_ID_FIELD.length + idLength + 1
+                + BALANCE_FIELD.length + balance.length() + 1 + accountSuffix.length];
+        int at = put(body, 0, accountPrefix);
+        at = put(body, at, ACCOUNT_ID_FIELD);
+        at = quotedId == null ? putAscii(body, at, accountId) : put(body, at, quotedId);
+        body[at++] = '"';
+        at = put(body, at, BALANCE_FIELD);
+        at = putAscii(body, at, balance);
+        body[at++] = '}';
+        put(body, at, accountSuffix);
+        return body;
+    }
+
+    // Ids are nearly always plain ASCII and are copied as is; anything else is escaped by Jackson
+    private static boolean isPlainAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c >= 0x7f || c == '"' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int put(byte[] target, int at, byte[] bytes) {
+        System.arraycopy(bytes, 0, target, at, bytes.length);
+        return at + bytes.length;
+    }
+
+    @SuppressWarnings("deprecation") // the low-byte copy is exactly right for ASCII and allocates nothing
+    private static int putAscii(byte[] target, int at, String value) {
+        value.getBytes(0, value.length(), target, at);
+        return at + value.length();
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new IllegalStateException("Pre-serialized response has no null data field");
+    }
+}
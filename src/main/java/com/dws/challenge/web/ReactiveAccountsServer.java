@@ -0,0 +1,350 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchTransferRequest;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.dto.ResponseWrapper;
+import com.dws.challenge.dto.TransferResult;
+import com.dws.challenge.exception.ConcurrentUpdateException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.EmptyRequestBodyException;
+import com.dws.challenge.exception.GlobalExceptionHandler;
+import com.dws.challenge.exception.PartitionUnavailableException;
+import com.dws.challenge.exception.TooManyTransfersException;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.service.ClusterService;
+import com.dws.challenge.service.ReactiveAccountsService;
+import com.dws.challenge.service.TransferAdmission;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+
+/**
+ * WebFlux functional endpoints for the account and transfer APIs, served by Reactor Netty on a
+ * port of their own next to the Tomcat-hosted {@link AccountsController}. A connection costs a
+ * channel and its buffers rather than a thread for as long as a request is in flight, and
+ * {@code GET /v1/accounts/getAllAccounts} is written as {@link ReactiveAccountsService} produces
+ * accounts, only as fast as the client reads them.
+ *
+ * <p>The routes answer with the same bodies and statuses as the MVC controller: failures go through
+ * the {@link GlobalExceptionHandler} methods, and an account or a successful transfer is written
+ * from {@link PreSerializedResponses}, with the {@link AccountResponseCache} ETag when the cache is
+ * on. Transfers go through the same {@link TransferAdmission} checks when it is on. Idempotency
+ * keys are not supported here. Nor is forwarding: in a partitioned deployment a request for an
+ * account owned by another node is rejected and must be sent to that node.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.reactive.enabled", havingValue = "true")
+public class ReactiveAccountsServer {
+
+    private static final String ACCOUNTS_RETRIEVED = "Accounts retrieved successfully";
+
+    private final ReactiveAccountsService accountsService;
+    private final PreSerializedResponses preSerializedResponses;
+    // Absent when accounts.response-cache.enabled=false
+    private final AccountResponseCache accountResponseCache;
+    // Only present in a partitioned deployment (cluster.enabled=true)
+    private final ClusterService clusterService;
+    // Absent unless transfers.admission.enabled=true
+    private final TransferAdmission transferAdmission;
+    private final GlobalExceptionHandler exceptionHandler;
+    private final Validator validator;
+    private final ObjectWriter accountWriter;
+    private final HandlerStrategies handlerStrategies;
+    private final byte[] allAccountsPrefix;
+    private final byte[] allAccountsSuffix;
+    private final int port;
+    private volatile DisposableServer server;
+
+    @Autowired
+    public ReactiveAccountsServer(ReactiveAccountsService accountsService, PreSerializedResponses preSerializedResponses,
+                                  Optional<AccountResponseCache> accountResponseCache,
+                                  Optional<ClusterService> clusterService,
+                                  Optional<TransferAdmission> transferAdmission, GlobalExceptionHandler exceptionHandler,
+                                  Validator validator, ObjectMapper objectMapper,
+                                  @Value("${accounts.reactive.port:18082}") int port) {
+        this.accountsService = accountsService;
+        this.preSerializedResponses = preSerializedResponses;
+        this.accountResponseCache = accountResponseCache.orElse(null);
+        this.clusterService = clusterService.orElse(null);
+        this.transferAdmission = transferAdmission.orElse(null);
+        this.exceptionHandler = exceptionHandler;
+        this.validator = validator;
+        this.accountWriter = objectMapper.writerFor(Account.class);
+        this.handlerStrategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        // The accounts go between the brackets of an empty list, so the wrapper matches the MVC one
+        String empty;
+        try {
+            empty = objectMapper.writeValueAsString(
+                    new ResponseWrapper<>(List.of(), ACCOUNTS_RETRIEVED, HttpStatus.OK.value()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot pre-serialize responses", e);
+        }
+        int data = empty.indexOf("[]");
+        this.allAccountsPrefix = empty.substring(0, data + 1).getBytes(StandardCharsets.UTF_8);
+        this.allAccountsSuffix = empty.substring(data + 1).getBytes(StandardCharsets.UTF_8);
+        this.port = port;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        try {
+            server = HttpServer.create()
+                    .port(port)
+                    .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes(), handlerStrategies)))
+                    .bindNow();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Cannot listen for reactive requests on port " + port, e);
+        }
+        log.info("Serving reactive account requests on port {}", getPort());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    /** Port actually bound, which differs from the configured one when that is 0. */
+    public int getPort() {
+        return server.port();
+    }
+
+    RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .POST("/v1/accounts", contentType(MediaType.APPLICATION_JSON), this::createAccount)
+                .GET("/v1/accounts/getAllAccounts", this::getAllAccounts)
+                // Deferred so that a failure before the Mono exists reaches onError as well
+                .GET("/v1/accounts/{accountId}", request -> Mono.defer(() -> getAccount(request)))
+                .POST("/v1/accounts/transfer", contentType(MediaType.APPLICATION_JSON), this::transfer)
+                .POST("/v1/accounts/transfer/batch", contentType(MediaType.APPLICATION_JSON), this::transferBatch)
+                .onError(Exception.class, (error, request) -> failed(error))
+                .build();
+    }
+
+    private Mono<ServerResponse> createAccount(ServerRequest request) {
+        return request.bodyToMono(Account.class)
+                .switchIfEmpty(Mono.error(() -> new EmptyRequestBodyException("Request body is missing.")))
+                .map(this::validated)
+                .flatMap(account -> {
+                    requireLocal(account.getAccountId());
+                    log.info("Creating account {}", account);
+                    return accountsService.createAccount(account);
+                })
+                .then(ServerResponse.status(HttpStatus.CREATED).contentType(MediaType.APPLICATION_JSON).bodyValue(
+                        new ResponseWrapper<>(null, "Account created successfully", HttpStatus.CREATED.value())));
+    }
+
+    // A local account comes from the response cache, or is answered with 304 Not Modified when
+    // If-None-Match has its current ETag
+    private Mono<ServerResponse> getAccount(ServerRequest request) {
+        String accountId = request.pathVariable("accountId");
+        requireLocal(accountId);
+        log.debug("Retrieving account for id {}", accountId);
+        if (accountResponseCache == null) {
+            return accountsService.getAccount(accountId)
+                    .map(preSerializedResponses::accountBody)
+                    .defaultIfEmpty(preSerializedResponses.accountBody(null))
+                    .flatMap(ReactiveAccountsServer::ok);
+        }
+        AccountResponseCache.CachedAccount cached = accountResponseCache.get(accountId);
+        if (cached == null) {
+            return ok(preSerializedResponses.accountBody(null));
+        }
+        return request.checkNotModified(cached.etag())
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.ok()
+                        .eTag(cached.etag())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(cached.body())));
+    }
+
+    // Same body as the MVC endpoint, written one account per buffer as the client reads it
+    private Mono<ServerResponse> getAllAccounts(ServerRequest request) {
+        log.info("Retrieving all accounts");
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body((response, context) -> response.writeWith(allAccountsBody(response.bufferFactory())));
+    }
+
+    private Flux<DataBuffer> allAccountsBody(DataBufferFactory buffers) {
+        return Flux.defer(() -> {
+            boolean[] first = {true};
+            Flux<DataBuffer> accounts = accountsService.getAllAccounts().map(account -> {
+                DataBuffer buffer = buffers.allocateBuffer(64);
+                try {
+                    if (!first[0]) {
+                        buffer.write((byte) ',');
+                    }
+                    first[0] = false;
+                    accountWriter.writeValue(buffer.asOutputStream(), account);
+                    return buffer;
+                } catch (IOException | RuntimeException e) {
+                    DataBufferUtils.release(buffer);
+                    throw new IllegalStateException("Cannot serialize account " + account.getAccountId(), e);
+                }
+            });
+            return Flux.concat(
+                    Mono.fromSupplier(() -> buffers.wrap(allAccountsPrefix)),
+                    accounts,
+                    Mono.fromSupplier(() -> buffers.wrap(allAccountsSuffix)));
+        });
+    }
+
+    private Mono<ServerResponse> transfer(ServerRequest request) {
+        return request.bodyToMono(TransferRequest.class)
+                .switchIfEmpty(Mono.error(() -> new EmptyRequestBodyException("Request body is missing.")))
+                .map(this::validated)
+                .flatMap(transfer -> {
+                    if (transfer.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+                        return ServerResponse.badRequest().contentType(MediaType.APPLICATION_JSON).bodyValue(
+                                new ResponseWrapper<>(null, "Transfer amount must be positive",
+                                        HttpStatus.BAD_REQUEST.value()));
+                    }
+                    requireLocal(transfer.getAccountFromId());
+                    requireLocal(transfer.getAccountToId());
+                    checkRate(request, transfer.getAccountFromId());
+                    return admitted(accountsService.transfer(transfer.getAccountFromId(), transfer.getAccountToId(),
+                                    transfer.getAmount()))
+                            .then(ok(preSerializedResponses.transferSuccessfulBody()));
+                });
+    }
+
+    private Mono<ServerResponse> transferBatch(ServerRequest request) {
+        return request.bodyToMono(BatchTransferRequest.class)
+                .switchIfEmpty(Mono.error(() -> new EmptyRequestBodyException("Request body is missing.")))
+                .map(this::validated)
+                .flatMap(batch -> {
+                    for (TransferRequest transfer : batch.getTransfers()) {
+                        requireLocal(transfer.getAccountFromId());
+                        requireLocal(transfer.getAccountToId());
+                    }
+                    for (TransferRequest transfer : batch.getTransfers()) {
+                        checkRate(request, transfer.getAccountFromId());
+                    }
+                    return admitted(accountsService.transferBatch(batch.getTransfers(), batch.getMode()));
+                })
+                .flatMap(results -> {
+                    long succeeded = results.stream().filter(TransferResult::isSuccess).count();
+                    return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(new ResponseWrapper<>(
+                            results,
+                            "Batch processed: " + succeeded + " succeeded, " + (results.size() - succeeded) + " failed",
+                            HttpStatus.OK.value()));
+                });
+    }
+
+    private static Mono<ServerResponse> ok(byte[] body) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+    }
+
+    private <T> T validated(T body) {
+        Set<ConstraintViolation<T>> violations = validator.validate(body);
+        if (!violations.isEmpty()) {
+            throw new ServerWebInputException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+        return body;
+    }
+
+    private void requireLocal(String accountId) {
+        if (clusterService != null && accountId != null && !clusterService.isLocal(accountId)) {
+            throw new IllegalArgumentException("Account " + accountId
+                    + " is owned by another node; send the request to that node");
+        }
+    }
+
+    private void checkRate(ServerRequest request, String accountFromId) {
+        if (transferAdmission == null) {
+            return;
+        }
+        String clientId = request.headers().firstHeader(TransferAdmission.CLIENT_ID_HEADER);
+        if (clientId == null) {
+            clientId = request.remoteAddress().map(address -> address.getAddress().getHostAddress()).orElse(null);
+        }
+        transferAdmission.checkRate(clientId, accountFromId);
+    }
+
+    // Holds a slot under the concurrency limit from subscription until the transfer completes or fails
+    private <T> Mono<T> admitted(Mono<T> transfer) {
+        if (transferAdmission == null) {
+            return transfer;
+        }
+        return Mono.defer(() -> {
+            long enteredAt = transferAdmission.enter();
+            return transfer.doFinally(signal -> transferAdmission.exit(enteredAt));
+        });
+    }
+
+    // The statuses and bodies GlobalExceptionHandler gives the MVC controller
+    private Mono<ServerResponse> failed(Throwable error) {
+        ResponseEntity<ResponseWrapper<Object>> response = switch (error) {
+            case DuplicateAccountIdException e -> new ResponseEntity<>(
+                    new ResponseWrapper<>(null, e.getMessage(), HttpStatus.BAD_REQUEST.value()), HttpStatus.BAD_REQUEST);
+            case ServerWebInputException e -> new ResponseEntity<>(
+                    new ResponseWrapper<>(null, "Please check the input arguments " + e.getReason(),
+                            HttpStatus.BAD_REQUEST.value()), HttpStatus.BAD_REQUEST);
+            case EmptyRequestBodyException e -> exceptionHandler.handleEmptyRequestBodyException(e, null);
+            case TransferException e -> exceptionHandler.handlerTransferExceptions(e, null);
+            case IllegalArgumentException e -> exceptionHandler.handleIllegalArgumentException(e, null);
+            case ConcurrentUpdateException e -> exceptionHandler.handleConcurrentUpdateException(e, null);
+            case PartitionUnavailableException e -> exceptionHandler.handlePartitionUnavailableException(e, null);
+            case TooManyTransfersException e -> exceptionHandler.handleTooManyTransfersException(e, null);
+            case Exception e -> {
+                log.error("Reactive request failed", e);
+                yield exceptionHandler.handleGeneralException(e, null);
+            }
+            default -> throw new IllegalStateException("Unexpected error", error);
+        };
+        return ServerResponse.status(response.getStatusCode())
+                .headers(headers -> headers.addAll(response.getHeaders()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(response.getBody());
+    }
+}
@@ -0,0 +1,152 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.UnknownAccountException;
+import com.dws.challenge.repository.AccountIdDictionary;
+import com.dws.challenge.repository.AccountsRepositoryFixedPoint;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.InternedAccountsRepository;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferService;
+import org.junit.jupiter.api.Test;
+
+class AccountIdDictionaryTest {
+
+  @Test
+  void handsOutDenseHandlesInOrderOfFirstAddition() {
+    AccountIdDictionary dictionary = new AccountIdDictionary();
+    for (int i = 0; i < 100_000; i++) {
+      assertThat(dictionary.intern("acc-" + i)).isEqualTo(i);
+    }
+
+    assertThat(dictionary.size()).isEqualTo(100_000);
+    assertThat(dictionary.intern("acc-42")).isEqualTo(42);
+    assertThat(dictionary.handleOf(new String("acc-99999"))).isEqualTo(99_999);
+    assertThat(dictionary.accountIdOf(7)).isEqualTo("acc-7");
+    assertThat(dictionary.handleOf("missing")).isEqualTo(AccountIdDictionary.NO_HANDLE);
+    assertThat(dictionary.accountIdOf(100_000)).isNull();
+    assertThat(dictionary.accountIdOf(-1)).isNull();
+  }
+
+  @Test
+  void readersFindEveryIdWhileTheTableGrows() throws Exception {
+    AccountIdDictionary dictionary = new AccountIdDictionary();
+    int ids = 200_000;
+    AtomicBoolean done = new AtomicBoolean();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> reader = executor.submit(() -> {
+        int checked = 0;
+        while (!done.get() || checked < dictionary.size()) {
+          int added = dictionary.size();
+          for (; checked < added; checked++) {
+            String accountId = "acc-" + checked;
+            assertThat(dictionary.handleOf(accountId)).isEqualTo(checked);
+            assertThat(dictionary.accountIdOf(checked)).isEqualTo(accountId);
+          }
+        }
+        return null;
+      });
+      for (int i = 0; i < ids; i++) {
+        dictionary.intern("acc-" + i);
+      }
+      done.set(true);
+      reader.get();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void repositoryKeepsHandlesAcrossClear() {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    repository.createAccount(new Account("Id-1", BigDecimal.ONE));
+    repository.createAccount(new Account("Id-2", BigDecimal.TEN));
+    int handle = repository.handleOf("Id-2");
+    assertThat(repository.getAccount(handle).getBalance()).isEqualByComparingTo("10");
+    assertThat(repository.accountIdOf(handle)).isEqualTo("Id-2");
+    assertThat(repository.size()).isEqualTo(2);
+
+    repository.clearAccounts();
+    assertThat(repository.getAccount(handle)).isNull();
+    assertThat(repository.size()).isZero();
+    assertThat(repository.getAllAccounts()).isEmpty();
+
+    repository.createAccount(new Account("Id-3", BigDecimal.ONE));
+    repository.createAccount(new Account("Id-2", BigDecimal.ONE));
+    assertThat(repository.handleOf("Id-2")).isEqualTo(handle);
+    assertThat(repository.handleOf("Id-3")).isEqualTo(2);
+    assertThat(repository.getAccount(InternedAccountsRepository.NO_HANDLE)).isNull();
+    assertThat(repository.getAccount(1 << 20)).isNull();
+  }
+
+  @Test
+  void transfersBetweenCachedHandles() {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    AccountsService accountsService = new AccountsService(repository);
+    TransferService transferService = new TransferService(repository, (account, description) -> { },
+      new AccountLockManager());
+    accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal("100")));
+    int from = accountsService.handleOf("Id-1");
+    int to = accountsService.handleOf("Id-2");
+
+    transferService.transfer(from, to, new BigDecimal("30"));
+    transferService.transfer("Id-2", "Id-1", new BigDecimal("5"));
+    transferService.transferBatch(List.of(transferRequest("Id-1", "Id-2", "1")),
+      BatchMode.ALL_OR_NOTHING);
+
+    assertThat(repository.getAccount(from).getBalance()).isEqualByComparingTo("74");
+    assertThat(repository.getAccount(to).getBalance()).isEqualByComparingTo("126");
+    assertThatThrownBy(() -> transferService.transfer(from, to, new BigDecimal("1000")))
+      .isInstanceOf(InsufficientFundsException.class);
+    assertThatThrownBy(() -> transferService.transfer(from, 99, BigDecimal.ONE))
+      .isInstanceOf(UnknownAccountException.class)
+      .hasMessage("Account number #99 not found");
+    assertThat(accountsService.handleOf("missing")).isEqualTo(InternedAccountsRepository.NO_HANDLE);
+  }
+
+  @Test
+  void transfersBetweenHandlesOnARepositoryThatDoesNotInternIds() {
+    AccountsRepositoryFixedPoint repository = new AccountsRepositoryFixedPoint(2, Optional.empty());
+    TransferService transferService = new TransferService(repository, (account, description) -> { },
+      new AccountLockManager());
+    repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+    repository.createAccount(new Account("Id-2", new BigDecimal("100")));
+    int from = transferService.handleOf("Id-1");
+    int to = transferService.handleOf("Id-2");
+
+    transferService.transfer(from, to, new BigDecimal("30"));
+
+    assertThat(transferService.handleOf("Id-1")).isEqualTo(from);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("70");
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("130");
+    assertThatThrownBy(() -> transferService.transfer(from, 99, BigDecimal.ONE))
+      .isInstanceOf(UnknownAccountException.class)
+      .hasMessage("Account number #99 not found");
+    assertThat(transferService.handleOf("missing")).isEqualTo(InternedAccountsRepository.NO_HANDLE);
+  }
+
+  private static TransferRequest transferRequest(String from, String to, String amount) {
+    TransferRequest request = new TransferRequest();
+    request.setAccountFromId(from);
+    request.setAccountToId(to);
+    request.setAmount(new BigDecimal(amount));
+    return request;
+  }
+}
@@ -1,9 +1,12 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -11,6 +14,7 @@ import java.math.BigDecimal;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.service.AccountsService;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,6 +24,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 @ExtendWith(SpringExtension.class)
@@ -100,4 +105,175 @@ class AccountsControllerTest {
     this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId))
       .andExpect(status().isOk());
   }
+
+  @Test
+  void getAllAccountsStreamsWrappedList() throws Exception {
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("20")));
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("10")));
+
+    MvcResult result = this.mockMvc.perform(get("/v1/accounts/getAllAccounts"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data.length()").value(2))
+      .andExpect(jsonPath("$.data[0].accountId").value("Id-1"))
+      .andExpect(jsonPath("$.message").value("Accounts retrieved successfully"))
+      .andExpect(jsonPath("$.statusCode").value(200));
+  }
+
+  @Test
+  void getAccountsPageFollowsPageTokens() throws Exception {
+    for (int i = 1; i <= 3; i++) {
+      this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+    }
+
+    MvcResult first = this.mockMvc.perform(get("/v1/accounts").param("pageSize", "2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data.accounts[0].accountId").value("Id-1"))
+      .andExpect(jsonPath("$.data.accounts[1].accountId").value("Id-2"))
+      .andReturn();
+    String pageToken = JsonPath.read(first.getResponse().getContentAsString(), "$.data.nextPageToken");
+
+    this.mockMvc.perform(get("/v1/accounts").param("pageSize", "2").param("pageToken", pageToken))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data.accounts.length()").value(1))
+      .andExpect(jsonPath("$.data.accounts[0].accountId").value("Id-3"))
+      .andExpect(jsonPath("$.data.nextPageToken").doesNotExist());
+  }
+
+  @Test
+  void getAccountsPageRejectsOversizedPage() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts").param("pageSize", "5000"))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void streamAccountsWritesNdjson() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("10")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("20")));
+
+    MvcResult result = this.mockMvc.perform(get("/v1/accounts/stream"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(content().contentType("application/x-ndjson"))
+      .andExpect(content().string("{\"accountId\":\"Id-1\",\"balance\":10}\n{\"accountId\":\"Id-2\",\"balance\":20}\n"));
+  }
+
+  @Test
+  void getTransactionsPagesThroughAccountHistory() throws Exception {
+    this.accountsService.createAccount(new Account("Ledger-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Ledger-2", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Ledger-3", new BigDecimal("100")));
+    transfer("Ledger-1", "Ledger-2", "10");
+    transfer("Ledger-3", "Ledger-2", "20");
+    transfer("Ledger-2", "Ledger-1", "5");
+
+    MvcResult first = this.mockMvc.perform(get("/v1/accounts/Ledger-2/transactions").param("limit", "2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data.transactions.length()").value(2))
+      .andExpect(jsonPath("$.data.transactions[0].accountFromId").value("Ledger-1"))
+      .andExpect(jsonPath("$.data.transactions[0].amount").value(10))
+      .andExpect(jsonPath("$.data.transactions[1].accountFromId").value("Ledger-3"))
+      .andReturn();
+    String cursor = JsonPath.read(first.getResponse().getContentAsString(), "$.data.nextCursor");
+
+    this.mockMvc.perform(get("/v1/accounts/Ledger-2/transactions").param("limit", "2").param("cursor", cursor))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data.transactions.length()").value(1))
+      .andExpect(jsonPath("$.data.transactions[0].accountToId").value("Ledger-1"))
+      .andExpect(jsonPath("$.data.nextCursor").doesNotExist());
+
+    this.mockMvc.perform(get("/v1/accounts/Ledger-3/transactions").param("to", "2000-01-01T00:00:00Z"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data.transactions.length()").value(0));
+  }
+
+  @Test
+  void getTransactionsRejectsInvalidCursor() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/Ledger-1/transactions").param("cursor", "bm90LWEtbnVtYmVy"))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void getAccountAnswersNotModifiedUntilABalanceChanges() throws Exception {
+    this.accountsService.createAccount(new Account("Cached-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Cached-2", new BigDecimal("0")));
+
+    String etag = this.mockMvc.perform(get("/v1/accounts/Cached-1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data.balance").value(100))
+      .andReturn().getResponse().getHeader("ETag");
+    assertThat(etag).isNotBlank();
+    this.mockMvc.perform(get("/v1/accounts/Cached-1").header("If-None-Match", etag))
+      .andExpect(status().isNotModified())
+      .andExpect(content().string(""));
+
+    transfer("Cached-1", "Cached-2", "40");
+
+    this.mockMvc.perform(get("/v1/accounts/Cached-1").header("If-None-Match", etag))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data.balance").value(60));
+  }
+
+  @Test
+  void getAccountIsNotCachedWhileMissing() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/Cached-3"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data").doesNotExist());
+
+    this.accountsService.createAccount(new Account("Cached-3", new BigDecimal("5")));
+
+    this.mockMvc.perform(get("/v1/accounts/Cached-3"))
+      .andExpect(jsonPath("$.data.balance").value(5));
+  }
+
+  @Test
+  void importNdjsonCountsDuplicatesAndInvalidRows() throws Exception {
+    this.accountsService.createAccount(new Account("Import-1", BigDecimal.ONE));
+    String body = """
+      {"accountId":"Import-1","balance":10}
+      {"accountId":"Import-2","balance":20.50}
+
+      {"accountId":"Import-3","balance":-1}
+      not json
+      {"accountId":"Import-2","balance":30}
+      {"balance":5,"accountId":"Import-4","note":{"ignored":true}}
+      """;
+
+    this.mockMvc.perform(post("/v1/accounts/import").contentType("application/x-ndjson").content(body))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data.rows").value(6))
+      .andExpect(jsonPath("$.data.created").value(2))
+      .andExpect(jsonPath("$.data.duplicates").value(2))
+      .andExpect(jsonPath("$.data.duplicateIds[0]").value("Import-1"))
+      .andExpect(jsonPath("$.data.invalid").value(2))
+      .andExpect(jsonPath("$.data.invalidLines[0]").value(4))
+      .andExpect(jsonPath("$.data.invalidLines[1]").value(5));
+
+    assertThat(accountsService.getAccount("Import-1").getBalance()).isEqualByComparingTo("1");
+    assertThat(accountsService.getAccount("Import-2").getBalance()).isEqualByComparingTo("20.50");
+    assertThat(accountsService.getAccount("Import-4").getBalance()).isEqualByComparingTo("5");
+  }
+
+  @Test
+  void importCsvSkipsHeader() throws Exception {
+    String body = "accountId,balance\nCsv-1,100\nCsv,with,commas, 2.5\nCsv-3,abc\n";
+
+    this.mockMvc.perform(post("/v1/accounts/import").contentType("text/csv").content(body))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.data.rows").value(3))
+      .andExpect(jsonPath("$.data.created").value(2))
+      .andExpect(jsonPath("$.data.invalidLines[0]").value(4));
+
+    assertThat(accountsService.getAccount("Csv,with,commas").getBalance()).isEqualByComparingTo("2.5");
+  }
+
+  private void transfer(String from, String to, String amount) throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"" + from + "\",\"accountToId\":\"" + to + "\",\"amount\":" + amount + "}"))
+      .andExpect(status().isOk());
+  }
 }
@@ -0,0 +1,187 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.dto.ImportSummary;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryFixedPoint;
+import com.dws.challenge.service.AccountImportService;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.TransferService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+class AccountsRepositoryFixedPointTest {
+
+  private AccountsRepositoryFixedPoint accountRepository;
+  private TransferService transferService;
+
+  @BeforeEach
+  void setUp() {
+    accountRepository = new AccountsRepositoryFixedPoint(2);
+    transferService = new TransferService(accountRepository, (account, description) -> { },
+      new AccountLockManager());
+    accountRepository.createAccount(new Account("1", new BigDecimal("1000.50")));
+    accountRepository.createAccount(new Account("2", new BigDecimal("500")));
+  }
+
+  @Test
+  void storesBalancesAsMinorUnits() {
+    assertThat(accountRepository.balanceOf(accountRepository.slotOf("1"))).isEqualTo(100050L);
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1000.50");
+    assertThat(accountRepository.getAccount("missing")).isNull();
+  }
+
+  @Test
+  void rejectsDuplicateAccount() {
+    assertThatThrownBy(() -> accountRepository.createAccount(new Account("1")))
+      .isInstanceOf(DuplicateAccountIdException.class);
+  }
+
+  @Test
+  void createsBatchesAndReportsDuplicates() {
+    List<Account> batch = new ArrayList<>();
+    for (int i = 0; i < 200_000; i++) {
+      batch.add(new Account("bulk-" + i, new BigDecimal(i)));
+    }
+    batch.add(new Account("1", BigDecimal.ONE));
+    batch.add(new Account("bulk-7", BigDecimal.ONE));
+
+    assertThat(accountRepository.createAccounts(batch)).containsExactly("1", "bulk-7");
+    assertThat(accountRepository.size()).isEqualTo(200_002);
+    assertThat(accountRepository.getAccount("bulk-7").getBalance()).isEqualByComparingTo("7");
+    assertThat(accountRepository.getAccount("bulk-199999").getBalance()).isEqualByComparingTo("199999");
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1000.50");
+  }
+
+  @Test
+  void clearRetiresSlotsStillHeldByTransfers() {
+    int staleSlot = accountRepository.slotOf("1");
+    accountRepository.clearAccounts();
+    accountRepository.createAccount(new Account("3", new BigDecimal("10")));
+
+    // A transfer that resolved its slot before the clear finishes without touching the new account
+    assertThat(accountRepository.tryDebit(staleSlot, 100)).isTrue();
+    accountRepository.credit(staleSlot, 100);
+    assertThat(accountRepository.slotOf("3")).isNotEqualTo(staleSlot);
+    assertThat(accountRepository.getAccount("3").getBalance()).isEqualByComparingTo("10");
+    assertThat(accountRepository.getAccount("1")).isNull();
+  }
+
+  @Test
+  void rejectsAmountsBeyondScale() {
+    assertThatThrownBy(() -> transferService.transfer("1", "2", new BigDecimal("0.001")))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void importCountsBalancesBeyondScaleAsInvalidRows() throws IOException {
+    AccountImportService importService = new AccountImportService(accountRepository, new ObjectMapper(), 2, 1);
+    String body = "Scale-1,10.25\nScale-2,1.234\nScale-3,5\nScale-4,0.001\n";
+
+    ImportSummary summary = importService.importAccounts(
+      new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), AccountImportService.Format.CSV,
+      accountId -> true);
+
+    assertThat(summary.getCreated()).isEqualTo(2);
+    assertThat(summary.getInvalidLines()).containsExactly(2L, 4L);
+    assertThat(accountRepository.getAccount("Scale-3").getBalance()).isEqualByComparingTo("5");
+    assertThat(accountRepository.getAccount("Scale-2")).isNull();
+  }
+
+  @Test
+  void transferMovesMinorUnits() {
+    transferService.transfer("1", "2", new BigDecimal("0.50"));
+
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1000");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("500.50");
+  }
+
+  @Test
+  void transferRejectsOverdraft() {
+    assertThatThrownBy(() -> transferService.transfer("2", "1", new BigDecimal("500.01")))
+      .isInstanceOf(TransferException.class)
+      .hasMessage("Insufficient balance in 2 account");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("500");
+  }
+
+  @Test
+  void atomicBatchLeavesBalancesUntouchedOnFailure() {
+    List<TransferRequest> batch = List.of(transferRequest("1", "2", "100"), transferRequest("2", "1", "999"));
+
+    assertThatThrownBy(() -> transferService.transferBatch(batch, BatchMode.ALL_OR_NOTHING))
+      .isInstanceOf(TransferException.class)
+      .hasMessage("Transfer 1 rejected: Insufficient balance in 2 account");
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1000.50");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("500");
+  }
+
+  @Test
+  void atomicBatchAppliesNetDeltas() {
+    List<TransferRequest> batch = List.of(transferRequest("1", "2", "1000"), transferRequest("2", "1", "1500"));
+
+    transferService.transferBatch(batch, BatchMode.ALL_OR_NOTHING);
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1500.50");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void concurrentDebitsNeverOverdraw() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 10_000; i++) {
+      executor.submit(() -> {
+        try {
+          transferService.transfer("2", "1", new BigDecimal("0.07"));
+        } catch (TransferException ignored) {
+          // Expected once account 2 runs dry
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    BigDecimal from = accountRepository.getAccount("2").getBalance();
+    BigDecimal to = accountRepository.getAccount("1").getBalance();
+    assertThat(from).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+    assertThat(from.add(to)).isEqualByComparingTo("1500.50");
+  }
+
+  private static TransferRequest transferRequest(String from, String to, String amount) {
+    TransferRequest request = new TransferRequest();
+    request.setAccountFromId(from);
+    request.setAccountToId(to);
+    request.setAmount(new BigDecimal(amount));
+    return request;
+  }
+
+  @SpringBootTest(properties = "accounts.repository=fixed-point")
+  static class PropertySelection {
+
+    @Autowired
+    private AccountsRepository accountsRepository;
+
+    @Test
+    void selectsFixedPointRepository() {
+      assertThat(accountsRepository).isInstanceOf(AccountsRepositoryFixedPoint.class);
+    }
+  }
+}
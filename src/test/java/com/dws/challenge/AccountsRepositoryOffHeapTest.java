@@ -0,0 +1,181 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryOffHeap;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.TransferService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+class AccountsRepositoryOffHeapTest {
+
+  private AccountsRepositoryOffHeap accountRepository;
+  private TransferService transferService;
+
+  @BeforeEach
+  void setUp() {
+    // A tiny initial capacity so the tests exercise index growth
+    accountRepository = new AccountsRepositoryOffHeap(2, 4, Optional.empty());
+    transferService = new TransferService(accountRepository, (account, description) -> { },
+      new AccountLockManager());
+    accountRepository.createAccount(new Account("1", new BigDecimal("1000.50")));
+    accountRepository.createAccount(new Account("2", new BigDecimal("500")));
+  }
+
+  @Test
+  void storesBalancesAsMinorUnits() {
+    assertThat(accountRepository.balanceOf(accountRepository.slotOf("1"))).isEqualTo(100050L);
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1000.50");
+    assertThat(accountRepository.getAccount("missing")).isNull();
+  }
+
+  @Test
+  void rejectsDuplicateAccount() {
+    assertThatThrownBy(() -> accountRepository.createAccount(new Account("1")))
+      .isInstanceOf(DuplicateAccountIdException.class);
+  }
+
+  @Test
+  void createsBatchesAndReportsDuplicates() {
+    List<Account> batch = new ArrayList<>();
+    for (int i = 0; i < 200_000; i++) {
+      batch.add(new Account("bulk-" + i, new BigDecimal(i)));
+    }
+    batch.add(new Account("1", BigDecimal.ONE));
+    batch.add(new Account("bulk-7", BigDecimal.ONE));
+
+    assertThat(accountRepository.createAccounts(batch)).containsExactly("1", "bulk-7");
+    assertThat(accountRepository.size()).isEqualTo(200_002);
+    assertThat(accountRepository.getAccount("bulk-7").getBalance()).isEqualByComparingTo("7");
+    assertThat(accountRepository.getAccount("bulk-199999").getBalance()).isEqualByComparingTo("199999");
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1000.50");
+  }
+
+  @Test
+  void findsEveryAccountAfterTheIndexGrows() {
+    for (int i = 0; i < 100_000; i++) {
+      accountRepository.createAccount(new Account("acc-" + i, new BigDecimal(i)));
+    }
+
+    assertThat(accountRepository.size()).isEqualTo(100_002);
+    for (int i = 0; i < 100_000; i += 997) {
+      assertThat(accountRepository.getAccount("acc-" + i).getBalance()).isEqualByComparingTo(new BigDecimal(i));
+    }
+    assertThat(accountRepository.getAccount("acc-100000")).isNull();
+  }
+
+  @Test
+  void storesNonAsciiIds() {
+    accountRepository.createAccount(new Account("Kontó-Ä", BigDecimal.TEN));
+
+    assertThat(accountRepository.getAccount("Kontó-Ä").getBalance()).isEqualByComparingTo("10");
+    assertThat(accountRepository.getAccount("Kontó-A")).isNull();
+    assertThat(accountRepository.getAllAccounts()).extracting(Account::getAccountId).contains("Kontó-Ä");
+  }
+
+  @Test
+  void pagesInAccountIdOrderIncludingNewAccounts() {
+    accountRepository.createAccount(new Account("c", BigDecimal.ONE));
+    accountRepository.createAccount(new Account("a", BigDecimal.ONE));
+    assertThat(accountRepository.getAccountsPage(null, 3)).extracting(Account::getAccountId)
+      .containsExactly("1", "2", "a");
+
+    // Accounts created after the sorted index was built are merged in on the next page
+    accountRepository.createAccount(new Account("b", BigDecimal.ONE));
+    List<Account> page = accountRepository.getAccountsPage("2", 10);
+    assertThat(page).extracting(Account::getAccountId).containsExactly("a", "b", "c");
+    assertThat(accountRepository.getAccountsPage("c", 10)).isEmpty();
+  }
+
+  @Test
+  void clearRemovesEverything() {
+    accountRepository.getAccountsPage(null, 10);
+    accountRepository.clearAccounts();
+
+    assertThat(accountRepository.getAccount("1")).isNull();
+    assertThat(accountRepository.getAccountsPage(null, 10)).isEmpty();
+    accountRepository.createAccount(new Account("1", BigDecimal.ONE));
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1");
+  }
+
+  @Test
+  void clearRetiresSlotsStillHeldByTransfers() {
+    int staleSlot = accountRepository.slotOf("1");
+    accountRepository.clearAccounts();
+    accountRepository.createAccount(new Account("3", new BigDecimal("10")));
+
+    // A transfer that resolved its slot before the clear finishes without touching the new account
+    assertThat(accountRepository.tryDebit(staleSlot, 500)).isTrue();
+    accountRepository.credit(staleSlot, 100_000);
+    assertThat(accountRepository.slotOf("3")).isNotEqualTo(staleSlot);
+    assertThat(accountRepository.getAccount("3").getBalance()).isEqualByComparingTo("10");
+    assertThat(accountRepository.getAccount("1")).isNull();
+
+    // Only accounts created since the clear are listed, also after the index grows again
+    for (int i = 0; i < 100; i++) {
+      accountRepository.createAccount(new Account("n-" + i, BigDecimal.ONE));
+    }
+    assertThat(accountRepository.size()).isEqualTo(101);
+    assertThat(accountRepository.getAllAccounts()).hasSize(101);
+    assertThat(accountRepository.getAccountsPage(null, 2)).extracting(Account::getAccountId)
+      .containsExactly("3", "n-0");
+    assertThat(accountRepository.getAccount("n-99").getBalance()).isEqualByComparingTo("1");
+  }
+
+  @Test
+  void transferMovesMinorUnits() {
+    transferService.transfer("1", "2", new BigDecimal("0.50"));
+
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1000");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("500.50");
+  }
+
+  @Test
+  void concurrentDebitsNeverOverdraw() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 10_000; i++) {
+      executor.submit(() -> {
+        try {
+          transferService.transfer("2", "1", new BigDecimal("0.07"));
+        } catch (TransferException ignored) {
+          // Expected once account 2 runs dry
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    BigDecimal from = accountRepository.getAccount("2").getBalance();
+    BigDecimal to = accountRepository.getAccount("1").getBalance();
+    assertThat(from).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+    assertThat(from.add(to)).isEqualByComparingTo("1500.50");
+  }
+
+  @SpringBootTest(properties = "accounts.repository=off-heap")
+  static class PropertySelection {
+
+    @Autowired
+    private AccountsRepository accountsRepository;
+
+    @Test
+    void selectsOffHeapRepository() {
+      assertThat(accountsRepository).isInstanceOf(AccountsRepositoryOffHeap.class);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AsyncNotificationService;
+import com.dws.challenge.service.AsyncNotificationService.Backpressure;
+import com.dws.challenge.service.NotificationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class AsyncNotificationServiceTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final List<String> sent = new CopyOnWriteArrayList<>();
+  private final List<String> senderThreads = new CopyOnWriteArrayList<>();
+
+  // Holds the worker threads until the test releases them; callers deliver straight away
+  private final NotificationService slowDelegate = (account, description) -> {
+    senderThreads.add(Thread.currentThread().getName());
+    try {
+      if (Thread.currentThread().getName().startsWith("notification-worker")) {
+        release.await(5, TimeUnit.SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    sent.add(account.getAccountId() + ": " + description);
+  };
+
+  private AsyncNotificationService notifications;
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    notifications.shutdown();
+  }
+
+  @Test
+  void coalescesNotificationsForQueuedAccount() throws Exception {
+    notifications = new AsyncNotificationService(slowDelegate, 10, 1, Backpressure.BLOCK);
+
+    notifications.notifyAboutTransfer(new Account("busy"), "first");
+    awaitQueueDepth(0);  // Worker has taken "busy" and is blocked in the delegate
+    notifications.notifyAboutTransfer(new Account("1"), "Transferred 10");
+    notifications.notifyAboutTransfer(new Account("1"), "Transferred 20");
+    assertThat(notifications.getQueueDepth()).isEqualTo(1);
+
+    release.countDown();
+    awaitDelivered(2);
+    assertThat(sent).containsExactly("busy: first", "1: Transferred 10; Transferred 20");
+    assertThat(notifications.getCoalescedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void capsDescriptionsCoalescedIntoOneEntry() throws Exception {
+    notifications = new AsyncNotificationService(slowDelegate, 10, 1, Backpressure.BLOCK, 2);
+
+    notifications.notifyAboutTransfer(new Account("busy"), "first");
+    awaitQueueDepth(0);
+    for (int i = 1; i <= 5; i++) {
+      notifications.notifyAboutTransfer(new Account("1"), "Transferred " + i);
+    }
+
+    release.countDown();
+    awaitDelivered(2);
+    assertThat(sent).containsExactly("busy: first", "1: 3 earlier transfers not shown; Transferred 4; Transferred 5");
+    assertThat(notifications.getDroppedCount()).isEqualTo(3);
+  }
+
+  @Test
+  void dropsWhenQueueIsFull() throws Exception {
+    notifications = new AsyncNotificationService(slowDelegate, 1, 1, Backpressure.DROP);
+
+    notifications.notifyAboutTransfer(new Account("busy"), "first");
+    awaitQueueDepth(0);
+    notifications.notifyAboutTransfer(new Account("1"), "queued");
+    notifications.notifyAboutTransfer(new Account("2"), "dropped");
+
+    release.countDown();
+    awaitDelivered(2);
+    assertThat(notifications.getDroppedCount()).isEqualTo(1);
+    assertThat(sent).doesNotContain("2: dropped");
+  }
+
+  @Test
+  void spillsToCallerWhenQueueIsFull() throws Exception {
+    notifications = new AsyncNotificationService(slowDelegate, 1, 1, Backpressure.SPILL);
+
+    notifications.notifyAboutTransfer(new Account("busy"), "first");
+    awaitQueueDepth(0);
+    notifications.notifyAboutTransfer(new Account("1"), "queued");
+    notifications.notifyAboutTransfer(new Account("2"), "spilled");
+    assertThat(sent).containsExactly("2: spilled");
+
+    release.countDown();
+
+    awaitDelivered(3);
+    assertThat(senderThreads).contains(Thread.currentThread().getName());
+    assertThat(notifications.getMaxLag(TimeUnit.NANOSECONDS)).isPositive();
+  }
+
+  private void awaitQueueDepth(int depth) throws InterruptedException {
+    for (int i = 0; i < 500 && notifications.getQueueDepth() != depth; i++) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(20);
+  }
+
+  private void awaitDelivered(long count) throws InterruptedException {
+    for (int i = 0; i < 500 && notifications.getDeliveredCount() < count; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(notifications.getDeliveredCount()).isEqualTo(count);
+  }
+}
@@ -0,0 +1,90 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Optional;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.TransferService;
+import com.dws.challenge.web.BinaryTransferServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BinaryTransferServerTest {
+
+  private AccountsRepositoryInMemory accountRepository;
+  private BinaryTransferServer server;
+
+  @BeforeEach
+  void setUp() {
+    accountRepository = new AccountsRepositoryInMemory();
+    accountRepository.createAccount(new Account("Id-1", new BigDecimal("100")));
+    accountRepository.createAccount(new Account("Id-2", new BigDecimal("100")));
+    TransferService transferService = new TransferService(accountRepository, (account, description) -> { },
+      new AccountLockManager());
+    server = new BinaryTransferServer(transferService, Optional.empty(), 0);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop();
+  }
+
+  @Test
+  void appliesPipelinedFramesAndAnswersInOrder() throws IOException {
+    ByteBuffer request = ByteBuffer.allocate(4 * BinaryTransferServer.MAX_FRAME_SIZE);
+    BinaryTransferServer.writeFrame(request, "Id-1", "Id-2", new BigDecimal("10.25"));
+    BinaryTransferServer.writeFrame(request, "Id-2", "Id-1", new BigDecimal("1000"));
+    BinaryTransferServer.writeFrame(request, "Id-1", "Id-404", BigDecimal.ONE);
+    BinaryTransferServer.writeFrame(request, "Id-1", "Id-2", BigDecimal.ZERO);
+
+    assertThat(exchange(request, 4)).containsExactly(
+      BinaryTransferServer.OK,
+      BinaryTransferServer.INSUFFICIENT_FUNDS,
+      BinaryTransferServer.UNKNOWN_ACCOUNT,
+      BinaryTransferServer.INVALID);
+    assertThat(accountRepository.getAccount("Id-1").getBalance()).isEqualByComparingTo("89.75");
+    assertThat(accountRepository.getAccount("Id-2").getBalance()).isEqualByComparingTo("110.25");
+  }
+
+  @Test
+  void decodesFramesSplitAcrossWrites() throws IOException {
+    ByteBuffer frame = ByteBuffer.allocate(BinaryTransferServer.MAX_FRAME_SIZE);
+    BinaryTransferServer.writeFrame(frame, "Id-2", "Id-1", new BigDecimal("5"));
+    frame.flip();
+
+    try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+      // Send the frame one byte at a time
+      for (int i = 0; i < frame.limit(); i++) {
+        channel.write(ByteBuffer.wrap(new byte[] {frame.get(i)}));
+      }
+      ByteBuffer status = ByteBuffer.allocate(1);
+      channel.read(status);
+      assertThat(status.get(0)).isEqualTo(BinaryTransferServer.OK);
+    }
+    assertThat(accountRepository.getAccount("Id-1").getBalance()).isEqualByComparingTo("105");
+  }
+
+  private byte[] exchange(ByteBuffer request, int frames) throws IOException {
+    request.flip();
+    try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+      while (request.hasRemaining()) {
+        channel.write(request);
+      }
+      ByteBuffer response = ByteBuffer.allocate(frames);
+      while (response.hasRemaining() && channel.read(response) >= 0) {
+        // Statuses may arrive in several reads
+      }
+      return response.array();
+    }
+  }
+}
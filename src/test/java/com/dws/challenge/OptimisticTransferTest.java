@@ -0,0 +1,176 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.ConcurrentUpdateException;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.repository.AccountsRepositoryFixedPoint;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferService;
+import com.dws.challenge.service.TransferService.ConcurrencyMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OptimisticTransferTest {
+
+  private AccountsRepositoryInMemory accountRepository;
+  private TransferService transferService;
+
+  @BeforeEach
+  void setUp() {
+    accountRepository = new AccountsRepositoryInMemory();
+    transferService = transferService(Integer.MAX_VALUE, TransferMetrics.noop());
+    accountRepository.createAccount(new Account("1", new BigDecimal("1000")));
+    accountRepository.createAccount(new Account("2", new BigDecimal("500")));
+  }
+
+  @Test
+  void updateIfVersionRejectsStaleVersion() {
+    Account snapshot = accountRepository.getAccount("1");
+    long version = snapshot.getVersion();
+
+    assertThat(accountRepository.updateIfVersion(new Account("1", new BigDecimal("900")), version)).isTrue();
+    assertThat(accountRepository.updateIfVersion(new Account("1", new BigDecimal("800")), version)).isFalse();
+
+    Account current = accountRepository.getAccount("1");
+    assertThat(current.getBalance()).isEqualByComparingTo("900");
+    assertThat(current.getVersion()).isEqualTo(version + 1);
+  }
+
+  @Test
+  void updateAccountBumpsVersion() {
+    Account account = accountRepository.getAccount("2");
+    long version = account.getVersion();
+
+    accountRepository.updateAccount(account);
+
+    assertThat(accountRepository.getAccount("2").getVersion()).isEqualTo(version + 1);
+  }
+
+  @Test
+  void updateAccountBumpsPastAnOptimisticUpdateThatReplacedIt() {
+    Account account = accountRepository.getAccount("2");
+    long version = account.getVersion();
+    assertThat(accountRepository.updateIfVersion(new Account("2", new BigDecimal("400")), version)).isTrue();
+
+    // A locked-mode update of the account it read before the swap
+    accountRepository.updateAccount(account);
+
+    assertThat(accountRepository.getAccount("2").getVersion()).isEqualTo(version + 2);
+    assertThat(accountRepository.updateIfVersion(new Account("2", new BigDecimal("300")), version + 1)).isFalse();
+  }
+
+  @Test
+  void optimisticModeFailsFastWithoutVersionedUpdates() {
+    assertThatThrownBy(() -> new TransferService(new AccountsRepositoryFixedPoint(2, Optional.empty()),
+      (account, description) -> { }, new AccountLockManager(), TransferMetrics.noop(), ConcurrencyMode.OPTIMISTIC, 5))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessageContaining("AccountsRepositoryFixedPoint");
+  }
+
+  @Test
+  void transferMovesBalance() {
+    transferService.transfer("1", "2", new BigDecimal("250"));
+
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("750");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("750");
+  }
+
+  @Test
+  void transferRejectsOverdraftAndUnknownAccount() {
+    assertThatThrownBy(() -> transferService.transfer("2", "1", new BigDecimal("500.01")))
+      .isInstanceOf(TransferException.class)
+      .hasMessage("Insufficient balance in 2 account");
+    assertThatThrownBy(() -> transferService.transfer("1", "404", BigDecimal.ONE))
+      .isInstanceOf(TransferException.class);
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1000");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("500");
+  }
+
+  @Test
+  void atomicBatchAppliesNetDeltasOrNothing() {
+    transferService.transferBatch(List.of(transferRequest("1", "2", "1000"), transferRequest("2", "1", "1500")),
+      BatchMode.ALL_OR_NOTHING);
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1500");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("0");
+
+    assertThatThrownBy(() -> transferService.transferBatch(
+        List.of(transferRequest("1", "2", "100"), transferRequest("2", "1", "9999")), BatchMode.ALL_OR_NOTHING))
+      .isInstanceOf(TransferException.class);
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1500");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void concurrentTransfersConserveMoney() throws Exception {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    TransferService contended = transferService(Integer.MAX_VALUE, new TransferMetrics(registry, 0));
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 10_000; i++) {
+      boolean forward = i % 2 == 0;
+      executor.submit(() -> {
+        try {
+          contended.transfer(forward ? "1" : "2", forward ? "2" : "1", new BigDecimal("0.07"));
+        } catch (TransferException ignored) {
+          // Possible if one side runs dry
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    BigDecimal first = accountRepository.getAccount("1").getBalance();
+    BigDecimal second = accountRepository.getAccount("2").getBalance();
+    assertThat(first).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+    assertThat(second).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+    assertThat(first.add(second)).isEqualByComparingTo("1500");
+  }
+
+  @Test
+  void debitGivesUpAfterMaxAttempts() {
+    // A repository whose versioned update always loses the race
+    AccountsRepositoryInMemory conflicting = new AccountsRepositoryInMemory() {
+      @Override
+      public boolean updateIfVersion(Account account, long expectedVersion) {
+        return false;
+      }
+    };
+    conflicting.createAccount(new Account("1", new BigDecimal("10")));
+    conflicting.createAccount(new Account("2", new BigDecimal("10")));
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    TransferService service = new TransferService(conflicting, (account, description) -> { },
+      new AccountLockManager(), new TransferMetrics(registry, 0), ConcurrencyMode.OPTIMISTIC, 5);
+
+    assertThatThrownBy(() -> service.transfer("1", "2", BigDecimal.ONE))
+      .isInstanceOf(ConcurrentUpdateException.class);
+    assertThat(registry.get("transfers.optimistic.conflicts").counter().count()).isEqualTo(5);
+    assertThat(conflicting.getAccount("1").getBalance()).isEqualByComparingTo("10");
+  }
+
+  private TransferService transferService(int maxAttempts, TransferMetrics metrics) {
+    return new TransferService(accountRepository, (account, description) -> { }, new AccountLockManager(),
+      metrics, ConcurrencyMode.OPTIMISTIC, maxAttempts);
+  }
+
+  private static TransferRequest transferRequest(String from, String to, String amount) {
+    TransferRequest request = new TransferRequest();
+    request.setAccountFromId(from);
+    request.setAccountToId(to);
+    request.setAmount(new BigDecimal(amount));
+    return request;
+  }
+}
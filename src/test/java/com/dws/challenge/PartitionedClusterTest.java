@@ -0,0 +1,325 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.ClusterService;
+import com.dws.challenge.service.PartitionRouter;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClient;
+
+/**
+ * Runs three nodes of a partitioned deployment in this JVM, each on its own localhost port.
+ */
+class PartitionedClusterTest {
+
+  private static final int NODES = 3;
+  private static final String SECRET = "test-secret";
+
+  @TempDir
+  static Path pendingCreditsDir;
+
+  private static final List<String> urls = new ArrayList<>();
+  private static final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+  private static final RestClient client = RestClient.create();
+  private static PartitionRouter router;
+
+  @BeforeAll
+  static void startNodes() throws IOException {
+    List<Integer> ports = new ArrayList<>();
+    for (int i = 0; i < NODES; i++) {
+      try (ServerSocket socket = new ServerSocket(0)) {
+        ports.add(socket.getLocalPort());
+      }
+    }
+    ports.forEach(port -> urls.add("http://localhost:" + port));
+    for (int i = 0; i < NODES; i++) {
+      nodes.add(startNode(i));
+    }
+    router = new PartitionRouter(urls, urls.get(0));
+  }
+
+  private static ConfigurableApplicationContext startNode(int node) {
+    return new SpringApplicationBuilder(ChallengeApplication.class).run(
+        "--server.port=" + urls.get(node).substring(urls.get(node).lastIndexOf(':') + 1),
+        "--cluster.enabled=true",
+        "--cluster.nodes=" + String.join(",", urls),
+        "--cluster.self=" + urls.get(node),
+        "--cluster.secret=" + SECRET,
+        "--cluster.pending-credits-file=" + pendingCreditsDir.resolve("node-" + node),
+        "--cluster.retry-interval-ms=100",
+        "--cluster.request-timeout=PT1S",
+        "--spring.jmx.enabled=false");
+  }
+
+  @AfterAll
+  static void stopNodes() {
+    nodes.forEach(ConfigurableApplicationContext::close);
+  }
+
+  @Test
+  void routingIsDeterministicAndSpreadsAccounts() {
+    Map<String, Integer> perNode = new HashMap<>();
+    for (int i = 0; i < 30_000; i++) {
+      String owner = router.ownerOf("Id-" + i);
+      assertThat(new PartitionRouter(urls, urls.get(1)).ownerOf("Id-" + i)).isEqualTo(owner);
+      perNode.merge(owner, 1, Integer::sum);
+    }
+
+    assertThat(perNode).hasSize(NODES);
+    perNode.values().forEach(count -> assertThat(count).isBetween(7_000, 13_000));
+  }
+
+  @Test
+  void requestsAreForwardedToTheOwningNode() {
+    String accountId = accountOwnedBy(2, "fwd");
+
+    assertThat(post(urls.get(0), "/v1/accounts", account(accountId, "100")).getStatusCode().value()).isEqualTo(201);
+
+    // Every node answers for the account, but only its owner stores it
+    for (String url : urls) {
+      assertThat(balance(url, accountId)).isEqualByComparingTo("100");
+    }
+    assertThat(nodes.get(2).getBean(ClusterService.class).isLocal(accountId)).isTrue();
+  }
+
+  @Test
+  void transferWithinOnePartitionStaysLocal() {
+    String from = accountOwnedBy(1, "local-from");
+    String to = accountOwnedBy(1, "local-to");
+    post(urls.get(0), "/v1/accounts", account(from, "100"));
+    post(urls.get(0), "/v1/accounts", account(to, "0"));
+
+    assertThat(post(urls.get(2), "/v1/accounts/transfer", transfer(from, to, "40")).getStatusCode().value()).isEqualTo(200);
+
+    assertThat(balance(urls.get(0), from)).isEqualByComparingTo("60");
+    assertThat(balance(urls.get(0), to)).isEqualByComparingTo("40");
+  }
+
+  @Test
+  void transferAcrossPartitionsReservesThenCredits() {
+    String from = accountOwnedBy(0, "cross-from");
+    String to = accountOwnedBy(1, "cross-to");
+    post(urls.get(2), "/v1/accounts", account(from, "100"));
+    post(urls.get(2), "/v1/accounts", account(to, "5"));
+
+    assertThat(post(urls.get(2), "/v1/accounts/transfer", transfer(from, to, "30")).getStatusCode().value()).isEqualTo(200);
+
+    assertThat(balance(urls.get(1), from)).isEqualByComparingTo("70");
+    assertThat(balance(urls.get(0), to)).isEqualByComparingTo("35");
+  }
+
+  @Test
+  void rejectedCreditReleasesTheReservation() {
+    String from = accountOwnedBy(0, "release-from");
+    String missing = accountOwnedBy(2, "release-missing");
+    post(urls.get(0), "/v1/accounts", account(from, "100"));
+
+    ResponseEntity<String> response = post(urls.get(0), "/v1/accounts/transfer", transfer(from, missing, "30"));
+
+    assertThat(response.getStatusCode().value()).isEqualTo(400);
+    assertThat(response.getBody()).contains("Account number " + missing + " not found");
+    assertThat(balance(urls.get(0), from)).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void insufficientFundsAreRejectedBeforeAnythingIsReserved() {
+    String from = accountOwnedBy(1, "poor-from");
+    String to = accountOwnedBy(2, "poor-to");
+    post(urls.get(0), "/v1/accounts", account(from, "10"));
+    post(urls.get(0), "/v1/accounts", account(to, "0"));
+
+    ResponseEntity<String> response = post(urls.get(0), "/v1/accounts/transfer", transfer(from, to, "30"));
+
+    assertThat(response.getStatusCode().value()).isEqualTo(400);
+    assertThat(balance(urls.get(0), from)).isEqualByComparingTo("10");
+    assertThat(balance(urls.get(0), to)).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void creditToUnreachableOwnerIsRetriedThenReleased() throws InterruptedException {
+    String from = accountOwnedBy(0, "doubt-from");
+    String to = accountOwnedBy(2, "doubt-to");
+    post(urls.get(0), "/v1/accounts", account(from, "100"));
+    post(urls.get(0), "/v1/accounts", account(to, "0"));
+    ClusterService coordinator = nodes.get(0).getBean(ClusterService.class);
+
+    nodes.get(2).close();
+    try {
+      ResponseEntity<String> response = post(urls.get(0), "/v1/accounts/transfer", transfer(from, to, "25"));
+
+      // The amount stays reserved while the outcome of the credit is unknown
+      assertThat(response.getStatusCode().value()).isEqualTo(202);
+      assertThat(balance(urls.get(0), from)).isEqualByComparingTo("75");
+      assertThat(coordinator.getPendingCreditCount()).isEqualTo(1);
+    } finally {
+      nodes.set(2, startNode(2));
+    }
+
+    // The restarted owner has lost its in-memory accounts, so the retried credit is rejected
+    for (int i = 0; i < 100 && coordinator.getPendingCreditCount() > 0; i++) {
+      Thread.sleep(100);
+    }
+    assertThat(coordinator.getPendingCreditCount()).isZero();
+    assertThat(balance(urls.get(1), from)).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void creditEndpointOnlyTakesOwnedCreditsFromPeers() {
+    String to = accountOwnedBy(1, "forged-to");
+    post(urls.get(0), "/v1/accounts", account(to, "0"));
+    String credit = "{\"transferId\":\"forged\",\"accountFromId\":\"nobody\",\"accountToId\":\"" + to
+      + "\",\"amount\":1000}";
+
+    assertThat(postCredit(urls.get(1), null, credit).getStatusCode().value()).isEqualTo(403);
+    assertThat(postCredit(urls.get(1), "wrong-secret", credit).getStatusCode().value()).isEqualTo(403);
+    // Peers may not credit an account the node does not own, nor credit a negative amount
+    assertThat(postCredit(urls.get(0), SECRET, credit).getStatusCode().value()).isEqualTo(400);
+    assertThat(postCredit(urls.get(1), SECRET, credit.replace("1000", "-5")).getStatusCode().value()).isEqualTo(400);
+    assertThat(balance(urls.get(1), to)).isEqualByComparingTo("0");
+
+    // A credit delivered twice is applied once
+    assertThat(postCredit(urls.get(1), SECRET, credit).getStatusCode().value()).isEqualTo(200);
+    assertThat(postCredit(urls.get(1), SECRET, credit).getStatusCode().value()).isEqualTo(200);
+    assertThat(balance(urls.get(1), to)).isEqualByComparingTo("1000");
+  }
+
+  @Test
+  void creditIsForgottenOnceAcknowledged() throws InterruptedException {
+    String to = accountOwnedBy(1, "acknowledged-to");
+    post(urls.get(0), "/v1/accounts", account(to, "0"));
+    String credit = "{\"transferId\":\"acknowledged\",\"accountFromId\":\"nobody\",\"accountToId\":\"" + to
+      + "\",\"amount\":10}";
+    ClusterService owner = nodes.get(1).getBean(ClusterService.class);
+    assertThat(postCredit(urls.get(1), SECRET, credit).getStatusCode().value()).isEqualTo(200);
+
+    assertThat(postAcknowledged(urls.get(1), null, "[\"acknowledged\"]").getStatusCode().value()).isEqualTo(403);
+    assertThat(postAcknowledged(urls.get(1), SECRET, "[\"acknowledged\"]").getStatusCode().value()).isEqualTo(200);
+
+    // Kept for one more request timeout, so a late duplicate is still applied once
+    assertThat(owner.remembersCredit("acknowledged")).isTrue();
+    assertThat(postCredit(urls.get(1), SECRET, credit).getStatusCode().value()).isEqualTo(200);
+    assertThat(balance(urls.get(1), to)).isEqualByComparingTo("10");
+    for (int i = 0; i < 100 && owner.remembersCredit("acknowledged"); i++) {
+      Thread.sleep(100);
+    }
+    assertThat(owner.remembersCredit("acknowledged")).isFalse();
+  }
+
+  @Test
+  void forwardedHeaderWithoutTheSecretIsRoutedNormally() {
+    String accountId = accountOwnedBy(2, "spoofed");
+    ResponseEntity<String> response = client.post().uri(urls.get(0) + "/v1/accounts")
+      .contentType(MediaType.APPLICATION_JSON)
+      .header(ClusterService.FORWARDED_HEADER, urls.get(1))
+      .header(ClusterService.SECRET_HEADER, "wrong-secret")
+      .body(account(accountId, "100")).retrieve()
+      .onStatus(HttpStatusCode::isError, (clientRequest, clientResponse) -> { })
+      .toEntity(String.class);
+
+    // Created on its owner, not on the node the client claimed to be forwarding to
+    assertThat(response.getStatusCode().value()).isEqualTo(201);
+    assertThat(nodes.get(0).getBean(AccountsService.class).getAccount(accountId)).isNull();
+    assertThat(nodes.get(2).getBean(AccountsService.class).getAccount(accountId)).isNotNull();
+  }
+
+  @Test
+  void creditInDoubtSurvivesCoordinatorRestart() throws InterruptedException {
+    String from = accountOwnedBy(0, "restart-from");
+    String to = accountOwnedBy(2, "restart-to");
+    post(urls.get(0), "/v1/accounts", account(from, "100"));
+    post(urls.get(0), "/v1/accounts", account(to, "0"));
+
+    nodes.get(2).close();
+    try {
+      assertThat(post(urls.get(0), "/v1/accounts/transfer", transfer(from, to, "25")).getStatusCode().value())
+        .isEqualTo(202);
+      nodes.get(0).close();
+    } finally {
+      nodes.set(0, startNode(0));
+      nodes.set(2, startNode(2));
+    }
+    ClusterService coordinator = nodes.get(0).getBean(ClusterService.class);
+    assertThat(coordinator.getPendingCreditCount()).isEqualTo(1);
+
+    // Both nodes lost their accounts: the owner rejects the credit, and the reservation waits for
+    // its source account to exist again
+    Thread.sleep(500);
+    String pending = client.get().uri(urls.get(0) + "/internal/v1/partitions/pending")
+      .header(ClusterService.SECRET_HEADER, SECRET).retrieve().body(String.class);
+    assertThat(JsonPath.<String>read(pending, "$.data[0].accountFromId")).isEqualTo(from);
+
+    post(urls.get(1), "/v1/accounts", account(from, "0"));
+    for (int i = 0; i < 100 && coordinator.getPendingCreditCount() > 0; i++) {
+      Thread.sleep(100);
+    }
+    assertThat(coordinator.getPendingCreditCount()).isZero();
+    assertThat(balance(urls.get(0), from)).isEqualByComparingTo("25");
+  }
+
+  private static String accountOwnedBy(int node, String prefix) {
+    for (int i = 0; ; i++) {
+      String accountId = prefix + "-" + i;
+      if (router.ownerOf(accountId).equals(urls.get(node))) {
+        return accountId;
+      }
+    }
+  }
+
+  private static BigDecimal balance(String url, String accountId) {
+    String body = client.get().uri(url + "/v1/accounts/{id}", accountId).retrieve().body(String.class);
+    return new BigDecimal(JsonPath.read(body, "$.data.balance").toString());
+  }
+
+  private static ResponseEntity<String> post(String url, String path, String json) {
+    return client.post().uri(url + path).contentType(MediaType.APPLICATION_JSON).body(json).retrieve()
+        .onStatus(HttpStatusCode::isError, (request, response) -> { })
+        .toEntity(String.class);
+  }
+
+  private static ResponseEntity<String> postCredit(String url, String secret, String json) {
+    return postInternal(url + "/internal/v1/partitions/credit", secret, json);
+  }
+
+  private static ResponseEntity<String> postAcknowledged(String url, String secret, String json) {
+    return postInternal(url + "/internal/v1/partitions/credit/acknowledged", secret, json);
+  }
+
+  private static ResponseEntity<String> postInternal(String uri, String secret, String json) {
+    return client.post().uri(uri).contentType(MediaType.APPLICATION_JSON)
+        .headers(headers -> {
+          if (secret != null) {
+            headers.set(ClusterService.SECRET_HEADER, secret);
+          }
+        })
+        .body(json).retrieve()
+        .onStatus(HttpStatusCode::isError, (request, response) -> { })
+        .toEntity(String.class);
+  }
+
+  private static String account(String accountId, String balance) {
+    return "{\"accountId\":\"" + accountId + "\",\"balance\":" + balance + "}";
+  }
+
+  private static String transfer(String from, String to, String amount) {
+    return "{\"accountFromId\":\"" + from + "\",\"accountToId\":\"" + to + "\",\"amount\":" + amount + "}";
+  }
+}
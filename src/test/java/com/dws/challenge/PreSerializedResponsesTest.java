@@ -0,0 +1,51 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.ResponseWrapper;
+import com.dws.challenge.web.PreSerializedResponses;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+
+class PreSerializedResponsesTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final PreSerializedResponses responses = new PreSerializedResponses(objectMapper);
+
+  @ParameterizedTest
+  @ValueSource(strings = {"Id-123", "quote\"and\\backslash", "tab\there", "unicodé-账户"})
+  void accountBodyMatchesJackson(String accountId) throws IOException {
+    Account account = new Account(accountId, new BigDecimal("1234.50"));
+
+    assertThat(written(account)).isEqualTo(objectMapper.writeValueAsString(
+      new ResponseWrapper<>(account, "Account retrieved successfully", 200)));
+  }
+
+  @Test
+  void missingAccountHasNullData() throws IOException {
+    assertThat(written(null)).isEqualTo(objectMapper.writeValueAsString(
+      new ResponseWrapper<>(null, "Account retrieved successfully", 200)));
+  }
+
+  @Test
+  void transferBodyMatchesJackson() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    responses.writeTransferSuccessful(out);
+
+    assertThat(out.toString("UTF-8")).isEqualTo(objectMapper.writeValueAsString(
+      new ResponseWrapper<>(null, "Transfer successful", 200)));
+  }
+
+  private String written(Account account) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    responses.writeAccount(out, account);
+    return out.toString("UTF-8");
+  }
+}
@@ -0,0 +1,194 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.ReactiveAccountsService;
+import com.dws.challenge.service.TransferService;
+import com.dws.challenge.web.ReactiveAccountsServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.scheduler.Schedulers;
+
+@SpringBootTest(properties = {"accounts.reactive.enabled=true", "accounts.reactive.port=0"})
+class ReactiveAccountsServerTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private ReactiveAccountsServer server;
+
+  private WebTestClient client;
+
+  @BeforeEach
+  void setUp() {
+    client = WebTestClient.bindToServer().baseUrl("http://localhost:" + server.getPort()).build();
+    accountsService.clearAllAccounts();
+  }
+
+  @Test
+  void createsAndRetrievesAccountsWithETags() {
+    client.post().uri("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("{\"accountId\":\"Id-1\",\"balance\":123.45}")
+      .exchange()
+      .expectStatus().isCreated()
+      .expectBody().jsonPath("$.message").isEqualTo("Account created successfully");
+
+    String etag = client.get().uri("/v1/accounts/Id-1")
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .json("{\"data\":{\"accountId\":\"Id-1\",\"balance\":123.45},\"message\":\"Account retrieved successfully\",\"statusCode\":200}")
+      .returnResult().getResponseHeaders().getETag();
+    assertThat(etag).isNotBlank();
+
+    client.get().uri("/v1/accounts/Id-1").header("If-None-Match", etag)
+      .exchange()
+      .expectStatus().isNotModified();
+  }
+
+  @Test
+  void rejectsDuplicateAndInvalidAccounts() {
+    accountsService.createAccount(new Account("Id-1", BigDecimal.TEN));
+
+    client.post().uri("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("{\"accountId\":\"Id-1\",\"balance\":1}")
+      .exchange()
+      .expectStatus().isBadRequest()
+      .expectBody().jsonPath("$.message").isEqualTo("Account id Id-1 already exists!");
+
+    client.post().uri("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("{\"accountId\":\"Id-2\",\"balance\":-1}")
+      .exchange()
+      .expectStatus().isBadRequest()
+      .expectBody().jsonPath("$.statusCode").isEqualTo(400);
+  }
+
+  @Test
+  void transfersAndReportsFailures() {
+    accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal("100")));
+
+    client.post().uri("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":40}")
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody().jsonPath("$.message").isEqualTo("Transfer successful");
+
+    client.post().uri("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":1000}")
+      .exchange()
+      .expectStatus().isBadRequest();
+
+    client.post().uri("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":0}")
+      .exchange()
+      .expectStatus().isBadRequest()
+      .expectBody().jsonPath("$.message").isEqualTo("Transfer amount must be positive");
+
+    client.post().uri("/v1/accounts/transfer/batch").contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("{\"transfers\":[{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"amount\":10},"
+        + "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-404\",\"amount\":10}]}")
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody().jsonPath("$.message").isEqualTo("Batch processed: 1 succeeded, 1 failed");
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("70");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("130");
+  }
+
+  @Test
+  void streamsAllAccountsInOneWrappedBody() {
+    for (int i = 0; i < 2500; i++) {
+      accountsService.createAccount(new Account(String.format("Id-%04d", i), BigDecimal.ONE));
+    }
+
+    client.get().uri("/v1/accounts/getAllAccounts")
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.data.length()").isEqualTo(2500)
+      .jsonPath("$.data[0].accountId").isEqualTo("Id-0000")
+      .jsonPath("$.data[2499].accountId").isEqualTo("Id-2499")
+      .jsonPath("$.message").isEqualTo("Accounts retrieved successfully");
+  }
+
+  @Test
+  void readsPagesOnlyAsFastAsTheyAreRequested() {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    for (int i = 0; i < 5000; i++) {
+      repository.createAccount(new Account(String.format("Id-%04d", i), BigDecimal.ONE));
+    }
+    AtomicInteger pagesRead = new AtomicInteger();
+    AccountsService counting = new AccountsService(repository) {
+      @Override
+      public List<Account> getAccountsPage(String afterAccountId, int limit) {
+        pagesRead.incrementAndGet();
+        return super.getAccountsPage(afterAccountId, limit);
+      }
+    };
+    List<Account> received = new ArrayList<>();
+    BaseSubscriber<Account> subscriber = new BaseSubscriber<>() {
+      @Override
+      protected void hookOnSubscribe(Subscription subscription) {
+        request(1);
+      }
+
+      @Override
+      protected void hookOnNext(Account account) {
+        received.add(account);
+      }
+    };
+
+    new ReactiveAccountsService(counting, null, Schedulers.immediate()).getAllAccounts().subscribe(subscriber);
+    assertThat(received).hasSize(1);
+    assertThat(pagesRead).hasValue(1);
+
+    subscriber.request(1000);
+    assertThat(received).hasSize(1001);
+    assertThat(pagesRead).hasValue(2);
+
+    subscriber.request(Long.MAX_VALUE);
+    assertThat(received).hasSize(5000);
+    assertThat(received.get(4999).getAccountId()).isEqualTo("Id-4999");
+  }
+
+  @Test
+  void transfersLeaveTheSubscribingThread() {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    repository.createAccount(new Account("Id-1", BigDecimal.TEN));
+    repository.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    AtomicReference<String> transferThread = new AtomicReference<>();
+    TransferService recording = new TransferService(repository, (account, description) -> { },
+      new AccountLockManager()) {
+      @Override
+      public void transfer(String accountFromId, String accountToId, BigDecimal amount) {
+        transferThread.set(Thread.currentThread().getName());
+        super.transfer(accountFromId, accountToId, amount);
+      }
+    };
+
+    new ReactiveAccountsService(new AccountsService(repository), recording)
+      .transfer("Id-1", "Id-2", BigDecimal.ONE).block();
+
+    // A transfer may block on a lock, so it must not run on an event loop
+    assertThat(transferThread.get()).startsWith("boundedElastic");
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("1");
+  }
+}
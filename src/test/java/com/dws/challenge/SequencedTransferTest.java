@@ -0,0 +1,150 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.exception.UnknownAccountException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.TransferJournal;
+import com.dws.challenge.repository.TransferJournal.FsyncPolicy;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferService;
+import com.dws.challenge.service.TransferService.ConcurrencyMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SequencedTransferTest {
+
+  @TempDir
+  Path journalDir;
+
+  private AccountsRepositoryInMemory accountRepository;
+  private TransferService transferService;
+
+  @BeforeEach
+  void setUp() {
+    useRepository(new AccountsRepositoryInMemory());
+  }
+
+  @AfterEach
+  void shutDown() {
+    transferService.shutdown();
+  }
+
+  @Test
+  void transferMovesBalance() {
+    transferService.transfer("1", "2", new BigDecimal("250"));
+
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("750");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("750");
+  }
+
+  @Test
+  void transferRejectsOverdraftAndUnknownAccount() {
+    assertThatThrownBy(() -> transferService.transfer("2", "1", new BigDecimal("500.01")))
+      .isInstanceOf(TransferException.class)
+      .hasMessage("Insufficient balance in 2 account");
+    assertThatThrownBy(() -> transferService.transfer("1", "404", BigDecimal.ONE))
+      .isInstanceOf(UnknownAccountException.class);
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1000");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("500");
+  }
+
+  @Test
+  void batchesAreAppliedAsOneCommand() {
+    List<TransferResult> results = transferService.transferBatch(
+      List.of(transferRequest("1", "2", "100"), transferRequest("2", "404", "1"), transferRequest("2", "1", "9999")),
+      BatchMode.PER_ITEM);
+    assertThat(results).extracting(TransferResult::isSuccess).containsExactly(true, false, false);
+
+    assertThatThrownBy(() -> transferService.transferBatch(
+        List.of(transferRequest("1", "2", "100"), transferRequest("2", "1", "9999")), BatchMode.ALL_OR_NOTHING))
+      .isInstanceOf(TransferException.class);
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("900");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("600");
+  }
+
+  @Test
+  void reservationsGoThroughTheSequencer() {
+    transferService.reserve("1", "remote", new BigDecimal("400"));
+    assertThatThrownBy(() -> transferService.reserve("1", "remote", new BigDecimal("600.01")))
+      .isInstanceOf(TransferException.class);
+    transferService.releaseReservation("1", new BigDecimal("400"));
+    transferService.credit("remote", "2", new BigDecimal("5"));
+
+    assertThat(accountRepository.getAccount("1").getBalance()).isEqualByComparingTo("1000");
+    assertThat(accountRepository.getAccount("2").getBalance()).isEqualByComparingTo("505");
+  }
+
+  @Test
+  void concurrentTransfersConserveMoney() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 10_000; i++) {
+      boolean forward = i % 2 == 0;
+      executor.submit(() -> {
+        try {
+          transferService.transfer(forward ? "1" : "2", forward ? "2" : "1", new BigDecimal("0.07"));
+        } catch (TransferException ignored) {
+          // Possible if one side runs dry
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    BigDecimal first = accountRepository.getAccount("1").getBalance();
+    BigDecimal second = accountRepository.getAccount("2").getBalance();
+    assertThat(first).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+    assertThat(second).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+    assertThat(first.add(second)).isEqualByComparingTo("1500");
+  }
+
+  @Test
+  void journalStageMakesTransfersDurableInOrder() {
+    transferService.shutdown();
+    TransferJournal journal = new TransferJournal(journalDir, 1 << 20, FsyncPolicy.BATCHED, 1);
+    useRepository(new AccountsRepositoryInMemory(Optional.of(journal)));
+    for (int i = 0; i < 100; i++) {
+      transferService.transfer("1", "2", new BigDecimal("1.50"));
+    }
+    transferService.transferBatch(List.of(transferRequest("2", "1", "50")), BatchMode.ALL_OR_NOTHING);
+    journal.close();
+
+    AccountsRepositoryInMemory restored = new AccountsRepositoryInMemory(
+      Optional.of(new TransferJournal(journalDir, 1 << 20, FsyncPolicy.BATCHED, 1)));
+    assertThat(restored.getAccount("1").getBalance()).isEqualByComparingTo("900");
+    assertThat(restored.getAccount("2").getBalance()).isEqualByComparingTo("600");
+  }
+
+  private void useRepository(AccountsRepositoryInMemory repository) {
+    accountRepository = repository;
+    transferService = new TransferService(accountRepository, (account, description) -> { }, new AccountLockManager(),
+      TransferMetrics.noop(), ConcurrencyMode.SEQUENCED, 1);
+    accountRepository.createAccount(new Account("1", new BigDecimal("1000")));
+    accountRepository.createAccount(new Account("2", new BigDecimal("500")));
+  }
+
+  private static TransferRequest transferRequest(String from, String to, String amount) {
+    TransferRequest request = new TransferRequest();
+    request.setAccountFromId(from);
+    request.setAccountToId(to);
+    request.setAmount(new BigDecimal(amount));
+    return request;
+  }
+}
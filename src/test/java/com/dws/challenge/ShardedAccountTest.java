@@ -0,0 +1,102 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.ShardedAccount;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.TransferService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ShardedAccountTest {
+
+  private AccountsRepositoryInMemory accountRepository;
+  private TransferService transferService;
+
+  @BeforeEach
+  void setUp() {
+    accountRepository = new AccountsRepositoryInMemory(Optional.empty(), Set.of("Id-hot"), 4);
+    transferService = new TransferService(accountRepository, (account, description) -> { },
+        new AccountLockManager());
+    accountRepository.createAccount(new Account("Id-hot", new BigDecimal("100")));
+    accountRepository.createAccount(new Account("Id-1", new BigDecimal("1000")));
+  }
+
+  @Test
+  void onlyFlaggedAccountsAreSharded() {
+    assertThat(accountRepository.getAccount("Id-hot")).isInstanceOf(ShardedAccount.class);
+    assertThat(accountRepository.getAccount("Id-1")).isNotInstanceOf(ShardedAccount.class);
+  }
+
+  @Test
+  void creditsAreSpreadAndBalanceIsAggregated() {
+    ShardedAccount account = new ShardedAccount("Id-2", BigDecimal.ZERO, 8);
+    for (int i = 0; i < 100; i++) {
+      account.credit(BigDecimal.ONE);
+    }
+
+    assertThat(account.getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void debitBorrowsAcrossShards() {
+    ShardedAccount account = new ShardedAccount("Id-2", BigDecimal.ZERO, 8);
+    for (int i = 0; i < 8; i++) {
+      account.credit(new BigDecimal("12.5"));
+    }
+
+    assertThat(account.tryDebit(new BigDecimal("99.5"))).isTrue();
+    assertThat(account.getBalance()).isEqualByComparingTo("0.5");
+    assertThat(account.tryDebit(BigDecimal.ONE)).isFalse();
+    assertThat(account.getBalance()).isEqualByComparingTo("0.5");
+  }
+
+  @Test
+  void transfersInAndOutOfShardedAccount() {
+    transferService.transfer("Id-1", "Id-hot", new BigDecimal("250"));
+    transferService.transfer("Id-hot", "Id-1", new BigDecimal("300"));
+
+    assertThat(accountRepository.getAccount("Id-hot").getBalance()).isEqualByComparingTo("50");
+    assertThat(accountRepository.getAccount("Id-1").getBalance()).isEqualByComparingTo("1050");
+    assertThatThrownBy(() -> transferService.transfer("Id-hot", "Id-1", new BigDecimal("51")))
+        .isInstanceOf(TransferException.class)
+        .hasMessage("Insufficient balance in Id-hot account");
+  }
+
+  @Test
+  void batchAdjustsShardedBalance() {
+    transferService.transferBatch(List.of(
+        transfer("Id-1", "Id-hot", "40"),
+        transfer("Id-hot", "Id-1", "140")), BatchMode.ALL_OR_NOTHING);
+
+    assertThat(accountRepository.getAccount("Id-hot").getBalance()).isEqualByComparingTo("0");
+    assertThat(accountRepository.getAccount("Id-1").getBalance()).isEqualByComparingTo("1100");
+  }
+
+  @Test
+  void serializesAsPlainAccount() throws Exception {
+    String json = new ObjectMapper().writeValueAsString(accountRepository.getAccount("Id-hot"));
+
+    assertThat(json).isEqualTo("{\"accountId\":\"Id-hot\",\"balance\":100}");
+  }
+
+  private static TransferRequest transfer(String from, String to, String amount) {
+    TransferRequest request = new TransferRequest();
+    request.setAccountFromId(from);
+    request.setAccountToId(to);
+    request.setAmount(new BigDecimal(amount));
+    return request;
+  }
+}
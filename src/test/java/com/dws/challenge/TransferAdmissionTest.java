@@ -0,0 +1,147 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.AdaptiveConcurrencyLimit;
+import com.dws.challenge.service.ClusterService;
+import com.dws.challenge.service.StripedRateLimiter;
+import com.dws.challenge.service.TransferAdmission;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.context.WebApplicationContext;
+
+// Rates of one transfer per 100 seconds, so no token comes back while a test runs
+@SpringBootTest(properties = {"transfers.admission.enabled=true",
+  "transfers.admission.client-rate=0.01", "transfers.admission.client-burst=3",
+  "transfers.admission.account-rate=0.01", "transfers.admission.account-burst=2"})
+class TransferAdmissionTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  void setUp() {
+    mockMvc = webAppContextSetup(webApplicationContext).build();
+    accountsService.clearAllAccounts();
+    for (String accountId : new String[] {"A", "B", "C", "D"}) {
+      accountsService.createAccount(new Account(accountId, new BigDecimal("1000")));
+    }
+  }
+
+  @Test
+  void abusiveClientGets429WithoutStarvingOthers() throws Exception {
+    transfer("abuser", "A", "D").andExpect(status().isOk());
+    transfer("abuser", "A", "D").andExpect(status().isOk());
+    transfer("abuser", "A", "D")
+      .andExpect(status().isTooManyRequests())
+      .andExpect(header().exists("Retry-After"))
+      .andExpect(jsonPath("$.message").value("Too many transfers from account A, retry later"));
+    transfer("abuser", "B", "D")
+      .andExpect(status().isTooManyRequests())
+      .andExpect(jsonPath("$.message").value("Too many transfers from client abuser, retry later"));
+
+    transfer("victim", "C", "D").andExpect(status().isOk());
+    assertThat(accountsService.getAccount("A").getBalance()).isEqualByComparingTo("998");
+    assertThat(accountsService.getAccount("B").getBalance()).isEqualByComparingTo("1000");
+    assertThat(accountsService.getAccount("D").getBalance()).isEqualByComparingTo("1003");
+  }
+
+  @Test
+  void forwardedHeaderDoesNotBypassRates() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      transfer("spoofer", "B", "D").andExpect(status().isOk());
+    }
+    mockMvc.perform(post("/v1/accounts/transfer")
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(TransferAdmission.CLIENT_ID_HEADER, "spoofer")
+        .header(ClusterService.FORWARDED_HEADER, "http://peer")
+        .content("{\"accountFromId\":\"B\",\"accountToId\":\"D\",\"amount\":1}"))
+      .andExpect(status().isTooManyRequests());
+    assertThat(accountsService.getAccount("B").getBalance()).isEqualByComparingTo("998");
+  }
+
+  @Test
+  void bucketAdmitsBurstThenRefillsAtRate() {
+    StripedRateLimiter limiter = new StripedRateLimiter(16, 10, 3);
+    long now = -5 * SECOND;
+    for (int i = 0; i < 3; i++) {
+      assertThat(limiter.tryAcquire("key", now)).isZero();
+    }
+    assertThat(limiter.tryAcquire("key", now)).isEqualTo(SECOND / 10);
+    assertThat(limiter.tryAcquire("other", now)).isZero();
+
+    assertThat(limiter.tryAcquire("key", now + SECOND / 10)).isZero();
+    assertThat(limiter.tryAcquire("key", now + SECOND / 10)).isPositive();
+    // A long pause refills the bucket only up to its burst
+    long later = now + 60 * SECOND;
+    for (int i = 0; i < 3; i++) {
+      assertThat(limiter.tryAcquire("key", later)).isZero();
+    }
+    assertThat(limiter.tryAcquire("key", later)).isPositive();
+  }
+
+  @Test
+  void concurrencyLimitBacksOffOnSlowTransfersAndGrowsOnFastOnes() {
+    long target = TimeUnit.MILLISECONDS.toNanos(20);
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 8, target, 0.5);
+    for (int i = 0; i < 4; i++) {
+      assertThat(limit.tryAcquire()).isTrue();
+    }
+    assertThat(limit.tryAcquire()).isFalse();
+
+    // Slow transfers finishing together cut the limit once, not once each
+    long now = SECOND;
+    for (int i = 0; i < 4; i++) {
+      limit.release(2 * target, now);
+    }
+    assertThat(limit.limit()).isEqualTo(2);
+    assertThat(limit.inFlight()).isZero();
+    limit.tryAcquire();
+    limit.release(2 * target, now + target);
+    assertThat(limit.limit()).isEqualTo(1);
+    limit.tryAcquire();
+
+    // A fast transfer at a fully used limit earns 1/limit
+    limit.release(target / 2, now + 2 * target);
+    assertThat(limit.limit()).isEqualTo(2);
+    for (int i = 0; i < 100; i++) {
+      int acquired = 0;
+      while (limit.tryAcquire()) {
+        acquired++;
+      }
+      for (int j = 0; j < acquired; j++) {
+        limit.release(target / 2, now);
+      }
+    }
+    assertThat(limit.limit()).isEqualTo(8);
+  }
+
+  private ResultActions transfer(String clientId, String from, String to) throws Exception {
+    return mockMvc.perform(post("/v1/accounts/transfer")
+      .contentType(MediaType.APPLICATION_JSON)
+      .header(TransferAdmission.CLIENT_ID_HEADER, clientId)
+      .content("{\"accountFromId\":\"" + from + "\",\"accountToId\":\"" + to + "\",\"amount\":1}"));
+  }
+}
@@ -8,17 +8,21 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.InternedAccountsRepository;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.IdempotencyService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -32,7 +36,7 @@ import static org.mockito.Mockito.*;
 
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest
+@SpringBootTest(properties = "transfers.batch.max-size=3")
 @WebAppConfiguration
 public class TransferAmountTests {
 
@@ -45,6 +49,9 @@ public class TransferAmountTests {
     @Autowired
     private AccountsService accountsService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @Autowired
     private WebApplicationContext webApplicationContext;
 
@@ -58,17 +65,25 @@ public class TransferAmountTests {
         // Mock repository behavior for fetching accounts
         when(accountRepository.getAccount("1")).thenReturn(account1);
         when(accountRepository.getAccount("2")).thenReturn(account2);
+        // Transfers look accounts up by handle once they have resolved the ids
+        when(accountRepository.handleOf(anyString())).thenReturn(InternedAccountsRepository.NO_HANDLE);
+        when(accountRepository.handleOf("1")).thenReturn(0);
+        when(accountRepository.handleOf("2")).thenReturn(1);
+        when(accountRepository.getAccount(0)).thenReturn(account1);
+        when(accountRepository.getAccount(1)).thenReturn(account2);
 
         // Mock repository behavior for saving updated accounts
-        doAnswer(invocation -> {
-            Account account = invocation.getArgument(0);
+        Answer<Void> save = invocation -> {
+            Account account = invocation.getArgument(invocation.getArguments().length - 1);
             if (account.getAccountId().equals("1")) {
                 account1.setBalance(account.getBalance());
             } else if (account.getAccountId().equals("2")) {
                 account2.setBalance(account.getBalance());
             }
             return null;
-        }).when(accountRepository).updateAccount(any(Account.class));
+        };
+        doAnswer(save).when(accountRepository).updateAccount(any(Account.class));
+        doAnswer(save).when(accountRepository).updateAccount(anyInt(), any(Account.class));
     }
 
 
@@ -196,12 +211,111 @@ public class TransferAmountTests {
         Assertions.assertEquals(expectedFinalBalanceTo, accountTo.getBalance(), "Final balance of accountTo is incorrect");
     }
 
+    @Test
+    void transferBatch_PerItemReportsEachOutcome() throws Exception {
+        mockMvc.perform(post("/v1/accounts/transfer/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mode\": \"PER_ITEM\", \"transfers\": ["
+                                + "{\"accountFromId\": \"1\", \"accountToId\": \"2\", \"amount\": 100},"
+                                + "{\"accountFromId\": \"2\", \"accountToId\": \"1\", \"amount\": 5000},"
+                                + "{\"accountFromId\": \"1\", \"accountToId\": \"99\", \"amount\": 10}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Batch processed: 1 succeeded, 2 failed"))
+                .andExpect(jsonPath("$.data[0].success").value(true))
+                .andExpect(jsonPath("$.data[1].message").value("Insufficient balance in 2 account"))
+                .andExpect(jsonPath("$.data[2].message").value("Account number 99 not found"));
+
+        Assertions.assertEquals(new BigDecimal(900), accountRepository.getAccount("1").getBalance());
+        Assertions.assertEquals(new BigDecimal(600), accountRepository.getAccount("2").getBalance());
+    }
+
+    @Test
+    void transferBatch_AllOrNothingRollsBackOnFailure() throws Exception {
+        mockMvc.perform(post("/v1/accounts/transfer/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mode\": \"ALL_OR_NOTHING\", \"transfers\": ["
+                                + "{\"accountFromId\": \"1\", \"accountToId\": \"2\", \"amount\": 100},"
+                                + "{\"accountFromId\": \"2\", \"accountToId\": \"1\", \"amount\": 5000}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Transfer 1 rejected: Insufficient balance in 2 account"));
+
+        Assertions.assertEquals(new BigDecimal(1000), accountRepository.getAccount("1").getBalance());
+        Assertions.assertEquals(new BigDecimal(500), accountRepository.getAccount("2").getBalance());
+    }
+
+    @Test
+    void transferBatch_RejectsBatchOverMaxSize() throws Exception {
+        String transfer = "{\"accountFromId\": \"1\", \"accountToId\": \"2\", \"amount\": 1}";
+        mockMvc.perform(post("/v1/accounts/transfer/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mode\": \"ALL_OR_NOTHING\", \"transfers\": ["
+                                + String.join(",", transfer, transfer, transfer, transfer) + "]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("A batch holds at most 3 transfers, got 4"));
 
+        Assertions.assertEquals(new BigDecimal(1000), accountRepository.getAccount("1").getBalance());
+    }
 
+    @Test
+    void transferBatch_AppliesItemsInSequence() throws Exception {
+        // The second transfer is only covered by the first one
+        mockMvc.perform(post("/v1/accounts/transfer/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mode\": \"ALL_OR_NOTHING\", \"transfers\": ["
+                                + "{\"accountFromId\": \"1\", \"accountToId\": \"2\", \"amount\": 1000},"
+                                + "{\"accountFromId\": \"2\", \"accountToId\": \"1\", \"amount\": 1500}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Batch processed: 2 succeeded, 0 failed"));
 
+        Assertions.assertEquals(new BigDecimal(1500), accountRepository.getAccount("1").getBalance());
+        Assertions.assertEquals(BigDecimal.ZERO, accountRepository.getAccount("2").getBalance());
+    }
 
+    @Test
+    void transferMoney_IdempotencyKeyReplaysOutcome() throws Exception {
+        String key = "retry-" + System.nanoTime();
+        long hits = idempotencyService.getHitCount();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            mockMvc.perform(post("/v1/accounts/transfer")
+                            .header("Idempotency-Key", key)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"accountFromId\": \"1\", \"accountToId\": \"2\", \"amount\": 100}"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.message").value("Transfer successful"));
+        }
 
+        // Applied once; the two retries were served from the cache
+        Assertions.assertEquals(new BigDecimal(900), accountRepository.getAccount("1").getBalance());
+        Assertions.assertEquals(hits + 2, idempotencyService.getHitCount());
+    }
 
+    @Test
+    void transferMoney_IdempotencyKeyReusedForDifferentRequest() throws Exception {
+        String key = "reuse-" + System.nanoTime();
+        mockMvc.perform(post("/v1/accounts/transfer")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accountFromId\": \"1\", \"accountToId\": \"2\", \"amount\": 100}"))
+                .andExpect(status().isOk());
 
+        mockMvc.perform(post("/v1/accounts/transfer")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accountFromId\": \"1\", \"accountToId\": \"2\", \"amount\": 200}"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.statusCode").value(422));
+    }
 
+    @Test
+    void idempotencyKeyIsForgottenWhenTheActionThrowsAnError() {
+        String key = "error-" + System.nanoTime();
+        Assertions.assertThrows(StackOverflowError.class, () -> idempotencyService.execute(key, "transfer", () -> {
+            throw new StackOverflowError();
+        }));
+
+        // The retry runs again instead of waiting forever on the first attempt's outcome
+        String result = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> idempotencyService.execute(key, "transfer", () -> "retried"));
+        Assertions.assertEquals("retried", result);
+    }
 }
@@ -0,0 +1,289 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ShardedAccount;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.repository.AccountsRepositoryFixedPoint;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferService;
+import com.dws.challenge.service.TransferService.ConcurrencyMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stress tests for per-account locking. Each test reports its throughput so lock contention
+ * regressions show up in the build log, and checks that no money is created or lost.
+ */
+class TransferContentionTests {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferContentionTests.class);
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int TRANSFERS_PER_THREAD = 20_000;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000);
+
+    private AccountsRepositoryInMemory accountRepository;
+    private AccountLockManager lockManager;
+    private TransferService transferService;
+
+    @BeforeEach
+    void setUp() {
+        useRepository(new AccountsRepositoryInMemory());
+    }
+
+    private void useRepository(AccountsRepositoryInMemory repository) {
+        useRepository(repository, ConcurrencyMode.LOCKING);
+    }
+
+    private void useRepository(AccountsRepositoryInMemory repository, ConcurrencyMode mode) {
+        accountRepository = repository;
+        lockManager = new AccountLockManager();
+        transferService = new TransferService(accountRepository, (account, description) -> { },
+                lockManager, TransferMetrics.noop(), mode, Integer.MAX_VALUE);
+        for (int i = 0; i < THREADS * 2; i++) {
+            accountRepository.createAccount(new Account("acc-" + i, INITIAL_BALANCE));
+        }
+    }
+
+    @Test
+    void disjointTransfers_runInParallel() throws Exception {
+        // Thread t only ever moves money between its own pair of accounts
+        double throughput = runConcurrently(t -> {
+            String from = "acc-" + (2 * t);
+            String to = "acc-" + (2 * t + 1);
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                if (i % 2 == 0) {
+                    transferService.transfer(from, to, BigDecimal.ONE);
+                } else {
+                    transferService.transfer(to, from, BigDecimal.ONE);
+                }
+            }
+        });
+        log.info("Disjoint transfers: {} threads, {} transfers/s", THREADS, String.format("%.0f", throughput));
+
+        assertTotalBalanceConserved();
+        for (int i = 0; i < THREADS * 2; i++) {
+            assertThat(accountRepository.getAccount("acc-" + i).getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+        }
+    }
+
+    @Test
+    void hotAccountTransfers_stayConsistent() throws Exception {
+        // Every thread credits the same hot account and debits it back in the opposite direction
+        double throughput = runConcurrently(t -> {
+            String hot = "acc-0";
+            String other = "acc-" + (t + 1);
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                if (i % 2 == 0) {
+                    transferService.transfer(other, hot, BigDecimal.ONE);
+                } else {
+                    transferService.transfer(hot, other, BigDecimal.ONE);
+                }
+            }
+        });
+        log.info("Hot-account transfers: {} threads, {} transfers/s", THREADS, String.format("%.0f", throughput));
+
+        assertTotalBalanceConserved();
+        assertThat(accountRepository.getAccount("acc-0").getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+    }
+
+    @Test
+    void shardedHotAccountTransfers_stayConsistent() throws Exception {
+        useRepository(new AccountsRepositoryInMemory(Optional.empty(), Set.of("acc-0"), THREADS));
+        assertThat(accountRepository.getAccount("acc-0")).isInstanceOf(ShardedAccount.class);
+
+        // Same traffic as the hot-account test, but credits to acc-0 no longer take its lock
+        double throughput = runConcurrently(t -> {
+            String hot = "acc-0";
+            String other = "acc-" + (t + 1);
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                if (i % 2 == 0) {
+                    transferService.transfer(other, hot, BigDecimal.ONE);
+                } else {
+                    transferService.transfer(hot, other, BigDecimal.ONE);
+                }
+            }
+        });
+        log.info("Sharded hot-account transfers: {} threads, {} transfers/s", THREADS, String.format("%.0f", throughput));
+
+        assertTotalBalanceConserved();
+        assertThat(accountRepository.getAccount("acc-0").getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+    }
+
+    @Test
+    void optimisticHotAccountTransfers_stayConsistent() throws Exception {
+        useRepository(new AccountsRepositoryInMemory(), ConcurrencyMode.OPTIMISTIC);
+
+        // Same traffic as the hot-account test, committed by versioned compare-and-swap
+        double throughput = runConcurrently(t -> {
+            String hot = "acc-0";
+            String other = "acc-" + (t + 1);
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                if (i % 2 == 0) {
+                    transferService.transfer(other, hot, BigDecimal.ONE);
+                } else {
+                    transferService.transfer(hot, other, BigDecimal.ONE);
+                }
+            }
+        });
+        log.info("Optimistic hot-account transfers: {} threads, {} transfers/s", THREADS, String.format("%.0f", throughput));
+
+        assertTotalBalanceConserved();
+        assertThat(accountRepository.getAccount("acc-0").getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+    }
+
+    @Test
+    void sequencedHotAccountTransfers_stayConsistent() throws Exception {
+        useRepository(new AccountsRepositoryInMemory(), ConcurrencyMode.SEQUENCED);
+
+        // Same traffic as the hot-account test, applied by the sequencer's single processor thread
+        try {
+            double throughput = runConcurrently(t -> {
+                String hot = "acc-0";
+                String other = "acc-" + (t + 1);
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    if (i % 2 == 0) {
+                        transferService.transfer(other, hot, BigDecimal.ONE);
+                    } else {
+                        transferService.transfer(hot, other, BigDecimal.ONE);
+                    }
+                }
+            });
+            log.info("Sequenced hot-account transfers: {} threads, {} transfers/s", THREADS, String.format("%.0f", throughput));
+        } finally {
+            transferService.shutdown();
+        }
+
+        assertTotalBalanceConserved();
+        assertThat(accountRepository.getAccount("acc-0").getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+    }
+
+    @Test
+    void doomedTransfers_areRejectedWithoutWaitingForTheLock() throws Exception {
+        accountRepository.createAccount(new Account("empty", BigDecimal.ZERO));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService holder = Executors.newSingleThreadExecutor();
+        holder.submit(() -> {
+            Lock lock = lockManager.lockFor(accountRepository.handleOf("empty"));
+            lock.lock();
+            try {
+                locked.countDown();
+                release.await();
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        });
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            TransferException rejection = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> assertThrows(TransferException.class,
+                            () -> transferService.transfer("empty", "acc-0", BigDecimal.ONE)));
+            assertThat(rejection).hasMessage("Insufficient balance in empty account");
+            assertThat(rejection.getStackTrace()).isEmpty();
+        } finally {
+            release.countDown();
+            holder.shutdown();
+        }
+    }
+
+    @Test
+    void idLocksAreStripedAndTakenInStripeOrder() throws Exception {
+        AccountLockManager locks = new AccountLockManager();
+        // A pair whose stripes are in the opposite order to their ids, and a pair sharing a stripe
+        String low = "a-0";
+        String high = null;
+        String sameStripe = null;
+        for (int i = 0; high == null || sameStripe == null; i++) {
+            String candidate = "b-" + i;
+            if (high == null && locks.stripeOf(candidate) < locks.stripeOf(low)) {
+                high = candidate;
+            }
+            if (sameStripe == null && locks.stripeOf(candidate) == locks.stripeOf(low)) {
+                sameStripe = candidate;
+            }
+        }
+        assertThat(locks.lockFor(sameStripe)).isSameAs(locks.lockFor(low));
+        List<Lock> held = locks.lockAll(List.of(low, sameStripe));
+        assertThat(held).hasSize(1);
+        locks.unlockAll(held);
+
+        AccountsRepositoryFixedPoint repository = new AccountsRepositoryFixedPoint(2, Optional.empty());
+        TransferService idLocked = new TransferService(repository, (account, description) -> { }, locks);
+        repository.createAccount(new Account(low, INITIAL_BALANCE));
+        repository.createAccount(new Account(high, INITIAL_BALANCE));
+        String from = low;
+        String to = high;
+        // Opposite-direction transfers between the pair would deadlock if locks followed id order
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> runConcurrently(t -> {
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                if (t % 2 == 0) {
+                    idLocked.transfer(from, to, BigDecimal.ONE);
+                } else {
+                    idLocked.transfer(to, from, BigDecimal.ONE);
+                }
+            }
+        }));
+        assertThat(repository.getAccount(low).getBalance().add(repository.getAccount(high).getBalance()))
+                .isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.TWO));
+    }
+
+    private double runConcurrently(ThreadBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                body.run(thread);
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        return (double) THREADS * TRANSFERS_PER_THREAD / elapsed * TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private void assertTotalBalanceConserved() {
+        BigDecimal total = accountRepository.getAllAccounts().stream()
+                .map(Account::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(total).isEqualByComparingTo(INITIAL_BALANCE.multiply(new BigDecimal(THREADS * 2)));
+    }
+
+    @FunctionalInterface
+    private interface ThreadBody {
+        void run(int thread) throws Exception;
+    }
+}
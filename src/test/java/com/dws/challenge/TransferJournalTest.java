@@ -0,0 +1,279 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryFixedPoint;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.AccountsRepositoryOffHeap;
+import com.dws.challenge.repository.JournalSnapshotter;
+import com.dws.challenge.repository.JournalSnapshotter.SnapshotStats;
+import com.dws.challenge.repository.TransferJournal;
+import com.dws.challenge.repository.TransferJournal.FsyncPolicy;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.TransferService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TransferJournalTest {
+
+  @TempDir
+  Path journalDir;
+
+  @Test
+  void replaysAccountsAndTransfersAfterRestart() {
+    TransferJournal journal = openJournal(1 << 20, FsyncPolicy.PER_WRITE);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(Optional.of(journal));
+    TransferService transferService = transferService(repository);
+    repository.createAccount(new Account("1", new BigDecimal("1000.25")));
+    repository.createAccount(new Account("2", new BigDecimal("500")));
+    transferService.transfer("1", "2", new BigDecimal("100.25"));
+    transferService.transfer("2", "1", new BigDecimal("50"));
+    journal.close();
+
+    AccountsRepositoryInMemory restored = new AccountsRepositoryInMemory(Optional.of(openJournal(1 << 20, FsyncPolicy.PER_WRITE)));
+    assertThat(restored.getAccount("1").getBalance()).isEqualByComparingTo("950");
+    assertThat(restored.getAccount("2").getBalance()).isEqualByComparingTo("550.25");
+  }
+
+  @Test
+  void rollsOverSegments() throws IOException {
+    TransferJournal journal = openJournal(256, FsyncPolicy.BATCHED);
+    AccountsRepositoryFixedPoint repository = new AccountsRepositoryFixedPoint(2, Optional.of(journal));
+    TransferService transferService = transferService(repository);
+    repository.createAccount(new Account("1", new BigDecimal("1000")));
+    repository.createAccount(new Account("2", new BigDecimal("0")));
+    for (int i = 0; i < 100; i++) {
+      transferService.transfer("1", "2", new BigDecimal("0.10"));
+    }
+    journal.close();
+
+    assertThat(segments()).hasSizeGreaterThan(1);
+    AccountsRepositoryFixedPoint restored = new AccountsRepositoryFixedPoint(2, Optional.of(openJournal(256, FsyncPolicy.BATCHED)));
+    assertThat(restored.getAccount("1").getBalance()).isEqualByComparingTo("990");
+    assertThat(restored.getAccount("2").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  void snapshotCompactsSealedSegments() throws IOException {
+    TransferJournal journal = openJournal(256, FsyncPolicy.OS);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(Optional.of(journal));
+    TransferService transferService = transferService(repository);
+    repository.createAccount(new Account("1", new BigDecimal("1000")));
+    repository.createAccount(new Account("2", new BigDecimal("0")));
+    for (int i = 0; i < 50; i++) {
+      transferService.transfer("1", "2", BigDecimal.ONE);
+    }
+
+    JournalSnapshotter snapshotter = new JournalSnapshotter(journal, 60_000);
+    SnapshotStats stats = snapshotter.snapshot().orElseThrow();
+    assertThat(stats.accounts()).isEqualTo(2);
+    assertThat(snapshotter.snapshot()).isEmpty();  // Nothing sealed since
+
+    // Tail records written after the snapshot are replayed on top of it
+    for (int i = 0; i < 50; i++) {
+      transferService.transfer("1", "2", BigDecimal.ONE);
+    }
+    snapshotter.snapshot();
+    transferService.transfer("2", "1", new BigDecimal("0.5"));
+    journal.close();
+
+    assertThat(segments()).filteredOn(path -> path.toString().endsWith(".snap")).hasSize(1);
+    assertThat(segments()).filteredOn(path -> path.toString().endsWith(".seg"))
+      .allMatch(path -> !path.getFileName().toString().endsWith("00000000000000000000.seg"));
+    AccountsRepositoryInMemory restored = new AccountsRepositoryInMemory(Optional.of(openJournal(256, FsyncPolicy.OS)));
+    assertThat(restored.getAccount("1").getBalance()).isEqualByComparingTo("900.5");
+    assertThat(restored.getAccount("2").getBalance()).isEqualByComparingTo("99.5");
+  }
+
+  @Test
+  void snapshotKeepsBalancesWithLongUnscaledValues() throws IOException {
+    TransferJournal journal = openJournal(1024, FsyncPolicy.OS);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(Optional.of(journal));
+    TransferService transferService = transferService(repository);
+    BigDecimal large = new BigDecimal("9".repeat(700) + ".25");
+    assertThat(large.unscaledValue().toByteArray().length).isGreaterThan(255);
+    repository.createAccount(new Account("1", large));
+    repository.createAccount(new Account("2", new BigDecimal("1000")));
+    repository.createAccount(new Account("3", new BigDecimal("0")));
+    for (int i = 0; i < 50; i++) {
+      transferService.transfer("2", "3", BigDecimal.ONE);
+    }
+    new JournalSnapshotter(journal, 60_000).snapshot().orElseThrow();
+    journal.close();
+
+    AccountsRepositoryInMemory restored = new AccountsRepositoryInMemory(Optional.of(openJournal(1024, FsyncPolicy.OS)));
+    assertThat(restored.getAccount("1").getBalance()).isEqualByComparingTo(large);
+    assertThat(restored.getAccount("2").getBalance()).isEqualByComparingTo("950");
+    assertThat(restored.getAccount("3").getBalance()).isEqualByComparingTo("50");
+  }
+
+  @Test
+  void corruptSnapshotFailsReplayBeforeLoadingAnyAccount() throws IOException {
+    TransferJournal journal = openJournal(256, FsyncPolicy.OS);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(Optional.of(journal));
+    TransferService transferService = transferService(repository);
+    for (int i = 0; i < 20; i++) {
+      repository.createAccount(new Account(String.valueOf(i), new BigDecimal("1000")));
+    }
+    for (int i = 0; i < 20; i++) {
+      transferService.transfer("0", "1", BigDecimal.ONE);
+    }
+    new JournalSnapshotter(journal, 60_000).snapshot().orElseThrow();
+    journal.close();
+
+    Path snapshot = segments().stream().filter(path -> path.toString().endsWith(".snap")).findFirst().orElseThrow();
+    try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+      file.seek(file.length() - 20);
+      file.write(0x7F);
+    }
+
+    List<String> loaded = new ArrayList<>();
+    TransferJournal reopened = openJournal(256, FsyncPolicy.OS);
+    assertThatThrownBy(() -> reopened.replay(new TransferJournal.Visitor() {
+      @Override
+      public void accountCreated(String accountId, BigDecimal balance) {
+        loaded.add(accountId);
+      }
+
+      @Override
+      public void transfer(String accountFromId, String accountToId, BigDecimal amount) {
+        loaded.add(accountFromId);
+      }
+
+      @Override
+      public void accountsCleared() {
+      }
+    })).isInstanceOf(UncheckedIOException.class).hasRootCauseMessage("Checksum mismatch in snapshot " + snapshot);
+    assertThat(loaded).isEmpty();
+  }
+
+  @Test
+  void ignoresTornRecordAtTail() throws IOException {
+    TransferJournal journal = openJournal(1 << 16, FsyncPolicy.OS);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(Optional.of(journal));
+    repository.createAccount(new Account("1", new BigDecimal("10")));
+    long endOfFirst = journal.getWrittenPosition();
+    repository.createAccount(new Account("2", new BigDecimal("20")));
+    journal.close();
+
+    // Corrupt the payload of the second record, as if the process died mid-write
+    try (RandomAccessFile file = new RandomAccessFile(segments().get(0).toFile(), "rw")) {
+      file.seek(endOfFirst + 10);
+      file.write(0x7F);
+    }
+
+    TransferJournal reopened = openJournal(1 << 16, FsyncPolicy.OS);
+    AccountsRepositoryInMemory restored = new AccountsRepositoryInMemory(Optional.of(reopened));
+    assertThat(restored.getAccount("1")).isNotNull();
+    assertThat(restored.getAccount("2")).isNull();
+
+    // New records overwrite the torn one and survive the next restart
+    restored.createAccount(new Account("3", new BigDecimal("30")));
+    reopened.close();
+    AccountsRepositoryInMemory again = new AccountsRepositoryInMemory(Optional.of(openJournal(1 << 16, FsyncPolicy.OS)));
+    assertThat(again.getAllAccounts()).extracting(Account::getAccountId).containsExactlyInAnyOrder("1", "3");
+  }
+
+  @Test
+  void corruptionMidJournalDropsLaterSegments() throws IOException {
+    TransferJournal journal = openJournal(256, FsyncPolicy.OS);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(Optional.of(journal));
+    TransferService transferService = transferService(repository);
+    repository.createAccount(new Account("1", new BigDecimal("1000")));
+    repository.createAccount(new Account("2", new BigDecimal("0")));
+    for (int i = 0; i < 30; i++) {
+      transferService.transfer("1", "2", BigDecimal.ONE);
+    }
+    journal.close();
+    assertThat(segments()).hasSizeGreaterThan(2);
+
+    // Corrupt a record in the middle of the first segment
+    try (RandomAccessFile file = new RandomAccessFile(segments().get(0).toFile(), "rw")) {
+      file.seek(150);
+      file.write(file.read() ^ 0x7F);
+    }
+
+    TransferJournal reopened = openJournal(256, FsyncPolicy.OS);
+    AccountsRepositoryInMemory restored = new AccountsRepositoryInMemory(Optional.of(reopened));
+    assertThat(segments()).hasSize(1);
+    BigDecimal recovered = restored.getAccount("2").getBalance();
+    assertThat(recovered).isLessThan(new BigDecimal("30"));
+
+    // Records appended after recovery are the only ones that follow it on the next restart
+    for (int i = 0; i < 30; i++) {
+      transferService(restored).transfer("2", "1", new BigDecimal("0.01"));
+    }
+    reopened.close();
+    AccountsRepositoryInMemory again = new AccountsRepositoryInMemory(Optional.of(openJournal(256, FsyncPolicy.OS)));
+    assertThat(again.getAccount("2").getBalance()).isEqualByComparingTo(recovered.subtract(new BigDecimal("0.30")));
+  }
+
+  @Test
+  void journalsLongIdsAndRejectsOversizedOnes() {
+    TransferJournal journal = openJournal(1 << 20, FsyncPolicy.OS);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(Optional.of(journal));
+    String longId = "x".repeat(40_000);
+    repository.createAccount(new Account(longId, new BigDecimal("10")));
+    assertThatThrownBy(() -> repository.createAccount(new Account("y".repeat(70_000), BigDecimal.ONE)))
+      .isInstanceOf(IllegalArgumentException.class);
+    journal.close();
+
+    AccountsRepositoryInMemory restored = new AccountsRepositoryInMemory(Optional.of(openJournal(1 << 20, FsyncPolicy.OS)));
+    assertThat(restored.getAllAccounts()).extracting(Account::getAccountId).containsExactly(longId);
+  }
+
+  @Test
+  void replaySkipsTransfersJournaledAfterTheirAccountsWereCleared() {
+    TransferJournal journal = openJournal(1 << 16, FsyncPolicy.OS);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(Optional.of(journal));
+    repository.createAccount(new Account("1", new BigDecimal("100")));
+    repository.createAccount(new Account("2", new BigDecimal("0")));
+    repository.clearAccounts();
+    // Transfers that were in flight while the accounts were cleared
+    journal.appendTransfer("1", "2", new BigDecimal("30"));
+    journal.appendAccountCreated("1", new BigDecimal("5"));
+    journal.appendTransfer("1", "2", new BigDecimal("1"));
+    journal.close();
+
+    List<Function<TransferJournal, AccountsRepository>> repositories = List.of(
+      reopened -> new AccountsRepositoryInMemory(Optional.of(reopened)),
+      reopened -> new AccountsRepositoryFixedPoint(2, Optional.of(reopened)),
+      reopened -> new AccountsRepositoryOffHeap(2, 1 << 16, Optional.of(reopened)));
+    for (Function<TransferJournal, AccountsRepository> restore : repositories) {
+      TransferJournal reopened = openJournal(1 << 16, FsyncPolicy.OS);
+      AccountsRepository restored = restore.apply(reopened);
+      assertThat(restored.getAllAccounts()).extracting(Account::getAccountId).containsExactly("1");
+      assertThat(restored.getAccount("1").getBalance()).isEqualByComparingTo("5");
+      reopened.close();
+    }
+  }
+
+  private TransferJournal openJournal(int segmentSize, FsyncPolicy fsyncPolicy) {
+    return new TransferJournal(journalDir, segmentSize, fsyncPolicy, 1);
+  }
+
+  private static TransferService transferService(AccountsRepository repository) {
+    return new TransferService(repository, (account, description) -> { }, new AccountLockManager());
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(journalDir)) {
+      return files.sorted().toList();
+    }
+  }
+}
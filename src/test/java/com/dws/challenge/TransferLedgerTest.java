@@ -0,0 +1,150 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.LedgerEntry;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferService;
+import com.dws.challenge.service.TransferService.ConcurrencyMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TransferLedgerTest {
+
+  private final AtomicLong now = new AtomicLong(1_000);
+  private TransferLedger ledger;
+
+  @BeforeEach
+  void setUp() {
+    ledger = new TransferLedger(true, 1 << 20, new Clock() {
+      @Override
+      public ZoneId getZone() {
+        return ZoneId.of("UTC");
+      }
+
+      @Override
+      public Clock withZone(ZoneId zone) {
+        return this;
+      }
+
+      @Override
+      public Instant instant() {
+        return Instant.ofEpochMilli(now.get());
+      }
+    });
+  }
+
+  @Test
+  void returnsOnlyPostingsOfTheAccount() {
+    ledger.record("A", "B", new BigDecimal("1.50"));
+    ledger.record("C", "D", BigDecimal.TEN);
+    ledger.record("B", "C", new BigDecimal("0.25"));
+
+    List<LedgerEntry> entries = ledger.entriesFor("B", Long.MIN_VALUE, Long.MAX_VALUE, -1, 10);
+
+    assertThat(entries).extracting(LedgerEntry::getSequence).containsExactly(0L, 2L);
+    assertThat(entries.get(0).getAccountFromId()).isEqualTo("A");
+    assertThat(entries.get(0).getAmount()).isEqualByComparingTo("1.50");
+    assertThat(entries.get(1).getAccountToId()).isEqualTo("C");
+    assertThat(ledger.entriesFor("missing", Long.MIN_VALUE, Long.MAX_VALUE, -1, 10)).isEmpty();
+  }
+
+  @Test
+  void filtersByTimeRangeAndCursor() {
+    for (int i = 0; i < 10; i++) {
+      now.set(1_000 + i * 100L);
+      ledger.record("A", "B", BigDecimal.valueOf(i + 1));
+    }
+
+    // [1300, 1700) holds the entries recorded at 1300..1600
+    List<LedgerEntry> range = ledger.entriesFor("A", 1_300, 1_700, -1, 100);
+    assertThat(range).extracting(LedgerEntry::getSequence).containsExactly(3L, 4L, 5L, 6L);
+
+    List<LedgerEntry> page = ledger.entriesFor("A", 1_300, 1_700, 4, 2);
+    assertThat(page).extracting(LedgerEntry::getSequence).containsExactly(5L, 6L);
+    assertThat(page.get(0).getTimestamp()).isEqualTo(Instant.ofEpochMilli(1_500));
+  }
+
+  @Test
+  void timestampsNeverGoBackwards() {
+    now.set(5_000);
+    ledger.record("A", "B", BigDecimal.ONE);
+    now.set(4_000);
+    ledger.record("A", "B", BigDecimal.ONE);
+
+    List<LedgerEntry> entries = ledger.entriesFor("A", 4_500, Long.MAX_VALUE, -1, 10);
+    assertThat(entries).hasSize(2);
+    assertThat(entries.get(1).getTimestamp()).isEqualTo(Instant.ofEpochMilli(5_000));
+  }
+
+  @Test
+  void keepsAmountsThatDoNotFitALong() {
+    BigDecimal huge = new BigDecimal("123456789012345678901234567890.12");
+    ledger.record("A", "B", huge);
+
+    assertThat(ledger.entriesFor("B", Long.MIN_VALUE, Long.MAX_VALUE, -1, 1).get(0).getAmount())
+      .isEqualByComparingTo(huge);
+  }
+
+  @Test
+  void spansChunks() {
+    for (int i = 0; i < 10_000; i++) {
+      ledger.record(i % 2 == 0 ? "A" : "B", "C", BigDecimal.ONE);
+    }
+
+    assertThat(ledger.size()).isEqualTo(10_000);
+    List<LedgerEntry> tail = ledger.entriesFor("B", Long.MIN_VALUE, Long.MAX_VALUE, 9_000, 1_000);
+    assertThat(tail).hasSize(500);
+    assertThat(tail.get(0).getSequence()).isEqualTo(9_001);
+  }
+
+  @Test
+  void keepsOnlyTheRetainedEntries() {
+    TransferLedger bounded = new TransferLedger(true, 4096, Clock.systemUTC());
+    for (int i = 0; i < 10_000; i++) {
+      bounded.record(i % 2 == 0 ? "A" : "B", "C", BigDecimal.valueOf(i));
+    }
+
+    assertThat(bounded.size()).isEqualTo(10_000);
+    List<LedgerEntry> entries = bounded.entriesFor("C", Long.MIN_VALUE, Long.MAX_VALUE, -1, 10_000);
+    assertThat(entries).hasSize(4096);
+    assertThat(entries.get(0).getSequence()).isEqualTo(10_000 - 4096);
+    assertThat(entries.get(0).getAmount()).isEqualByComparingTo(BigDecimal.valueOf(10_000 - 4096));
+    assertThat(bounded.entriesFor("A", Long.MIN_VALUE, Long.MAX_VALUE, -1, 10_000)).hasSize(2048);
+  }
+
+  @Test
+  void recordsEveryCommittedTransfer() throws Exception {
+    AccountsRepositoryInMemory accountRepository = new AccountsRepositoryInMemory();
+    accountRepository.createAccount(new Account("1", new BigDecimal("1000")));
+    accountRepository.createAccount(new Account("2", new BigDecimal("1000")));
+    TransferService transferService = new TransferService(accountRepository, (account, description) -> { },
+      new AccountLockManager(), TransferMetrics.noop(), ConcurrencyMode.LOCKING, 100, ledger);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 2_000; i++) {
+      boolean forward = i % 2 == 0;
+      executor.submit(() -> transferService.transfer(forward ? "1" : "2", forward ? "2" : "1", BigDecimal.ONE));
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    List<LedgerEntry> entries = ledger.entriesFor("1", Long.MIN_VALUE, Long.MAX_VALUE, -1, 5_000);
+    assertThat(entries).hasSize(2_000);
+    assertThat(entries).extracting(LedgerEntry::getSequence).isSorted();
+  }
+}
@@ -0,0 +1,92 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.TransferException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.AccountsRepositoryMetrics;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TransferMetricsTest {
+
+  private SimpleMeterRegistry registry;
+  private AccountsRepositoryInMemory accountRepository;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    accountRepository = new AccountsRepositoryInMemory();
+    accountRepository.createAccount(new Account("Id-1", new BigDecimal("100")));
+    accountRepository.createAccount(new Account("Id-2", new BigDecimal("100")));
+  }
+
+  @Test
+  void recordsLatencyAndLockTimesForEveryTransfer() {
+    TransferService transferService = transferService(1);
+
+    transferService.transfer("Id-1", "Id-2", new BigDecimal("10"));
+    transferService.transfer("Id-2", "Id-1", new BigDecimal("5"));
+
+    assertThat(registry.get("transfers.latency").timer().count()).isEqualTo(2);
+    assertThat(registry.get("transfers.lock.wait").timer().count()).isEqualTo(2);
+    assertThat(registry.get("transfers.lock.hold").timer().count()).isEqualTo(2);
+  }
+
+  @Test
+  void countsRejectionsByReason() {
+    TransferService transferService = transferService(1);
+
+    assertThatThrownBy(() -> transferService.transfer("Id-1", "Id-2", new BigDecimal("1000")))
+        .isInstanceOf(TransferException.class);
+    assertThatThrownBy(() -> transferService.transfer("Id-1", "Id-404", BigDecimal.ONE))
+        .isInstanceOf(TransferException.class);
+    assertThatThrownBy(() -> transferService.transfer("Id-1", "Id-1", BigDecimal.ONE))
+        .isInstanceOf(TransferException.class);
+    assertThatThrownBy(() -> transferService.transfer("Id-1", "Id-2", BigDecimal.ZERO))
+        .isInstanceOf(TransferException.class);
+
+    assertThat(rejections("insufficient_funds")).isEqualTo(1);
+    assertThat(rejections("unknown_account")).isEqualTo(1);
+    assertThat(rejections("same_account")).isEqualTo(1);
+    assertThat(rejections("invalid_amount")).isEqualTo(1);
+    assertThat(registry.get("transfers.latency").timer().count()).isZero();
+  }
+
+  @Test
+  void zeroSampleRateSkipsTimingButStillCountsRejections() {
+    TransferService transferService = transferService(0);
+
+    transferService.transfer("Id-1", "Id-2", BigDecimal.ONE);
+    assertThatThrownBy(() -> transferService.transfer("Id-1", "Id-2", new BigDecimal("1000")))
+        .isInstanceOf(TransferException.class);
+
+    assertThat(registry.get("transfers.latency").timer().count()).isZero();
+    assertThat(registry.get("transfers.lock.hold").timer().count()).isZero();
+    assertThat(rejections("insufficient_funds")).isEqualTo(1);
+  }
+
+  @Test
+  void publishesRepositorySize() {
+    new AccountsRepositoryMetrics(accountRepository).bindTo(registry);
+
+    assertThat(registry.get("accounts.repository.size").gauge().value()).isEqualTo(2);
+  }
+
+  private TransferService transferService(int sampleRate) {
+    return new TransferService(accountRepository, (account, description) -> { }, new AccountLockManager(),
+        new TransferMetrics(registry, sampleRate));
+  }
+
+  private double rejections(String reason) {
+    return registry.get("transfers.rejected").tag("reason", reason).counter().count();
+  }
+}